@@ -93,8 +93,12 @@ public class ArbolAVL<T extends Comparable<T>>
      * @param elemento el elemento a agregar.
      */
     @Override public void agrega(T elemento) {
+        EventoRebalanceo evento = iniciaRebalanceo();
+        int g = giros;
         super.agrega(elemento);
         rebalancea(ultimoAgregado.padre);
+        if (evento != null)
+            evento.termina(this, "agrega", giros - g);
     }
 
     /**
@@ -103,6 +107,8 @@ public class ArbolAVL<T extends Comparable<T>>
      * @param elemento el elemento a eliminar del árbol.
      */
     @Override public void elimina(T elemento) {
+        EventoRebalanceo evento = iniciaRebalanceo();
+        int g = giros;
         Vertice v = vertice(busca(elemento));
         if (v != null) {
             elementos--;
@@ -111,6 +117,30 @@ public class ArbolAVL<T extends Comparable<T>>
             eliminaVertice(v);
             rebalancea(v.padre);
         }
+        if (evento != null)
+            evento.termina(this, "elimina", giros - g);
+    }
+
+    /**
+     * Reconstruye el árbol con la forma recibida, y calcula la altura de
+     * cada vértice.
+     * @param elementos los elementos de los vértices, en DFS pre-order.
+     * @param forma la forma de cada vértice, en DFS pre-order (ver {@link
+     *        ArbolBinarioOrdenado#restaura}).
+     * @throws IllegalArgumentException si la forma no describe un árbol con
+     *         todos los elementos; el árbol queda vacío.
+     */
+    @Override public void restaura(Iterable<T> elementos, ArregloEnteros forma) {
+        super.restaura(elementos, forma);
+        calculaAlturas(raiz);
+    }
+
+    private void calculaAlturas(Vertice vertice) {
+        if (vertice == null)
+            return;
+        calculaAlturas(vertice.izquierdo);
+        calculaAlturas(vertice.derecho);
+        recalculaAltura(verticeAVL(vertice));
     }
 
     private void rebalancea(Vertice vertice) {
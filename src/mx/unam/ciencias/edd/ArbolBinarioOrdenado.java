@@ -3,6 +3,7 @@ package mx.unam.ciencias.edd;
 import java.util.Iterator;
 
 import java.util.NoSuchElementException;
+import jdk.jfr.FlightRecorder;
 
 
 /**
@@ -68,6 +69,12 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
      */
     protected Vertice ultimoAgregado;
 
+    /** El número de giros que se han hecho en el árbol. */
+    protected int giros;
+
+    /** La bitácora de las mutaciones del árbol, o <tt>null</tt> si no hay. */
+    protected BitacoraArbol<T> bitacora;
+
     /**
      * Constructor sin parámetros. Para no perder el constructor sin parámetros
      * de {@link ArbolBinario}.
@@ -97,6 +104,8 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
             raiz = nuevo;
         else
             agrega(raiz, nuevo);
+        if (bitacora != null)
+            bitacora.agrega(nuevo);
     }
 
     private void agrega(Vertice vertice, Vertice nuevo) {
@@ -154,6 +163,8 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
         T e = vertice.elemento;
         vertice.elemento = max.elemento;
         max.elemento = e;
+        if (bitacora != null)
+            bitacora.intercambia(vertice, max);
         return max;
     }
 
@@ -175,6 +186,8 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
                 vertice.padre.derecho = u;
         else
             raiz = u;
+        if (bitacora != null)
+            bitacora.elimina(vertice);
     }
 
     /**
@@ -215,6 +228,95 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
         return ultimoAgregado;
     }
 
+    /**
+     * Define la bitácora que recibe las mutaciones del árbol: los vértices
+     * que se agregan y eliminan, los elementos que se intercambian, los
+     * giros y, en árboles rojinegros, los cambios de color.
+     * @param bitacora la bitácora, o <code>null</code> para dejar de
+     *        registrar las mutaciones.
+     */
+    public void setBitacora(BitacoraArbol<T> bitacora) {
+        this.bitacora = bitacora;
+    }
+
+    /**
+     * Reconstruye el árbol con la forma recibida, sin comparar sus
+     * elementos ni rebalancearlo, para restaurar un árbol guardado. Los
+     * elementos y la forma van en DFS <em>pre-order</em>: la forma de cada
+     * vértice es 1 si tiene hijo izquierdo, más 2 si tiene hijo derecho,
+     * más 4 veces su marca, que en árboles rojinegros es el ordinal de su
+     * {@link Color}. Las alturas de los árboles AVL se calculan.
+     * @param elementos los elementos de los vértices, en DFS pre-order.
+     * @param forma la forma de cada vértice, en DFS pre-order.
+     * @throws IllegalArgumentException si la forma no describe un árbol con
+     *         todos los elementos; el árbol queda vacío.
+     */
+    public void restaura(Iterable<T> elementos, ArregloEnteros forma) {
+        limpia();
+        try {
+            restaura(elementos.iterator(), forma);
+        } catch (IllegalArgumentException iae) {
+            limpia();
+            throw iae;
+        }
+    }
+
+    private void restaura(Iterator<T> iterador, ArregloEnteros forma) {
+        Pila<Vertice> derechos = new Pila<Vertice>();
+        Vertice padreIzquierdo = null;
+        for (int i = 0; i < forma.getElementos(); i++) {
+            if (!iterador.hasNext())
+                throw formaInvalida();
+            Vertice v = nuevoVertice(iterador.next());
+            restauraMarca(v, forma.get(i) >>> 2);
+            if (i == 0) {
+                raiz = v;
+            } else if (padreIzquierdo != null) {
+                padreIzquierdo.izquierdo = v;
+                v.padre = padreIzquierdo;
+            } else if (!derechos.esVacia()) {
+                v.padre = derechos.saca();
+                v.padre.derecho = v;
+            } else {
+                throw formaInvalida();
+            }
+            padreIzquierdo = ((forma.get(i) & 1) != 0) ? v : null;
+            if ((forma.get(i) & 2) != 0)
+                derechos.mete(v);
+        }
+        if (iterador.hasNext() || padreIzquierdo != null || !derechos.esVacia())
+            throw formaInvalida();
+        elementos = forma.getElementos();
+    }
+
+    private static IllegalArgumentException formaInvalida() {
+        return new IllegalArgumentException("La forma no describe un árbol.");
+    }
+
+    /**
+     * Restaura la marca de un vértice al reconstruir el árbol con {@link
+     * #restaura}. Los árboles binarios ordenados no tienen marcas, por lo
+     * que el método no hace nada.
+     * @param vertice el vértice.
+     * @param marca la marca del vértice.
+     * @throws IllegalArgumentException si la marca no es válida.
+     */
+    protected void restauraMarca(Vertice vertice, int marca) {}
+
+    /**
+     * Empieza el evento {@link EventoRebalanceo} de una operación. Si nunca
+     * se ha iniciado una grabación de Java Flight Recorder, no se crea el
+     * evento, para no inicializar su clase.
+     * @return el evento empezado, o <code>null</code> si no hay grabaciones.
+     */
+    static EventoRebalanceo iniciaRebalanceo() {
+        if (!FlightRecorder.isInitialized())
+            return null;
+        EventoRebalanceo evento = new EventoRebalanceo();
+        evento.begin();
+        return evento;
+    }
+
     /**
      * Gira el árbol a la derecha sobre el vértice recibido. Si el vértice no
      * tiene hijo izquierdo, el método no hace nada.
@@ -223,6 +325,7 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
     public void giraDerecha(VerticeArbolBinario<T> vertice) {
         Vertice q = vertice(vertice);
         if (q.izquierdo != null) {
+            giros++;
             Vertice p = q.izquierdo;
             p.padre = q.padre;
             if (q.padre != null)
@@ -237,6 +340,8 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
             if (p.derecho != null)
                 p.derecho.padre = q;
             p.derecho = q;
+            if (bitacora != null)
+                bitacora.giraDerecha(q);
         }
     }
 
@@ -248,6 +353,7 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
     public void giraIzquierda(VerticeArbolBinario<T> vertice) {
         Vertice p = vertice(vertice);
         if (p.derecho != null) {
+            giros++;
             Vertice q = p.derecho;
             q.padre = p.padre;
             if (p.padre != null) {
@@ -263,6 +369,8 @@ public class ArbolBinarioOrdenado<T extends Comparable<T>>
             if (q.izquierdo != null)
                 q.izquierdo.padre = p;
             q.izquierdo = p;
+            if (bitacora != null)
+                bitacora.giraIzquierda(p);
         }
     }
 
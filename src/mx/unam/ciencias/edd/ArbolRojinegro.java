@@ -110,8 +110,12 @@ public class ArbolRojinegro<T extends Comparable<T>>
      * @param elemento el elemento a agregar.
      */
     @Override public void agrega(T elemento) {
+        EventoRebalanceo evento = iniciaRebalanceo();
+        int g = giros;
         super.agrega(elemento);
         rebalanceoAgrega(verticeRN(ultimoAgregado));
+        if (evento != null)
+            evento.termina(this, "agrega", giros - g);
     }
 
     private void rebalanceoAgrega(VerticeRojinegro vertice) {
@@ -164,6 +168,8 @@ public class ArbolRojinegro<T extends Comparable<T>>
      * @param elemento el elemento a eliminar del árbol.
      */
     @Override public void elimina(T elemento) {
+        EventoRebalanceo evento = iniciaRebalanceo();
+        int g = giros;
         Vertice v = vertice(busca(elemento));
         if (v != null) {
             elementos--;
@@ -172,21 +178,25 @@ public class ArbolRojinegro<T extends Comparable<T>>
             VerticeRojinegro h;
             if (v.izquierdo == null && v.derecho == null) {
                 h = verticeRN(nuevoVertice(null));
-                coloreaNegro(h);
                 h.padre = v;
                 v.izquierdo = h;
+                if (bitacora != null)
+                    bitacora.agrega(h);
+                coloreaNegro(h);
             }
             h = (soloTieneIzquierdo(v)) ? verticeRN(v.izquierdo) : verticeRN(v.derecho);
             eliminaVertice(v);
             VerticeRojinegro vaux = verticeRN(v);
             if (esRojo(h)) {
                 coloreaNegro(h);
-                return;
+            } else {
+                if (esNegro(vaux) && esNegro(h))
+                    rebalanceaElimina(h);
+                eliminaVertice(h);
             }
-            if (esNegro(vaux) && esNegro(h))
-                rebalanceaElimina(h);
-            eliminaVertice(h);
         }
+        if (evento != null)
+            evento.termina(this, "elimina", giros - g);
     }
 
 
@@ -279,6 +289,19 @@ public class ArbolRojinegro<T extends Comparable<T>>
                                                 "por el usuario.");
     }
 
+    /**
+     * Restaura el color de un vértice al reconstruir el árbol con {@link
+     * #restaura}: la marca es el ordinal de su {@link Color}.
+     * @param vertice el vértice.
+     * @param marca el ordinal del color del vértice.
+     * @throws IllegalArgumentException si la marca no es un color.
+     */
+    @Override protected void restauraMarca(Vertice vertice, int marca) {
+        if (marca >= Color.values().length)
+            throw new IllegalArgumentException("La marca no es un color.");
+        verticeRN(vertice).color = Color.values()[marca];
+    }
+
     private VerticeRojinegro verticeRN(VerticeArbolBinario<T> vertice) {
         return (VerticeRojinegro) vertice;
     }
@@ -292,10 +315,18 @@ public class ArbolRojinegro<T extends Comparable<T>>
     }
 
     private void coloreaRojo(VerticeRojinegro v) {
-        v.color = Color.ROJO;
+        colorea(v, Color.ROJO);
     }
 
     private void coloreaNegro(VerticeRojinegro v) {
-        v.color = Color.NEGRO;
+        colorea(v, Color.NEGRO);
+    }
+
+    private void colorea(VerticeRojinegro v, Color color) {
+        if (v.color == color)
+            return;
+        v.color = color;
+        if (bitacora != null)
+            bitacora.colorea(v, color);
     }
 }
@@ -0,0 +1,228 @@
+package mx.unam.ciencias.edd;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Clase para arreglos crecientes de enteros.</p>
+ *
+ * <p>Los arreglos guardan los enteros como tipo primitivo en un arreglo que
+ * duplica su capacidad cuando se llena, por lo que agregar un entero al final
+ * no construye objetos. Como colección, el arreglo regresa sus elementos en
+ * el orden en que fueron agregados.</p>
+ */
+public class ArregloEnteros implements Coleccion<Integer> {
+
+    /* Clase Iterador privada para iteradores. */
+    private class Iterador implements Iterator<Integer> {
+        /* El índice del siguiente elemento. */
+        private int siguiente;
+
+        /* Nos dice si hay un elemento siguiente. */
+        @Override public boolean hasNext() {
+            return siguiente < elementos;
+        }
+
+        /* Nos da el elemento siguiente. */
+        @Override public Integer next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return arreglo[siguiente++];
+        }
+    }
+
+    /* Los enteros del arreglo. */
+    private int[] arreglo;
+    /* Número de elementos en el arreglo. */
+    private int elementos;
+
+    /**
+     * Construye un arreglo vacío.
+     */
+    public ArregloEnteros() {
+        this(16);
+    }
+
+    /**
+     * Construye un arreglo vacío con la capacidad inicial recibida.
+     * @param capacidad la capacidad inicial del arreglo.
+     */
+    public ArregloEnteros(int capacidad) {
+        arreglo = new int[Math.max(1, capacidad)];
+    }
+
+    /**
+     * Agrega un entero al final del arreglo.
+     * @param elemento el entero a agregar.
+     */
+    public void agrega(int elemento) {
+        if (elementos == arreglo.length)
+            crece(elementos + 1);
+        arreglo[elementos++] = elemento;
+    }
+
+    /**
+     * Agrega al final del arreglo todos los enteros de otro arreglo, en el
+     * mismo orden.
+     * @param otro el arreglo con los enteros a agregar.
+     */
+    public void concatena(ArregloEnteros otro) {
+        if (elementos + otro.elementos > arreglo.length)
+            crece(elementos + otro.elementos);
+        System.arraycopy(otro.arreglo, 0, arreglo, elementos, otro.elementos);
+        elementos += otro.elementos;
+    }
+
+    /**
+     * Agrega un elemento al final del arreglo.
+     * @param elemento el elemento a agregar.
+     * @throws IllegalArgumentException si <code>elemento</code> es
+     *         <code>null</code>.
+     */
+    @Override public void agrega(Integer elemento) {
+        if (elemento == null)
+            throw new IllegalArgumentException();
+        agrega(elemento.intValue());
+    }
+
+    /**
+     * Elimina la primera aparición de un elemento del arreglo, recorriendo
+     * los elementos que le siguen.
+     * @param elemento el elemento a eliminar.
+     */
+    @Override public void elimina(Integer elemento) {
+        if (elemento == null)
+            return;
+        int i = indiceDe(elemento);
+        if (i == -1)
+            return;
+        System.arraycopy(arreglo, i + 1, arreglo, i, elementos - i - 1);
+        elementos--;
+    }
+
+    /**
+     * Nos dice si un elemento está en el arreglo.
+     * @param elemento el elemento que queremos saber si está en el arreglo.
+     * @return <tt>true</tt> si <tt>elemento</tt> está en el arreglo,
+     *         <tt>false</tt> en otro caso.
+     */
+    @Override public boolean contiene(Integer elemento) {
+        return elemento != null && indiceDe(elemento) != -1;
+    }
+
+    /**
+     * Nos dice si el arreglo es vacío.
+     * @return <tt>true</tt> si el arreglo es vacío, <tt>false</tt> en otro
+     *         caso.
+     */
+    @Override public boolean esVacia() {
+        return elementos == 0;
+    }
+
+    /**
+     * Regresa el número de elementos en el arreglo.
+     * @return el número de elementos en el arreglo.
+     */
+    @Override public int getElementos() {
+        return elementos;
+    }
+
+    /**
+     * Limpia el arreglo de elementos, dejándolo vacío.
+     */
+    @Override public void limpia() {
+        elementos = 0;
+    }
+
+    /**
+     * Regresa un arreglo nuevo con los elementos entre los índices recibidos.
+     * @param inicio el índice del primer elemento a copiar.
+     * @param fin el índice siguiente al último elemento a copiar.
+     * @return un arreglo con los elementos entre <em>inicio</em> y
+     *         <em>fin</em>.
+     * @throws ExcepcionIndiceInvalido si los índices no delimitan un
+     *         intervalo del arreglo.
+     */
+    public ArregloEnteros copia(int inicio, int fin) {
+        if (inicio < 0 || fin > elementos || inicio > fin)
+            throw new ExcepcionIndiceInvalido();
+        ArregloEnteros copia = new ArregloEnteros(fin - inicio);
+        System.arraycopy(arreglo, inicio, copia.arreglo, 0, fin - inicio);
+        copia.elementos = fin - inicio;
+        return copia;
+    }
+
+    /**
+     * Elimina los elementos del arreglo a partir del índice recibido,
+     * dejando sólo los primeros <em>n</em>.
+     * @param n el número de elementos que se quedan en el arreglo.
+     * @throws ExcepcionIndiceInvalido si <em>n</em> es menor que cero o
+     *         mayor que el número de elementos en el arreglo.
+     */
+    public void trunca(int n) {
+        if (n < 0 || n > elementos)
+            throw new ExcepcionIndiceInvalido();
+        elementos = n;
+    }
+
+    /**
+     * Regresa el <em>i</em>-ésimo elemento del arreglo.
+     * @param i el índice del elemento que queremos.
+     * @return el <em>i</em>-ésimo elemento del arreglo.
+     * @throws ExcepcionIndiceInvalido si <em>i</em> es menor que cero o mayor o
+     *         igual que el número de elementos en el arreglo.
+     */
+    public int get(int i) {
+        if (i < 0 || i >= elementos)
+            throw new ExcepcionIndiceInvalido();
+        return arreglo[i];
+    }
+
+    /**
+     * Regresa el índice de la primera aparición del entero recibido.
+     * @param elemento el entero del que se busca el índice.
+     * @return el índice del entero en el arreglo, o -1 si no está.
+     */
+    public int indiceDe(int elemento) {
+        for (int i = 0; i < elementos; i++)
+            if (arreglo[i] == elemento)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Regresa un iterador para recorrer el arreglo.
+     * @return un iterador para recorrer el arreglo.
+     */
+    @Override public Iterator<Integer> iterator() {
+        return new Iterador();
+    }
+
+    /**
+     * Regresa una representación en cadena del arreglo.
+     * @return una representación en cadena del arreglo.
+     */
+    @Override public String toString() {
+        StringBuilder s = new StringBuilder("[");
+        for (int i = 0; i < elementos; i++) {
+            if (i > 0)
+                s.append(", ");
+            s.append(arreglo[i]);
+        }
+        return s.append(']').toString();
+    }
+
+    /* Aumenta la capacidad del arreglo para que quepan al menos n
+       elementos. */
+    private void crece(int n) {
+        if (n > Integer.MAX_VALUE - 8)
+            throw new OutOfMemoryError();
+        int capacidad = arreglo.length;
+        while (capacidad < n)
+            capacidad = (capacidad > Integer.MAX_VALUE / 2)
+                ? Integer.MAX_VALUE - 8 : capacidad * 2;
+        int[] nuevo = new int[capacidad];
+        System.arraycopy(arreglo, 0, nuevo, 0, elementos);
+        arreglo = nuevo;
+    }
+}
@@ -0,0 +1,52 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * Interfaz para bitácoras de las mutaciones de árboles binarios ordenados.
+ * Un árbol con bitácora le avisa de cada cambio en sus vértices después de
+ * hacerlo, incluyendo los que hace al rebalancearse, por lo que aplicar las
+ * mismas mutaciones en el mismo orden a una copia del árbol la deja igual
+ * que el árbol.
+ */
+public interface BitacoraArbol<T> {
+
+    /**
+     * Un vértice nuevo se agregó como hoja del árbol, o como su raíz si
+     * no tiene padre.
+     * @param vertice el vértice agregado.
+     */
+    public void agrega(VerticeArbolBinario<T> vertice);
+
+    /**
+     * Un vértice con a lo más un hijo se eliminó del árbol, y su hijo (si
+     * existe) tomó su lugar.
+     * @param vertice el vértice eliminado.
+     */
+    public void elimina(VerticeArbolBinario<T> vertice);
+
+    /**
+     * Se intercambiaron los elementos de dos vértices.
+     * @param vertice uno de los vértices.
+     * @param otro el otro vértice.
+     */
+    public void intercambia(VerticeArbolBinario<T> vertice,
+                            VerticeArbolBinario<T> otro);
+
+    /**
+     * El árbol se giró a la izquierda sobre un vértice.
+     * @param vertice el vértice sobre el que se giró.
+     */
+    public void giraIzquierda(VerticeArbolBinario<T> vertice);
+
+    /**
+     * El árbol se giró a la derecha sobre un vértice.
+     * @param vertice el vértice sobre el que se giró.
+     */
+    public void giraDerecha(VerticeArbolBinario<T> vertice);
+
+    /**
+     * Un vértice de un árbol rojinegro cambió de color.
+     * @param vertice el vértice.
+     * @param color el nuevo color del vértice.
+     */
+    public void colorea(VerticeArbolBinario<T> vertice, Color color);
+}
@@ -0,0 +1,35 @@
+package mx.unam.ciencias.edd;
+
+/**
+ * Interfaz para bitácoras de las mutaciones del arreglo de un montículo
+ * mínimo. El montículo le avisa de cada cambio después de hacerlo, por lo
+ * que aplicar las mismas mutaciones en el mismo orden a una copia del
+ * arreglo la deja igual que el montículo.
+ */
+public interface BitacoraMonticulo<T> {
+
+    /**
+     * Un elemento se agregó al final del arreglo.
+     * @param elemento el elemento agregado.
+     */
+    public void agrega(T elemento);
+
+    /**
+     * Se eliminó el último elemento del arreglo.
+     */
+    public void elimina();
+
+    /**
+     * Se intercambiaron dos elementos del arreglo.
+     * @param i el índice de uno de los elementos.
+     * @param j el índice del otro elemento.
+     */
+    public void intercambia(int i, int j);
+
+    /**
+     * Un elemento cambió de valor y va a reordenarse; su índice es el que
+     * tiene en el arreglo.
+     * @param elemento el elemento.
+     */
+    public void actualiza(T elemento);
+}
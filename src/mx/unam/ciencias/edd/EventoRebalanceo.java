@@ -0,0 +1,61 @@
+package mx.unam.ciencias.edd;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <p>Evento de Java Flight Recorder para una operación de un árbol
+ * balanceado.</p>
+ *
+ * <p>{@link ArbolAVL} y {@link ArbolRojinegro} registran un evento por cada
+ * elemento que agregan o eliminan, con los giros que hicieron para
+ * rebalancearse. Como hay un evento por operación, está deshabilitado por
+ * omisión; se habilita en el archivo <tt>.jfc</tt> de la grabación o con
+ * {@link jdk.jfr.Recording#enable}. Mientras no se haya iniciado ninguna
+ * grabación, los árboles no crean el evento.</p>
+ */
+@Name("mx.unam.ciencias.edd.Rebalanceo")
+@Label("Rebalanceo")
+@Category({ "EDD", "Árboles" })
+@Description("Una operación de un árbol balanceado y sus giros.")
+@Enabled(false)
+@StackTrace(false)
+class EventoRebalanceo extends Event {
+
+    /** La clase del árbol. */
+    @Label("Árbol")
+    String arbol;
+
+    /** La operación: agrega o elimina. */
+    @Label("Operación")
+    String operacion;
+
+    /** El número de giros de la operación. */
+    @Label("Giros")
+    int giros;
+
+    /** El número de elementos del árbol después de la operación. */
+    @Label("Elementos")
+    int elementos;
+
+    /**
+     * Termina el evento y lo registra, si alguna grabación lo habilita.
+     * @param arbol el árbol de la operación.
+     * @param operacion el nombre de la operación.
+     * @param giros el número de giros de la operación.
+     */
+    void termina(ArbolBinario<?> arbol, String operacion, int giros) {
+        if (!shouldCommit())
+            return;
+        this.arbol = arbol.getClass().getSimpleName();
+        this.operacion = operacion;
+        this.giros = giros;
+        elementos = arbol.getElementos();
+        commit();
+    }
+}
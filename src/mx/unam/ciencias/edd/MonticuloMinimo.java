@@ -63,6 +63,8 @@ public class MonticuloMinimo<T extends ComparableIndexable<T>>
     private int elementos;
     /* Usamos un truco para poder utilizar arreglos genéricos. */
     private T[] arbol;
+    /* La bitácora de las mutaciones del arreglo, o null si no hay. */
+    private BitacoraMonticulo<T> bitacora;
 
     /* Truco para crear arreglos genéricos. Es necesario hacerlo así por cómo
        Java implementa sus genéricos; de otra forma obtenemos advertencias del
@@ -147,6 +149,8 @@ public class MonticuloMinimo<T extends ComparableIndexable<T>>
          arbol[i].setIndice(i);
          arbol[j] = iesimo;
          arbol[j].setIndice(j);
+         if (bitacora != null)
+             bitacora.intercambia(i, j);
      }
 
      /**
@@ -162,6 +166,8 @@ public class MonticuloMinimo<T extends ComparableIndexable<T>>
          }
          arbol[elementos] = elemento;
          elemento.setIndice(elementos);
+         if (bitacora != null)
+             bitacora.agrega(elemento);
          acomodaArriba(elementos++);
      }
 
@@ -189,6 +195,8 @@ public class MonticuloMinimo<T extends ComparableIndexable<T>>
              throw new IllegalStateException();
          T raiz = arbol[0];
          intercambia(0, --elementos);
+         if (bitacora != null)
+             bitacora.elimina();
          acomodaAbajo(0);
          raiz.setIndice(-1);
          return raiz;
@@ -205,7 +213,9 @@ public class MonticuloMinimo<T extends ComparableIndexable<T>>
         T aux = arbol[i];
          intercambia(i, --elementos);
          arbol[elementos] = null;
-         reordena(arbol[i]);
+         if (bitacora != null)
+             bitacora.elimina();
+         acomoda(arbol[i]);
          aux.setIndice(-1);
      }
 
@@ -244,12 +254,29 @@ public class MonticuloMinimo<T extends ComparableIndexable<T>>
       * @param elemento el elemento que hay que reordenar.
       */
      @Override public void reordena(T elemento) {
+         if (elemento != null && bitacora != null)
+             bitacora.actualiza(elemento);
+         acomoda(elemento);
+     }
+
+     private void acomoda(T elemento) {
          if (elemento == null)
              return;
          acomodaAbajo(elemento.getIndice());
          acomodaArriba(elemento.getIndice());
      }
 
+     /**
+      * Define la bitácora que recibe las mutaciones del arreglo del
+      * montículo: los elementos que se agregan al final y se eliminan del
+      * final, los intercambios y los elementos que se reordenan.
+      * @param bitacora la bitácora, o <code>null</code> para dejar de
+      *        registrar las mutaciones.
+      */
+     public void setBitacora(BitacoraMonticulo<T> bitacora) {
+         this.bitacora = bitacora;
+     }
+
      /**
       * Regresa el número de elementos en el montículo mínimo.
       * @return el número de elementos en el montículo mínimo.
@@ -0,0 +1,711 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import mx.unam.ciencias.edd.ArregloEnteros;
+
+/**
+ * <p> Clase para lienzos que escriben una secuencia de imágenes como un solo
+ *  documento SVG animado. </p>
+ *
+ * <p> Cada imagen que se dibuja en el lienzo, de su cabecera a su piecera,
+ *  es un cuadro de la animación. Las primitivas de un cuadro se identifican
+ *  con las de los cuadros anteriores por lo que representan y no por su
+ *  posición: un texto por su cadena, un círculo o un rectángulo por el texto
+ *  que tiene dentro, y una línea o una curva por las figuras de sus
+ *  extremos. Al cerrar el lienzo, cada elemento se escribe una sola vez, con
+ *  una animación SMIL discreta por cada atributo que cambia, cuyos valores
+ *  son sólo los de los cuadros donde cambia; los elementos que aparecen o
+ *  desaparecen animan su visibilidad. El documento crece con el número de
+ *  cambios entre cuadros, y no con el número de cuadros por el tamaño de
+ *  cada uno. </p>
+ *
+ * <p> Los elementos se escriben en el orden en que aparecen por primera vez:
+ *  un elemento nuevo va después del elemento que se dibujó antes que él en
+ *  su cuadro, por lo que las figuras que se enciman en un cuadro quedan en
+ *  el mismo orden que en su imagen. El documento mide lo que mide el cuadro
+ *  más grande. </p>
+ */
+public class Animacion implements Lienzo {
+
+    /* Tipo de las primitivas de círculos. */
+    private static final byte CIRCULO = 0;
+    /* Tipo de las primitivas de rectángulos. */
+    private static final byte RECTANGULO = 1;
+    /* Tipo de las primitivas de texto. */
+    private static final byte TEXTO = 2;
+    /* Tipo de las primitivas de líneas. */
+    private static final byte LINEA = 3;
+    /* Tipo de las primitivas de curvas. */
+    private static final byte CURVA = 4;
+
+    /* El número de valores de cada tipo de primitiva. */
+    private static final int[] VALORES = { 5, 6, 4, 4, 7 };
+
+    /* Los atributos SVG de cada tipo de primitiva. */
+    private static final String[][] ATRIBUTOS = {
+        { "cx", "cy", "r", "fill", "stroke" },
+        { "x", "y", "width", "height", "fill", "stroke" },
+        { "x", "y", "fill", "font-size" },
+        { "x1", "y1", "x2", "y2" },
+        { "d", "stroke" }
+    };
+
+    /* El número máximo de valores de una primitiva. */
+    private static final int MAXIMO_VALORES = 7;
+
+    /* Pixeles alrededor de una figura donde todavía se considera que
+       empieza o termina una arista. */
+    private static final int MARGEN = 6;
+
+    /* Tamaño en pixeles de las celdas donde se buscan las figuras. */
+    private static final int CELDA = 32;
+
+    /* Tamaño del búfer de escritura en caracteres. */
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+
+    /* Clase interna privada para los elementos del documento. */
+    private static class Elemento {
+
+        /* El tipo del elemento. */
+        private byte tipo;
+        /* La cadena de los textos. */
+        private String cadena;
+        /* Las flechas de las líneas: 1 al inicio, 2 al final. */
+        private int flechas;
+        /* Los valores del elemento en el último cuadro donde se dibujó. */
+        private int[] valores;
+        /* Cada cambio de valores: el cuadro y los valores desde ese cuadro. */
+        private ArregloEnteros cambios = new ArregloEnteros();
+        /* Los cuadros donde el elemento aparece y desaparece, alternados. */
+        private ArregloEnteros visibilidad = new ArregloEnteros();
+        /* El último cuadro donde se dibujó el elemento. */
+        private int cuadro = -1;
+        /* El siguiente elemento en el orden del documento. */
+        private Elemento siguiente;
+    }
+
+    /* El canal donde se escribe el documento. */
+    private WritableByteChannel canal;
+
+    /* Los milisegundos que dura cada cuadro. */
+    private int milisegundos;
+
+    /* Los elementos por llave. */
+    private HashMap<String, Elemento> elementos = new HashMap<>();
+
+    /* El centinela de la lista de elementos en el orden del documento. */
+    private Elemento cabeza = new Elemento();
+
+    /* Los elementos visibles en el último cuadro. */
+    private ArrayList<Elemento> visibles = new ArrayList<>();
+
+    /* Los colores por índice. */
+    private ArrayList<String> colores = new ArrayList<>();
+
+    /* Los índices de los colores. */
+    private HashMap<String, Integer> indicesColores = new HashMap<>();
+
+    /* El número de cuadros empezados. */
+    private int cuadros;
+
+    /* El ancho del cuadro más ancho. */
+    private double ancho;
+
+    /* El largo del cuadro más largo. */
+    private double largo;
+
+    /* Si algún cuadro usa flechas. */
+    private boolean defineFlechas;
+
+    /* El número de primitivas del cuadro actual. */
+    private int primitivas;
+    /* El tipo de cada primitiva del cuadro actual. */
+    private byte[] tipos = new byte[64];
+    /* Los valores de cada primitiva del cuadro actual. */
+    private int[] valores = new int[64 * MAXIMO_VALORES];
+    /* La cadena de los textos del cuadro actual. */
+    private String[] cadenas = new String[64];
+    /* Las flechas de las líneas del cuadro actual. */
+    private byte[] flechas = new byte[64];
+    /* La llave de cada primitiva del cuadro actual. */
+    private String[] llaves = new String[64];
+
+    /* El búfer de escritura del documento. */
+    private StringBuilder buffer;
+
+    /**
+     * Construye una animación que se escribe en el canal recibido al
+     * cerrarla.
+     * @param canal el canal donde se escribe el documento; se cierra al
+     *        cerrar el lienzo.
+     * @param milisegundos los milisegundos que dura cada cuadro.
+     */
+    public Animacion(WritableByteChannel canal, int milisegundos) {
+        this.canal = canal;
+        this.milisegundos = milisegundos;
+    }
+
+    /**
+     * Empieza un cuadro de la animación con las dimensiones dadas.
+     * @param ancho el ancho del cuadro.
+     * @param largo el largo del cuadro.
+     * @param defineFlechas si es <tt>true</tt>, el cuadro usa flechas en
+     *        los extremos de líneas y curvas.
+     */
+    @Override public void escribeCabecera(double ancho, double largo,
+                                          boolean defineFlechas) {
+        this.ancho = Math.max(this.ancho, ancho);
+        this.largo = Math.max(this.largo, largo);
+        this.defineFlechas |= defineFlechas;
+        primitivas = 0;
+    }
+
+    /**
+     * Dibuja un círculo en el cuadro actual.
+     * @param centroX coordenada en x del centro del círculo.
+     * @param centroY coordenada en y del centro del círculo.
+     * @param radio el radio del círculo.
+     * @param colorFondo una cadena con el nombre del color de fondo.
+     * @param colorBorde una cadena con el nombre del color del borde.
+     */
+    @Override public void dibujaCirculo(double centroX, double centroY,
+                                        double radio, String colorFondo,
+                                        String colorBorde) {
+        int i = agrega(CIRCULO, null, 0);
+        valores[i] = redondea(centroX);
+        valores[i + 1] = redondea(centroY);
+        valores[i + 2] = redondea(radio);
+        valores[i + 3] = color(colorFondo);
+        valores[i + 4] = color(colorBorde);
+    }
+
+    /**
+     * Dibuja un rectángulo en el cuadro actual.
+     * @param x coordenada en x de la esquina superior izquierda.
+     * @param y coordenada en y de la esquina superior izquierda.
+     * @param ancho el ancho del rectángulo.
+     * @param largo el largo del rectángulo.
+     * @param colorFondo una cadena con el nombre del color de fondo.
+     * @param colorBorde una cadena con el nombre del color del borde.
+     */
+    @Override public void dibujaRectangulo(double x, double y, double ancho,
+                                           double largo, String colorFondo,
+                                           String colorBorde) {
+        int i = agrega(RECTANGULO, null, 0);
+        valores[i] = redondea(x);
+        valores[i + 1] = redondea(y);
+        valores[i + 2] = redondea(ancho);
+        valores[i + 3] = redondea(largo);
+        valores[i + 4] = color(colorFondo);
+        valores[i + 5] = color(colorBorde);
+    }
+
+    /**
+     * Dibuja una etiqueta de texto en el cuadro actual.
+     * @param x coordenada en x del centro de la etiqueta.
+     * @param y coordenada en y de la línea base de la etiqueta.
+     * @param cadena cadena de texto a dibujar.
+     * @param colorTexto una cadena con el nombre del color del texto.
+     * @param size el tamaño en pixeles del texto.
+     */
+    @Override public void dibujaTexto(double x, double y, String cadena,
+                                      String colorTexto, int size) {
+        int i = agrega(TEXTO, cadena, 0);
+        valores[i] = redondea(x);
+        valores[i + 1] = redondea(y);
+        valores[i + 2] = color(colorTexto);
+        valores[i + 3] = size;
+    }
+
+    /**
+     * Dibuja una línea negra en el cuadro actual.
+     * @param xInicio coordenada en x del inicio de la línea.
+     * @param yInicio coordenada en y del inicio de la línea.
+     * @param xFinal coordenada en x del final de la línea.
+     * @param yFinal coordenada en y del final de la línea.
+     * @param flechaInicio si es <tt>true</tt>, pone una flecha al inicio.
+     * @param flechaFinal si es <tt>true</tt>, pone una flecha al final.
+     */
+    @Override public void dibujaLinea(double xInicio, double yInicio,
+                                      double xFinal, double yFinal,
+                                      boolean flechaInicio,
+                                      boolean flechaFinal) {
+        int i = agrega(LINEA, null,
+                       (flechaInicio ? 1 : 0) | (flechaFinal ? 2 : 0));
+        valores[i] = redondea(xInicio);
+        valores[i + 1] = redondea(yInicio);
+        valores[i + 2] = redondea(xFinal);
+        valores[i + 3] = redondea(yFinal);
+    }
+
+    /**
+     * Dibuja una curva cuadrática de Bézier con una flecha al final en el
+     * cuadro actual.
+     * @param x1 coordenada en x del inicio de la curva.
+     * @param y1 coordenada en y del inicio de la curva.
+     * @param curvaX coordenada en x del punto de control de la curva.
+     * @param curvaY coordenada en y del punto de control de la curva.
+     * @param x2 coordenada en x del final de la curva.
+     * @param y2 coordenada en y del final de la curva.
+     * @param color entero entre 0 y 255 del gris de la curva.
+     */
+    @Override public void dibujaCurva(double x1, double y1, double curvaX,
+                                      double curvaY, double x2, double y2,
+                                      int color) {
+        int i = agrega(CURVA, null, 2);
+        valores[i] = redondea(x1);
+        valores[i + 1] = redondea(y1);
+        valores[i + 2] = redondea(curvaX);
+        valores[i + 3] = redondea(curvaY);
+        valores[i + 4] = redondea(x2);
+        valores[i + 5] = redondea(y2);
+        valores[i + 6] = color;
+    }
+
+    /**
+     * Termina el cuadro actual: identifica sus primitivas con los elementos
+     * de la animación y registra lo que cambió desde el cuadro anterior.
+     */
+    @Override public void escribePiecera() {
+        int cuadro = cuadros++;
+        HashMap<String, Integer> ocurrencias = new HashMap<>();
+        for (int i = 0; i < primitivas; i++)
+            llaves[i] = (tipos[i] == TEXTO)
+                ? ocurrencia(ocurrencias, "t" + valores[i * MAXIMO_VALORES + 3]
+                             + ":" + cadenas[i])
+                : null;
+        etiquetaFiguras(ocurrencias);
+        HashMap<Long, ArrayList<Integer>> celdas = celdasDeFiguras();
+        for (int i = 0; i < primitivas; i++) {
+            if (tipos[i] != LINEA && tipos[i] != CURVA)
+                continue;
+            int v = i * MAXIMO_VALORES;
+            int f = (tipos[i] == LINEA) ? v + 2 : v + 4;
+            llaves[i] = ocurrencia(ocurrencias, "a" + tipos[i] + flechas[i]
+                                   + ":" + busca(celdas, valores[v], valores[v + 1])
+                                   + "|" + busca(celdas, valores[f], valores[f + 1]));
+        }
+        ArrayList<Elemento> dibujados = new ArrayList<>(primitivas);
+        Elemento anterior = cabeza;
+        for (int i = 0; i < primitivas; i++) {
+            Elemento elemento = elementos.get(llaves[i]);
+            if (elemento == null) {
+                elemento = new Elemento();
+                elemento.tipo = tipos[i];
+                elemento.cadena = cadenas[i];
+                elemento.flechas = flechas[i];
+                elemento.siguiente = anterior.siguiente;
+                anterior.siguiente = elemento;
+                elementos.put(llaves[i], elemento);
+            }
+            actualiza(elemento, i, cuadro);
+            dibujados.add(elemento);
+            anterior = elemento;
+        }
+        for (Elemento elemento : visibles)
+            if (elemento.cuadro != cuadro)
+                elemento.visibilidad.agrega(cuadro);
+        visibles = dibujados;
+    }
+
+    /**
+     * Nos dice si el lienzo agrupa las aristas consecutivas. Una animación
+     * no las agrupa, pues cada arista cambia por separado.
+     * @return <tt>false</tt>.
+     */
+    @Override public boolean agrupaAristas() {
+        return false;
+    }
+
+    /**
+     * Escribe el documento animado con todos los cuadros dibujados y cierra
+     * su canal.
+     * @throws UncheckedIOException si ocurre un error al escribir o cerrar.
+     */
+    @Override public void cierra() {
+        buffer = new StringBuilder(TAMAÑO_BUFFER);
+        buffer.append("<?xml version='1.0' encoding='UTF-8' ?>\n"
+                      + "<svg xmlns='http://www.w3.org/2000/svg' width='")
+            .append(redondea(ancho)).append("' height='")
+            .append(redondea(largo)).append("'>\n<style>text{font-family:"
+                                            + "sans-serif;text-anchor:middle}"
+                                            + "</style>\n");
+        if (defineFlechas)
+            buffer.append("<defs><marker id='startarrow' markerWidth='5' "
+                          + "markerHeight='6' refX='2' refY='3' orient='auto'>"
+                          + "<polygon points='9 0,9 6,0 2.8' fill='black'/>"
+                          + "</marker><marker id='endarrow' markerWidth='5' "
+                          + "markerHeight='6' refX='2' refY='1.7' "
+                          + "orient='auto'><polygon points='0 0,5 1.5,0 3.2' "
+                          + "fill='black'/></marker></defs>\n");
+        buffer.append("<g>\n");
+        for (Elemento e = cabeza.siguiente; e != null; e = e.siguiente) {
+            escribeElemento(e);
+            if (buffer.length() >= TAMAÑO_BUFFER)
+                vacia();
+        }
+        buffer.append("</g>\n</svg>\n");
+        vacia();
+        try {
+            canal.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Regresa el número de cuadros dibujados.
+     * @return el número de cuadros dibujados.
+     */
+    public int getCuadros() {
+        return cuadros;
+    }
+
+    /**
+     * Regresa el número de elementos distintos de todos los cuadros.
+     * @return el número de elementos de la animación.
+     */
+    public int getElementos() {
+        return elementos.size();
+    }
+
+    /* Agrega una primitiva al cuadro y regresa el índice de sus valores. */
+    private int agrega(byte tipo, String cadena, int flechas) {
+        if (primitivas == tipos.length)
+            crece();
+        tipos[primitivas] = tipo;
+        cadenas[primitivas] = cadena;
+        this.flechas[primitivas] = (byte) flechas;
+        return primitivas++ * MAXIMO_VALORES;
+    }
+
+    /* Duplica la capacidad de los arreglos del cuadro. */
+    private void crece() {
+        int n = tipos.length * 2;
+        byte[] t = new byte[n];
+        int[] v = new int[n * MAXIMO_VALORES];
+        String[] c = new String[n];
+        byte[] f = new byte[n];
+        System.arraycopy(tipos, 0, t, 0, primitivas);
+        System.arraycopy(valores, 0, v, 0, primitivas * MAXIMO_VALORES);
+        System.arraycopy(cadenas, 0, c, 0, primitivas);
+        System.arraycopy(flechas, 0, f, 0, primitivas);
+        tipos = t;
+        valores = v;
+        cadenas = c;
+        flechas = f;
+        llaves = new String[n];
+    }
+
+    /* Regresa el índice de un color, agregándolo si es nuevo. */
+    private int color(String color) {
+        Integer indice = indicesColores.get(color);
+        if (indice == null) {
+            indice = colores.size();
+            colores.add(color);
+            indicesColores.put(color, indice);
+        }
+        return indice;
+    }
+
+    /* Redondea una coordenada al entero más cercano, como SVG. */
+    private static int redondea(double d) {
+        return (int) Math.round(d);
+    }
+
+    /* Regresa la llave recibida con el número de veces que ya apareció en
+       el cuadro, para que las llaves de un cuadro sean únicas. */
+    private static String ocurrencia(HashMap<String, Integer> ocurrencias,
+                                     String llave) {
+        Integer n = ocurrencias.get(llave);
+        ocurrencias.put(llave, (n == null) ? 1 : n + 1);
+        return (n == null) ? llave : llave + "#" + n;
+    }
+
+    /* Da a cada figura la llave del primer texto que se dibuja dentro de
+       ella antes de la siguiente figura, o una llave por orden si no hay. */
+    private void etiquetaFiguras(HashMap<String, Integer> ocurrencias) {
+        int figura = -1;
+        for (int i = 0; i < primitivas; i++) {
+            if (tipos[i] == CIRCULO || tipos[i] == RECTANGULO) {
+                figura = i;
+            } else if (tipos[i] == TEXTO && figura != -1) {
+                int v = i * MAXIMO_VALORES;
+                if (contiene(figura, valores[v], valores[v + 1], 0)) {
+                    llaves[figura] = "f" + tipos[figura] + ":" + llaves[i];
+                    figura = -1;
+                }
+            }
+        }
+        for (int i = 0; i < primitivas; i++)
+            if ((tipos[i] == CIRCULO || tipos[i] == RECTANGULO)
+                && llaves[i] == null)
+                llaves[i] = ocurrencia(ocurrencias, "f" + tipos[i]);
+    }
+
+    /* Nos dice si el punto está dentro de la figura, con el margen dado. */
+    private boolean contiene(int figura, int x, int y, int margen) {
+        int v = figura * MAXIMO_VALORES;
+        if (tipos[figura] == CIRCULO) {
+            long dx = x - valores[v], dy = y - valores[v + 1];
+            long r = valores[v + 2] + margen;
+            return dx * dx + dy * dy <= r * r;
+        }
+        return x >= valores[v] - margen && y >= valores[v + 1] - margen
+            && x <= valores[v] + valores[v + 2] + margen
+            && y <= valores[v + 1] + valores[v + 3] + margen;
+    }
+
+    /* Regresa las figuras del cuadro en las celdas que tocan, con el
+       margen. */
+    private HashMap<Long, ArrayList<Integer>> celdasDeFiguras() {
+        HashMap<Long, ArrayList<Integer>> celdas = new HashMap<>();
+        for (int i = 0; i < primitivas; i++) {
+            if (tipos[i] != CIRCULO && tipos[i] != RECTANGULO)
+                continue;
+            int v = i * MAXIMO_VALORES;
+            int x1, y1, x2, y2;
+            if (tipos[i] == CIRCULO) {
+                x1 = valores[v] - valores[v + 2];
+                y1 = valores[v + 1] - valores[v + 2];
+                x2 = valores[v] + valores[v + 2];
+                y2 = valores[v + 1] + valores[v + 2];
+            } else {
+                x1 = valores[v];
+                y1 = valores[v + 1];
+                x2 = valores[v] + valores[v + 2];
+                y2 = valores[v + 1] + valores[v + 3];
+            }
+            for (int cx = Math.floorDiv(x1 - MARGEN, CELDA);
+                 cx <= Math.floorDiv(x2 + MARGEN, CELDA); cx++)
+                for (int cy = Math.floorDiv(y1 - MARGEN, CELDA);
+                     cy <= Math.floorDiv(y2 + MARGEN, CELDA); cy++)
+                    celdas.computeIfAbsent(celda(cx, cy),
+                                           c -> new ArrayList<>()).add(i);
+        }
+        return celdas;
+    }
+
+    /* Regresa la llave de una celda. Multiplicar por un impar no repite
+       llaves y revuelve los bits, pues el hash de un Long empaquetado sería
+       cx ^ cy, que se repite mucho en árboles anchos y bajos. */
+    private static long celda(int cx, int cy) {
+        return (((long) cx << 32) | (cy & 0xffffffffL)) * 0x9e3779b97f4a7c15L;
+    }
+
+    /* Regresa la llave de la figura que contiene el punto, la de centro más
+       cercano si hay varias, o "?" si ninguna lo contiene. */
+    private String busca(HashMap<Long, ArrayList<Integer>> celdas,
+                         int x, int y) {
+        ArrayList<Integer> figuras = celdas.get(celda(Math.floorDiv(x, CELDA),
+                                                      Math.floorDiv(y, CELDA)));
+        if (figuras == null)
+            return "?";
+        int mejor = -1;
+        long distancia = Long.MAX_VALUE;
+        for (int figura : figuras) {
+            if (!contiene(figura, x, y, MARGEN))
+                continue;
+            int v = figura * MAXIMO_VALORES;
+            long cx = valores[v], cy = valores[v + 1];
+            if (tipos[figura] == RECTANGULO) {
+                cx += valores[v + 2] / 2;
+                cy += valores[v + 3] / 2;
+            }
+            long d = (x - cx) * (x - cx) + (y - cy) * (y - cy);
+            if (d < distancia) {
+                distancia = d;
+                mejor = figura;
+            }
+        }
+        return (mejor == -1) ? "?" : llaves[mejor];
+    }
+
+    /* Registra que el elemento se dibujó en el cuadro con los valores de la
+       primitiva i. */
+    private void actualiza(Elemento elemento, int i, int cuadro) {
+        int n = VALORES[elemento.tipo];
+        int v = i * MAXIMO_VALORES;
+        boolean cambia = elemento.valores == null;
+        for (int j = 0; !cambia && j < n; j++)
+            cambia = elemento.valores[j] != valores[v + j];
+        if (cambia) {
+            if (elemento.valores == null)
+                elemento.valores = new int[n];
+            System.arraycopy(valores, v, elemento.valores, 0, n);
+            elemento.cambios.agrega(cuadro);
+            for (int j = 0; j < n; j++)
+                elemento.cambios.agrega(valores[v + j]);
+        }
+        if (elemento.cuadro != cuadro - 1 || elemento.cuadro == -1)
+            elemento.visibilidad.agrega(cuadro);
+        elemento.cuadro = cuadro;
+    }
+
+    /* Escribe un elemento con sus animaciones. */
+    private void escribeElemento(Elemento e) {
+        switch (e.tipo) {
+            case CIRCULO:
+                buffer.append("<circle");
+                break;
+            case RECTANGULO:
+                buffer.append("<rect");
+                break;
+            case TEXTO:
+                buffer.append("<text");
+                break;
+            case LINEA:
+                buffer.append("<line stroke='#000' stroke-width='1'");
+                break;
+            default:
+                buffer.append("<path fill='none' marker-end='url(#endarrow)'");
+        }
+        if ((e.flechas & 1) != 0 && e.tipo == LINEA)
+            buffer.append(" marker-start='url(#startarrow)'");
+        if ((e.flechas & 2) != 0 && e.tipo == LINEA)
+            buffer.append(" marker-end='url(#endarrow)'");
+        String[] atributos = ATRIBUTOS[e.tipo];
+        for (int a = 0; a < atributos.length; a++)
+            buffer.append(' ').append(atributos[a]).append("='")
+                .append(valor(e, a, 1)).append('\'');
+        if (e.visibilidad.get(0) > 0)
+            buffer.append(" visibility='hidden'");
+        buffer.append('>');
+        for (int a = 0; a < atributos.length; a++)
+            escribeAnimacion(e, a);
+        escribeVisibilidad(e);
+        if (e.tipo == TEXTO)
+            escapa(e.cadena);
+        buffer.append("</").append(e.tipo == CIRCULO ? "circle"
+                                   : e.tipo == RECTANGULO ? "rect"
+                                   : e.tipo == TEXTO ? "text"
+                                   : e.tipo == LINEA ? "line" : "path")
+            .append(">\n");
+    }
+
+    /* Regresa el valor de un atributo del elemento, con los valores del
+       cambio que empieza en el índice recibido. */
+    private String valor(Elemento e, int atributo, int i) {
+        ArregloEnteros c = e.cambios;
+        switch (e.tipo) {
+            case CIRCULO:
+                if (atributo >= 3)
+                    return colores.get(c.get(i + atributo));
+                break;
+            case RECTANGULO:
+                if (atributo >= 4)
+                    return colores.get(c.get(i + atributo));
+                break;
+            case TEXTO:
+                if (atributo == 2)
+                    return colores.get(c.get(i + atributo));
+                break;
+            case CURVA:
+                if (atributo == 1)
+                    return "rgb(" + c.get(i + 6) + "," + c.get(i + 6) + ","
+                        + c.get(i + 6) + ")";
+                return "M" + c.get(i) + " " + c.get(i + 1) + " Q " + c.get(i + 2)
+                    + " " + c.get(i + 3) + " " + c.get(i + 4) + " "
+                    + c.get(i + 5);
+        }
+        return String.valueOf(c.get(i + atributo));
+    }
+
+    /* Escribe la animación de un atributo, si cambia. */
+    private void escribeAnimacion(Elemento e, int atributo) {
+        int paso = VALORES[e.tipo] + 1;
+        String anterior = valor(e, atributo, 1);
+        StringBuilder lista = null, tiempos = null;
+        for (int i = paso; i < e.cambios.getElementos(); i += paso) {
+            String actual = valor(e, atributo, i + 1);
+            if (actual.equals(anterior))
+                continue;
+            if (lista == null) {
+                lista = new StringBuilder(anterior);
+                tiempos = new StringBuilder("0");
+            }
+            lista.append(';').append(actual);
+            tiempos.append(';').append(tiempo(e.cambios.get(i)));
+            anterior = actual;
+        }
+        if (lista != null)
+            escribeAnimate(ATRIBUTOS[e.tipo][atributo], lista, tiempos);
+    }
+
+    /* Escribe la animación de la visibilidad, si cambia. */
+    private void escribeVisibilidad(Elemento e) {
+        ArregloEnteros v = e.visibilidad;
+        if (v.get(0) == 0 && v.getElementos() == 1)
+            return;
+        StringBuilder lista = new StringBuilder(v.get(0) == 0 ? "visible"
+                                                              : "hidden");
+        StringBuilder tiempos = new StringBuilder("0");
+        for (int i = (v.get(0) == 0) ? 1 : 0; i < v.getElementos(); i++) {
+            lista.append(i % 2 == 0 ? ";visible" : ";hidden");
+            tiempos.append(';').append(tiempo(v.get(i)));
+        }
+        escribeAnimate("visibility", lista, tiempos);
+    }
+
+    /* Escribe una animación discreta que se queda en su último valor. */
+    private void escribeAnimate(String atributo, CharSequence lista,
+                                CharSequence tiempos) {
+        buffer.append("<animate attributeName='").append(atributo)
+            .append("' values='").append(lista)
+            .append("' keyTimes='").append(tiempos)
+            .append("' dur='").append((long) cuadros * milisegundos)
+            .append("ms' calcMode='discrete' fill='freeze'/>");
+    }
+
+    /* Regresa el inicio de un cuadro como fracción de la duración total,
+       con los decimales suficientes para distinguir cuadros, redondeada
+       hacia arriba en los empates y sin ceros al final. */
+    private String tiempo(int cuadro) {
+        int decimales = String.valueOf(cuadros).length() + 1;
+        long escala = 1;
+        for (int i = 0; i < decimales; i++)
+            escala *= 10;
+        long t = (2 * cuadro * escala + cuadros) / (2L * cuadros);
+        if (t % escala == 0)
+            return String.valueOf(t / escala);
+        String fraccion = String.valueOf(escala + t % escala);
+        int fin = fraccion.length();
+        while (fraccion.charAt(fin - 1) == '0')
+            fin--;
+        return (t / escala) + "." + fraccion.substring(1, fin);
+    }
+
+    /* Escribe una cadena escapando los caracteres especiales de XML. */
+    private void escapa(String cadena) {
+        for (int i = 0; i < cadena.length(); i++) {
+            char c = cadena.charAt(i);
+            if (c == '<')
+                buffer.append("&lt;");
+            else if (c == '>')
+                buffer.append("&gt;");
+            else if (c == '&')
+                buffer.append("&amp;");
+            else
+                buffer.append(c);
+        }
+    }
+
+    /* Escribe el búfer en el canal y lo vacía. */
+    private void vacia() {
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toString()
+                                           .getBytes(StandardCharsets.UTF_8));
+        try {
+            while (bytes.hasRemaining())
+                canal.write(bytes);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        buffer.setLength(0);
+    }
+}
@@ -0,0 +1,178 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p> Clase para la caché en memoria de distribuciones de imágenes. </p>
+ *
+ * <p> La caché guarda, para cada documento sin operaciones, la
+ *  {@link Composicion} con su distribución ya calculada, con la llave de
+ *  {@link CacheImagenes#llave} sobre la estructura, los enteros y las
+ *  opciones que cambian la distribución (el número máximo de vértices y si
+ *  se agrupan las aristas). Reproducir la composición en un lienzo no
+ *  construye la estructura ni calcula su distribución, por lo que graficar
+ *  otra vez el mismo documento, en otro formato o con otro estilo, sólo
+ *  cuesta escribir la imagen. </p>
+ *
+ * <p> La caché tiene un tamaño máximo en bytes estimados
+ *  ({@link Composicion#getBytesEstimados}); al rebasarlo, se eliminan las
+ *  composiciones usadas hace más tiempo. Los métodos están sincronizados,
+ *  por lo que un servidor o un lote pueden compartir la caché entre
+ *  hilos. </p>
+ */
+public class CacheComposiciones {
+
+    /* Clase interna privada para las composiciones guardadas. */
+    private static class Entrada {
+
+        /* La composición. */
+        private Composicion composicion;
+        /* Los bytes estimados de la composición. */
+        private long bytes;
+
+        /* Construye una entrada para la composición. */
+        Entrada(Composicion composicion) {
+            this.composicion = composicion;
+            bytes = composicion.getBytesEstimados();
+        }
+    }
+
+    /* Las composiciones, en orden de uso. */
+    private LinkedHashMap<String, Entrada> composiciones;
+
+    /* El tamaño máximo de la caché en bytes estimados. */
+    private long maximo;
+
+    /* El tamaño de la caché en bytes estimados. */
+    private long bytes;
+
+    /* El número de búsquedas que encontraron su composición. */
+    private long aciertos;
+
+    /* El número de búsquedas que no encontraron su composición. */
+    private long fallos;
+
+    /* El número de composiciones eliminadas para no rebasar el tamaño. */
+    private long desalojos;
+
+    /**
+     * Construye una caché vacía con el tamaño máximo recibido.
+     * @param maximo el tamaño máximo de la caché en bytes estimados.
+     */
+    public CacheComposiciones(long maximo) {
+        this.maximo = maximo;
+        composiciones = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Regresa la composición de un documento, dibujándola si no está en la
+     * caché y guardándola. Dos hilos que no encuentran el mismo documento
+     * al mismo tiempo lo dibujan ambos.
+     * @param documento el documento, sin operaciones.
+     * @param presupuesto el número máximo de vértices a dibujar de árboles y
+     *        gráficas, o 0 para dibujarlos completos.
+     * @param agrupaAristas si la composición agrupa las aristas.
+     * @return la composición del documento.
+     */
+    public Composicion composicion(Documento documento, int presupuesto,
+                                   boolean agrupaAristas) {
+        String llave = CacheImagenes.llave(documento.getEstructura(),
+                                           documento.getEnteros(),
+                                           String.format("l=%d a=%b",
+                                                         presupuesto,
+                                                         agrupaAristas));
+        Composicion composicion = busca(llave);
+        if (composicion != null)
+            return composicion;
+        composicion = new Composicion(agrupaAristas);
+        Graficador.dibuja(documento.getEstructura(), documento.getEnteros(),
+                          composicion, presupuesto);
+        guarda(llave, composicion);
+        return composicion;
+    }
+
+    /**
+     * Busca la composición con la llave recibida y la marca como usada.
+     * @param llave la llave de la composición.
+     * @return la composición, o <tt>null</tt> si no está en la caché.
+     */
+    public synchronized Composicion busca(String llave) {
+        Entrada entrada = composiciones.get(llave);
+        if (entrada == null) {
+            fallos++;
+            return null;
+        }
+        aciertos++;
+        return entrada.composicion;
+    }
+
+    /**
+     * Guarda la composición con la llave recibida, y elimina las usadas
+     * hace más tiempo hasta que la caché no rebase su tamaño. Una
+     * composición más grande que la caché no se guarda.
+     * @param llave la llave de la composición.
+     * @param composicion la composición.
+     */
+    public synchronized void guarda(String llave, Composicion composicion) {
+        Entrada entrada = new Entrada(composicion);
+        if (entrada.bytes > maximo)
+            return;
+        Entrada anterior = composiciones.put(llave, entrada);
+        if (anterior != null)
+            bytes -= anterior.bytes;
+        bytes += entrada.bytes;
+        Iterator<Map.Entry<String, Entrada>> it =
+            composiciones.entrySet().iterator();
+        while (bytes > maximo) {
+            bytes -= it.next().getValue().bytes;
+            it.remove();
+            desalojos++;
+        }
+    }
+
+    /**
+     * Regresa el número de búsquedas que encontraron su composición.
+     * @return el número de aciertos.
+     */
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    /**
+     * Regresa el número de búsquedas que no encontraron su composición.
+     * @return el número de fallos.
+     */
+    public synchronized long getFallos() {
+        return fallos;
+    }
+
+    /**
+     * Regresa el número de composiciones eliminadas para no rebasar el
+     * tamaño de la caché.
+     * @return el número de desalojos.
+     */
+    public synchronized long getDesalojos() {
+        return desalojos;
+    }
+
+    /**
+     * Regresa el tamaño de la caché.
+     * @return el tamaño de la caché en bytes estimados.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Regresa una representación en cadena de los contadores de la caché.
+     * @return una representación en cadena de los contadores de la caché.
+     */
+    @Override public synchronized String toString() {
+        return String.format("Composiciones: %d aciertos, %d fallos, "
+                             + "%d desalojos, %d bytes en %d composiciones",
+                             aciertos, fallos, desalojos, bytes,
+                             composiciones.size());
+    }
+}
@@ -0,0 +1,277 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import mx.unam.ciencias.edd.ArregloEnteros;
+
+/**
+ * <p> Clase para la caché en disco de imágenes terminadas. </p>
+ *
+ * <p> Cada imagen se guarda en un archivo del directorio de la caché cuyo
+ *  nombre es su llave: el SHA-256 de la estructura, de los enteros leídos
+ *  (sin importar espacios ni comentarios de la entrada) y de las opciones
+ *  que cambian los bytes de la imagen. Una imagen de la caché se copia a la
+ *  salida con {@link FileChannel#transferTo}, sin construir ni dibujar la
+ *  estructura. </p>
+ *
+ * <p> La caché tiene un tamaño máximo; al rebasarlo, se eliminan las
+ *  imágenes usadas hace más tiempo, según su fecha de modificación, que se
+ *  actualiza en cada uso. Las imágenes se guardan con un movimiento atómico,
+ *  por lo que varios procesos pueden compartir el directorio. </p>
+ *
+ * <p> El directorio se marca como caché con un archivo {@link #MARCA}, y no
+ *  se acepta un directorio sin la marca con archivos que no son de la
+ *  caché. Al podar sólo se cuentan y eliminan los archivos cuyo nombre es
+ *  una llave, y los temporales que dejó un proceso interrumpido. </p>
+ */
+public class CacheImagenes {
+
+    /* La versión de las llaves; cambia si cambia el dibujo de las imágenes. */
+    private static final String VERSION = "DSV1";
+
+    /* El número de enteros que se agregan juntos al resumen. */
+    private static final int ENTEROS_POR_BLOQUE = 1 << 12;
+
+    /** El archivo que marca un directorio como caché de imágenes. */
+    public static final String MARCA = ".dsv-cache";
+
+    /* La antigüedad en milisegundos a partir de la cual un archivo temporal
+       se considera abandonado. */
+    private static final long TEMPORAL_ABANDONADO = 60L * 60 * 1000;
+
+    /* El directorio de la caché. */
+    private Path directorio;
+
+    /* El tamaño máximo de la caché en bytes. */
+    private long maximo;
+
+    /**
+     * Construye una caché en el directorio recibido, creándolo si no
+     * existe.
+     * @param directorio el directorio de la caché.
+     * @param maximo el tamaño máximo de la caché en bytes.
+     * @throws ExcepcionDSV si el directorio no puede crearse, o si tiene
+     *         archivos y no es una caché.
+     */
+    public CacheImagenes(Path directorio, long maximo) {
+        this.directorio = directorio;
+        this.maximo = maximo;
+        try {
+            Files.createDirectories(directorio);
+            marca();
+        } catch (IOException ioe) {
+            throw new ExcepcionDSV("No pudo crearse el directorio de la caché.", ioe);
+        }
+    }
+
+    /* Marca el directorio como caché si sólo tiene imágenes y temporales
+       de la caché; si tiene otros archivos, debe tener ya la marca. */
+    private void marca() throws IOException {
+        Path marca = directorio.resolve(MARCA);
+        if (Files.exists(marca))
+            return;
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            if (archivos.map(a -> a.getFileName().toString())
+                .anyMatch(n -> !esLlave(n) && !esTemporal(n)))
+                throw new ExcepcionDSV("El directorio " + directorio
+                                       + " no está vacío y no es una caché.");
+        }
+        try {
+            Files.createFile(marca);
+        } catch (FileAlreadyExistsException faee) {
+            // Otro proceso lo marcó.
+        }
+    }
+
+    /* Nos dice si el nombre de un archivo es una llave. */
+    private static boolean esLlave(String nombre) {
+        if (nombre.length() != 64)
+            return false;
+        for (int i = 0; i < nombre.length(); i++) {
+            char c = nombre.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f'))
+                return false;
+        }
+        return true;
+    }
+
+    /* Nos dice si el nombre de un archivo es el de un temporal de la
+       caché. */
+    private static boolean esTemporal(String nombre) {
+        return nombre.startsWith("dsv") && nombre.endsWith(".tmp");
+    }
+
+    /**
+     * Regresa la llave de la imagen de una estructura. La llave también
+     * sirve para la distribución de la imagen en {@link
+     * CacheComposiciones}.
+     * @param estructura la estructura.
+     * @param enteros los enteros de la estructura.
+     * @param opciones las opciones que cambian los bytes de la imagen.
+     * @return la llave de la imagen, en hexadecimal.
+     */
+    public static String llave(Estructura estructura, ArregloEnteros enteros,
+                        String opciones) {
+        MessageDigest resumen;
+        try {
+            resumen = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+        resumen.update((VERSION + " " + opciones + " " + estructura.name()
+                        + " " + enteros.getElementos() + "\n")
+                       .getBytes(StandardCharsets.UTF_8));
+        ByteBuffer bloque = ByteBuffer.allocate(4 * ENTEROS_POR_BLOQUE);
+        for (int i = 0; i < enteros.getElementos(); i++) {
+            if (!bloque.hasRemaining()) {
+                resumen.update(bloque.flip());
+                bloque.clear();
+            }
+            bloque.putInt(enteros.get(i));
+        }
+        resumen.update(bloque.flip());
+        StringBuilder llave = new StringBuilder();
+        for (byte b : resumen.digest())
+            llave.append(String.format("%02x", b));
+        return llave.toString();
+    }
+
+    /**
+     * Abre la imagen con la llave recibida, si está en la caché, y la marca
+     * como usada.
+     * @param llave la llave de la imagen.
+     * @return el canal de la imagen para leerla, o <tt>null</tt> si la
+     *         imagen no está en la caché.
+     * @throws IOException si ocurre un error al abrir la imagen.
+     */
+    public FileChannel abre(String llave) throws IOException {
+        Path archivo = directorio.resolve(llave);
+        FileChannel imagen;
+        try {
+            imagen = FileChannel.open(archivo);
+        } catch (NoSuchFileException nsfe) {
+            return null;
+        }
+        marcaUso(archivo);
+        return imagen;
+    }
+
+    /**
+     * Regresa un archivo temporal en el directorio de la caché, donde puede
+     * escribirse una imagen antes de guardarla con {@link #guarda}.
+     * @return la ruta del archivo temporal.
+     * @throws IOException si no puede crearse el archivo.
+     */
+    public Path temporal() throws IOException {
+        return Files.createTempFile(directorio, "dsv", ".tmp");
+    }
+
+    /**
+     * Guarda en la caché la imagen escrita en un archivo temporal, y elimina
+     * las imágenes usadas hace más tiempo si la caché rebasa su tamaño.
+     * @param llave la llave de la imagen.
+     * @param temporal el archivo temporal con la imagen; se mueve a la
+     *        caché.
+     * @throws IOException si no puede guardarse la imagen.
+     */
+    public void guarda(String llave, Path temporal) throws IOException {
+        Files.move(temporal, directorio.resolve(llave),
+                   StandardCopyOption.ATOMIC_MOVE,
+                   StandardCopyOption.REPLACE_EXISTING);
+        poda();
+    }
+
+    /**
+     * Copia el contenido de un canal de archivo a otro canal.
+     * @param origen el canal de archivo.
+     * @param destino el canal donde se copia.
+     * @throws IOException si ocurre un error al copiar.
+     */
+    public static void transfiere(FileChannel origen, WritableByteChannel destino)
+        throws IOException {
+        long n = origen.size();
+        long copiados = 0;
+        while (copiados < n)
+            copiados += origen.transferTo(copiados, n - copiados, destino);
+    }
+
+    /* Marca la imagen como usada ahora. */
+    private static void marcaUso(Path archivo) {
+        try {
+            Files.setLastModifiedTime(archivo,
+                FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ioe) {
+            // Otro proceso la eliminó; la copia abierta sigue siendo válida.
+        }
+    }
+
+    /* Elimina los temporales abandonados, y las imágenes usadas hace más
+       tiempo hasta que la caché no rebase su tamaño. Los demás archivos del
+       directorio no se tocan. */
+    private void poda() throws IOException {
+        List<Imagen> imagenes = new ArrayList<>();
+        long total = 0;
+        long abandono = System.currentTimeMillis() - TEMPORAL_ABANDONADO;
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            for (Path archivo : (Iterable<Path>)archivos::iterator) {
+                String nombre = archivo.getFileName().toString();
+                boolean temporal = esTemporal(nombre);
+                if (!temporal && !esLlave(nombre))
+                    continue;
+                try {
+                    Imagen imagen = new Imagen(archivo);
+                    if (!temporal) {
+                        imagenes.add(imagen);
+                        total += imagen.tamaño;
+                    } else if (imagen.uso < abandono) {
+                        Files.deleteIfExists(archivo);
+                    }
+                } catch (NoSuchFileException nsfe) {
+                    // Otro proceso la eliminó.
+                }
+            }
+        }
+        if (total <= maximo)
+            return;
+        imagenes.sort(Comparator.comparingLong(imagen -> imagen.uso));
+        for (Imagen imagen : imagenes) {
+            if (total <= maximo)
+                break;
+            Files.deleteIfExists(imagen.archivo);
+            total -= imagen.tamaño;
+        }
+    }
+
+    /* Clase interna privada para las imágenes de la caché al podarla. */
+    private static class Imagen {
+
+        /* El archivo de la imagen. */
+        private Path archivo;
+        /* El tamaño de la imagen en bytes. */
+        private long tamaño;
+        /* El último uso de la imagen, en milisegundos. */
+        private long uso;
+
+        /* Lee el tamaño y el último uso de la imagen. */
+        Imagen(Path archivo) throws IOException {
+            this.archivo = archivo;
+            tamaño = Files.size(archivo);
+            uso = Files.getLastModifiedTime(archivo).toMillis();
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package mx.unam.ciencias.edd.dsv;
+
+/**
+ * <p> Clase para composiciones: imágenes guardadas en memoria como una
+ *  sucesión de primitivas. </p>
+ *
+ * <p> Una composición es un {@link Lienzo} que, en lugar de escribir las
+ *  primitivas que recibe, las guarda en arreglos compactos (tipo,
+ *  coordenadas, estilo y texto de cada primitiva), para poder reproducirlas
+ *  después, completas o por regiones, en otros lienzos. </p>
+ */
+public class Composicion implements Lienzo {
+
+    /** Tipo de las primitivas que son círculos. */
+    public static final byte CIRCULO = 0;
+
+    /** Tipo de las primitivas que son rectángulos. */
+    public static final byte RECTANGULO = 1;
+
+    /** Tipo de las primitivas que son etiquetas de texto. */
+    public static final byte TEXTO = 2;
+
+    /** Tipo de las primitivas que son líneas. */
+    public static final byte LINEA = 3;
+
+    /** Tipo de las primitivas que son curvas. */
+    public static final byte CURVA = 4;
+
+    /* Número de coordenadas que se guardan por primitiva. */
+    private static final int COORDENADAS = 6;
+
+    /* Bandera de estilo de las líneas con flecha al inicio. */
+    private static final int FLECHA_INICIO = 1;
+
+    /* Bandera de estilo de las líneas con flecha al final. */
+    private static final int FLECHA_FINAL = 2;
+
+    /* El ancho de la imagen. */
+    private double ancho;
+
+    /* El largo de la imagen. */
+    private double largo;
+
+    /* Si la imagen usa flechas. */
+    private boolean defineFlechas;
+
+    /* Si la composición pide a los graficadores agrupar las aristas. */
+    private boolean agrupaAristas;
+
+    /* Número de primitivas guardadas. */
+    private int primitivas;
+
+    /* El tipo de cada primitiva. */
+    private byte[] tipos;
+
+    /* Las coordenadas de cada primitiva, seis por primitiva. */
+    private double[] coordenadas;
+
+    /* El estilo de cada primitiva: colores, tamaño de texto o flechas. */
+    private int[] estilos;
+
+    /* El texto de cada primitiva; null si no es etiqueta de texto. */
+    private String[] textos;
+
+    /* Tabla de los colores usados, indexada por el estilo. */
+    private String[] colores;
+
+    /* Número de colores en la tabla. */
+    private int numeroColores;
+
+    /**
+     * Construye una composición vacía.
+     */
+    public Composicion() {
+        this(false);
+    }
+
+    /**
+     * Construye una composición vacía que pide, o no, a los graficadores
+     * agrupar las aristas.
+     * @param agrupaAristas si es <tt>true</tt>, los graficadores dibujan en
+     *        la composición todas las aristas antes que los vértices.
+     */
+    public Composicion(boolean agrupaAristas) {
+        this.agrupaAristas = agrupaAristas;
+        tipos = new byte[64];
+        coordenadas = new double[64 * COORDENADAS];
+        estilos = new int[64];
+        textos = new String[64];
+        colores = new String[8];
+    }
+
+    @Override public void escribeCabecera(double ancho, double largo,
+                                          boolean defineFlechas) {
+        this.ancho = ancho;
+        this.largo = largo;
+        this.defineFlechas = defineFlechas;
+    }
+
+    @Override public void dibujaCirculo(double centroX, double centroY,
+                                        double radio, String colorFondo,
+                                        String colorBorde) {
+        int i = agrega(CIRCULO, (color(colorFondo) << 16) | color(colorBorde));
+        coordenadas[i] = centroX;
+        coordenadas[i + 1] = centroY;
+        coordenadas[i + 2] = radio;
+    }
+
+    @Override public void dibujaRectangulo(double x, double y, double ancho,
+                                           double largo, String colorFondo,
+                                           String colorBorde) {
+        int i = agrega(RECTANGULO, (color(colorFondo) << 16) | color(colorBorde));
+        coordenadas[i] = x;
+        coordenadas[i + 1] = y;
+        coordenadas[i + 2] = ancho;
+        coordenadas[i + 3] = largo;
+    }
+
+    @Override public void dibujaTexto(double x, double y, String cadena,
+                                      String colorTexto, int size) {
+        int i = agrega(TEXTO, (color(colorTexto) << 16) | size);
+        coordenadas[i] = x;
+        coordenadas[i + 1] = y;
+        textos[primitivas - 1] = cadena;
+    }
+
+    @Override public void dibujaLinea(double xInicio, double yInicio,
+                                      double xFinal, double yFinal,
+                                      boolean flechaInicio,
+                                      boolean flechaFinal) {
+        int i = agrega(LINEA, (flechaInicio ? FLECHA_INICIO : 0)
+                              | (flechaFinal ? FLECHA_FINAL : 0));
+        coordenadas[i] = xInicio;
+        coordenadas[i + 1] = yInicio;
+        coordenadas[i + 2] = xFinal;
+        coordenadas[i + 3] = yFinal;
+    }
+
+    @Override public void dibujaCurva(double x1, double y1, double curvaX,
+                                      double curvaY, double x2, double y2,
+                                      int color) {
+        int i = agrega(CURVA, color);
+        coordenadas[i] = x1;
+        coordenadas[i + 1] = y1;
+        coordenadas[i + 2] = curvaX;
+        coordenadas[i + 3] = curvaY;
+        coordenadas[i + 4] = x2;
+        coordenadas[i + 5] = y2;
+    }
+
+    @Override public void escribePiecera() {}
+
+    @Override public boolean agrupaAristas() {
+        return agrupaAristas;
+    }
+
+    @Override public void cierra() {}
+
+    /**
+     * Regresa el ancho de la imagen.
+     * @return el ancho de la imagen.
+     */
+    public double getAncho() {
+        return ancho;
+    }
+
+    /**
+     * Regresa el largo de la imagen.
+     * @return el largo de la imagen.
+     */
+    public double getLargo() {
+        return largo;
+    }
+
+    /**
+     * Nos dice si la imagen usa flechas.
+     * @return <tt>true</tt> si la imagen usa flechas, <tt>false</tt> en
+     *         otro caso.
+     */
+    public boolean defineFlechas() {
+        return defineFlechas;
+    }
+
+    /**
+     * Regresa el número de primitivas de la composición.
+     * @return el número de primitivas de la composición.
+     */
+    public int getPrimitivas() {
+        return primitivas;
+    }
+
+    /**
+     * Regresa una estimación de los bytes que ocupa la composición en
+     * memoria: sus arreglos completos y las cadenas de sus etiquetas.
+     * @return el número estimado de bytes de la composición.
+     */
+    public long getBytesEstimados() {
+        long bytes = 64 + tipos.length + 8L * coordenadas.length
+            + 4L * estilos.length + 8L * textos.length + 8L * colores.length;
+        for (int i = 0; i < primitivas; i++)
+            if (textos[i] != null)
+                bytes += 40 + textos[i].length();
+        for (int i = 0; i < numeroColores; i++)
+            bytes += 40 + colores[i].length();
+        return bytes;
+    }
+
+    /**
+     * Regresa el tipo de la <i>i</i>-ésima primitiva.
+     * @param i el índice de la primitiva.
+     * @return el tipo de la primitiva: {@link #CIRCULO}, {@link #RECTANGULO},
+     *         {@link #TEXTO}, {@link #LINEA} o {@link #CURVA}.
+     */
+    public byte getTipo(int i) {
+        return tipos[i];
+    }
+
+    /**
+     * Guarda en el arreglo recibido la caja que contiene a la <i>i</i>-ésima
+     * primitiva, como <tt>{minX, minY, maxX, maxY}</tt>. La caja de las
+     * etiquetas de texto es aproximada.
+     * @param i el índice de la primitiva.
+     * @param caja un arreglo de al menos cuatro elementos.
+     */
+    public void limites(int i, double[] caja) {
+        int c = i * COORDENADAS;
+        double x = coordenadas[c], y = coordenadas[c + 1];
+        switch (tipos[i]) {
+            case CIRCULO:
+                double r = coordenadas[c + 2];
+                caja[0] = x - r;
+                caja[1] = y - r;
+                caja[2] = x + r;
+                caja[3] = y + r;
+                break;
+            case RECTANGULO:
+                caja[0] = x;
+                caja[1] = y;
+                caja[2] = x + coordenadas[c + 2];
+                caja[3] = y + coordenadas[c + 3];
+                break;
+            case TEXTO:
+                int size = estilos[i] & 0xffff;
+                double mitad = textos[i].length() * size * 0.3;
+                caja[0] = x - mitad;
+                caja[1] = y - size;
+                caja[2] = x + mitad;
+                caja[3] = y + size * 0.3;
+                break;
+            case LINEA:
+                caja[0] = Math.min(x, coordenadas[c + 2]) - 5;
+                caja[1] = Math.min(y, coordenadas[c + 3]) - 5;
+                caja[2] = Math.max(x, coordenadas[c + 2]) + 5;
+                caja[3] = Math.max(y, coordenadas[c + 3]) + 5;
+                break;
+            default:
+                caja[0] = Math.min(x, Math.min(coordenadas[c + 2], coordenadas[c + 4])) - 5;
+                caja[1] = Math.min(y, Math.min(coordenadas[c + 3], coordenadas[c + 5])) - 5;
+                caja[2] = Math.max(x, Math.max(coordenadas[c + 2], coordenadas[c + 4])) + 5;
+                caja[3] = Math.max(y, Math.max(coordenadas[c + 3], coordenadas[c + 5])) + 5;
+        }
+    }
+
+    /**
+     * Dibuja la <i>i</i>-ésima primitiva en el lienzo recibido.
+     * @param i el índice de la primitiva.
+     * @param lienzo el lienzo donde se dibuja la primitiva.
+     */
+    public void dibuja(int i, Lienzo lienzo) {
+        int c = i * COORDENADAS;
+        int estilo = estilos[i];
+        switch (tipos[i]) {
+            case CIRCULO:
+                lienzo.dibujaCirculo(coordenadas[c], coordenadas[c + 1],
+                                     coordenadas[c + 2], colores[estilo >>> 16],
+                                     colores[estilo & 0xffff]);
+                break;
+            case RECTANGULO:
+                lienzo.dibujaRectangulo(coordenadas[c], coordenadas[c + 1],
+                                        coordenadas[c + 2], coordenadas[c + 3],
+                                        colores[estilo >>> 16],
+                                        colores[estilo & 0xffff]);
+                break;
+            case TEXTO:
+                lienzo.dibujaTexto(coordenadas[c], coordenadas[c + 1], textos[i],
+                                   colores[estilo >>> 16], estilo & 0xffff);
+                break;
+            case LINEA:
+                lienzo.dibujaLinea(coordenadas[c], coordenadas[c + 1],
+                                   coordenadas[c + 2], coordenadas[c + 3],
+                                   (estilo & FLECHA_INICIO) != 0,
+                                   (estilo & FLECHA_FINAL) != 0);
+                break;
+            default:
+                lienzo.dibujaCurva(coordenadas[c], coordenadas[c + 1],
+                                   coordenadas[c + 2], coordenadas[c + 3],
+                                   coordenadas[c + 4], coordenadas[c + 5],
+                                   estilo);
+        }
+    }
+
+    /**
+     * Reproduce la composición completa en el lienzo recibido: cabecera,
+     * primitivas en el orden en que se dibujaron, y piecera.
+     * @param lienzo el lienzo donde se reproduce la composición.
+     */
+    public void reproduce(Lienzo lienzo) {
+        lienzo.escribeCabecera(ancho, largo, defineFlechas);
+        for (int i = 0; i < primitivas; i++)
+            dibuja(i, lienzo);
+        lienzo.escribePiecera();
+    }
+
+    /* Agrega una primitiva y regresa el índice de su primera coordenada. */
+    private int agrega(byte tipo, int estilo) {
+        if (primitivas == tipos.length)
+            crece();
+        tipos[primitivas] = tipo;
+        estilos[primitivas] = estilo;
+        return primitivas++ * COORDENADAS;
+    }
+
+    /* Duplica la capacidad de los arreglos de primitivas. */
+    private void crece() {
+        int n = tipos.length * 2;
+        byte[] t = new byte[n];
+        double[] c = new double[n * COORDENADAS];
+        int[] e = new int[n];
+        String[] s = new String[n];
+        System.arraycopy(tipos, 0, t, 0, primitivas);
+        System.arraycopy(coordenadas, 0, c, 0, primitivas * COORDENADAS);
+        System.arraycopy(estilos, 0, e, 0, primitivas);
+        System.arraycopy(textos, 0, s, 0, primitivas);
+        tipos = t;
+        coordenadas = c;
+        estilos = e;
+        textos = s;
+    }
+
+    /* Regresa el índice del color en la tabla, agregándolo si no está. */
+    private int color(String color) {
+        for (int i = 0; i < numeroColores; i++)
+            if (colores[i].equals(color))
+                return i;
+        if (numeroColores == colores.length) {
+            String[] c = new String[numeroColores * 2];
+            System.arraycopy(colores, 0, c, 0, numeroColores);
+            colores = c;
+        }
+        colores[numeroColores] = color;
+        return numeroColores++;
+    }
+}
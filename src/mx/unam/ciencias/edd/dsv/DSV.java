@@ -1,21 +1,766 @@
 package mx.unam.ciencias.edd.dsv;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+import mx.unam.ciencias.edd.ArregloEnteros;
 import mx.unam.ciencias.edd.Lista;
 
 /**
- * Proyecto 1: Graficador de estructuras de datos
+ * <p> Proyecto 1: Graficador de estructuras de datos </p>
+ *
+ * <p> Cada instancia grafica los documentos de un {@link LectorArgumentos}
+ *  sin estado compartido, y reporta los errores con {@link ExcepcionDSV};
+ *  sólo {@link #main} termina el programa o pone AWT en modo sin pantalla.
+ *  Para graficar una estructura en una salida propia basta {@link
+ *  LectorDocumentos} y {@link Graficador#dibuja}. </p>
  */
 public class DSV {
 
+    /* Tamaño del búfer del compresor. */
+    private static final int TAMAÑO_BUFFER_GZIP = 1 << 16;
+
+    /**
+     * Clase interna privada para flujos gzip con nivel de compresión
+     * configurable.
+     */
+    private static class FlujoGZIP extends GZIPOutputStream {
+
+        /**
+         * Construye un flujo gzip sobre el flujo recibido.
+         * @param salida el flujo donde se escriben los bytes comprimidos.
+         * @param nivel el nivel de compresión.
+         */
+        public FlujoGZIP(OutputStream salida, int nivel) throws IOException {
+            super(salida, TAMAÑO_BUFFER_GZIP);
+            def.setLevel(nivel);
+        }
+    }
+
+    /* Los argumentos de la ejecución. */
+    private LectorArgumentos argumentos;
+
+    /* La caché de imágenes, o null si no se usa. */
+    private CacheImagenes cache;
+
+    /* La caché de distribuciones, o null si no se usa. */
+    private CacheComposiciones composiciones;
+
+    /* Las estadísticas de la ejecución, o null si no se miden. */
+    private Estadisticas estadisticas;
+
+    /* El registro del documento que se grafica, o null si no se mide. */
+    private Estadisticas.Registro registro;
+
+    /**
+     * Construye un graficador con los argumentos recibidos.
+     * @param argumentos los argumentos de la ejecución.
+     */
+    public DSV(LectorArgumentos argumentos) {
+        this(argumentos, (argumentos.getTamañoComposiciones() > 0)
+             ? new CacheComposiciones(argumentos.getTamañoComposiciones())
+             : null,
+             argumentos.mideEstadisticas() ? new Estadisticas() : null);
+    }
+
+    /**
+     * Construye un graficador con los argumentos recibidos, que comparte la
+     * caché de distribuciones y las estadísticas recibidas.
+     * @param argumentos los argumentos de la ejecución.
+     * @param composiciones la caché de distribuciones, o <tt>null</tt> si
+     *        no se usa.
+     * @param estadisticas las estadísticas donde se registran las fases, o
+     *        <tt>null</tt> si no se miden.
+     */
+    DSV(LectorArgumentos argumentos, CacheComposiciones composiciones,
+        Estadisticas estadisticas) {
+        this.argumentos = argumentos;
+        this.composiciones = composiciones;
+        this.estadisticas = estadisticas;
+        if (argumentos.getDirectorioCache() != null)
+            cache = new CacheImagenes(Paths.get(argumentos.getDirectorioCache()),
+                                      argumentos.getTamañoCache());
+    }
+
     public static void main(String[] args) {
-        Lista<Integer> lista = LectorArgumentos.lee(args);
-        Estructura estructura = LectorArgumentos.getEstructura();
-        if (estructura.equals(Estructura.L) || estructura.equals(Estructura.S)
-            || estructura.equals(Estructura.Q))
-                new GraficadorEstructuraLineal(estructura, lista);
-        else if (estructura.equals(Estructura.G))
-            new GraficadorGrafica(lista);
+        if (System.getProperty("java.awt.headless") == null)
+            System.setProperty("java.awt.headless", "true");
+        try {
+            DSV dsv = new DSV(new LectorArgumentos(args));
+            dsv.ejecuta();
+            if (dsv.composiciones != null)
+                System.err.println(dsv.composiciones);
+            if (dsv.estadisticas != null)
+                System.err.println(dsv.estadisticas);
+        } catch (ExcepcionDSV e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Lee las entradas y grafica cada documento en sus salidas, convierte
+     * la entrada al formato binario, inicia el servidor, grafica un lote o
+     * vigila la entrada, según se pidió.
+     * @throws ExcepcionDSV si ocurre un error.
+     */
+    public void ejecuta() {
+        if (argumentos.getDireccionServidor() != null) {
+            new Servidor(this).escucha(argumentos.getDireccionServidor());
+            return;
+        }
+        if (argumentos.getLote() != null) {
+            new Lote(argumentos, composiciones, estadisticas).ejecuta();
+            return;
+        }
+        if (argumentos.vigilaEntrada()) {
+            new Vigilante(this, argumentos.getPresupuesto())
+                .vigila(argumentos.getArchivoEntrada());
+            return;
+        }
+        if (argumentos.getPasoBitacora() >= 0) {
+            graficaPaso(argumentos.getArchivoEntrada(),
+                        argumentos.getPasoBitacora());
+            return;
+        }
+        Lista<Documento> documentos = argumentos.lee(estadisticas);
+        if (argumentos.getArchivoBinario() != null) {
+            Documento documento = documentos.getPrimero();
+            convierte(documento.getEstructura(), documento.getEnteros(),
+                      argumentos.getArchivoBinario());
+            return;
+        }
+        if (argumentos.getArchivoBitacora() != null) {
+            graba(documentos.getPrimero(), argumentos.getArchivoBitacora());
+            return;
+        }
+        int n = documentos.getLongitud();
+        if (n > 1 && argumentos.getArchivosSalida().esVacia()
+            && argumentos.getDirectorioMosaico() == null)
+            throw new ExcepcionDSV("Varias estructuras requieren un archivo de salida.");
+        String formato = "-%0" + String.valueOf(n).length() + "d";
+        int i = 1;
+        for (Documento documento : documentos)
+            grafica(documento, (n == 1) ? "" : String.format(formato, i++));
+    }
+
+    /**
+     * Grafica un documento en sus propias salidas.
+     * @param documento el documento a graficar.
+     * @param sufijo el sufijo del documento, que se agrega al nombre de cada
+     *        salida antes de la extensión.
+     */
+    private void grafica(Documento documento, String sufijo) {
+        registra(documento);
+        if (argumentos.getMilisegundosAnimacion() > 0) {
+            anima(documento, sufijo);
+            return;
+        }
+        if (documento.getGuion().getPasos() > 0) {
+            simula(documento, sufijo);
+            return;
+        }
+        if (cache != null && argumentos.getDirectorioMosaico() == null) {
+            graficaConCache(documento, sufijo);
+            return;
+        }
+        grafica(abreSalidas(sufijo.isEmpty() ? null : sufijo),
+                dibujo(documento));
+    }
+
+    /**
+     * Dibuja un documento en el lienzo recibido y lo cierra, registrando
+     * sus fases si se miden estadísticas. Si el documento tiene
+     * operaciones, se dibuja la estructura después de la última.
+     * @param documento el documento a dibujar.
+     * @param lienzo el lienzo donde se dibuja.
+     * @throws ExcepcionDSV si una operación no puede aplicarse.
+     */
+    void grafica(Documento documento, Lienzo lienzo) {
+        registra(documento);
+        grafica(new Lienzo[] { lienzo }, dibujo(documento));
+    }
+
+    /**
+     * Empieza el registro de las fases de un documento, si se miden
+     * estadísticas.
+     * @param documento el documento.
+     */
+    private void registra(Documento documento) {
+        if (estadisticas != null)
+            registro = estadisticas.documento(argumentos.getArchivoEntrada(),
+                                              documento);
+    }
+
+    /**
+     * Regresa el dibujo de un documento en un lienzo. Si el documento tiene
+     * operaciones, se dibuja la estructura después de la última. Si se
+     * miden estadísticas, la estructura se construye y se le aplican sus
+     * operaciones al llamar este método, y el dibujo sólo calcula la
+     * distribución; si además se usa la caché de distribuciones, el dibujo
+     * la consulta.
+     * @param documento el documento a dibujar.
+     * @return el dibujo del documento.
+     */
+    private Consumer<Lienzo> dibujo(Documento documento) {
+        Guion guion = documento.getGuion();
+        if (registro == null
+            || (composiciones != null && guion.getPasos() == 0))
+            return lienzo -> dibuja(documento, lienzo);
+        Estadisticas.Medicion medicion = new Estadisticas.Medicion();
+        Simulador simulador = simulador(documento);
+        registro.agrega(Estadisticas.CONSTRUCCION, medicion);
+        if (guion.getPasos() > 0) {
+            medicion = new Estadisticas.Medicion();
+            for (int i = 0; i < guion.getPasos(); i++)
+                aplica(simulador, guion, i);
+            registro.agrega(Estadisticas.OPERACIONES, medicion);
+        }
+        return lienzo -> simulador.grafica(lienzo, argumentos.getPresupuesto());
+    }
+
+    /**
+     * Regresa las estadísticas donde se registran las fases.
+     * @return las estadísticas, o <tt>null</tt> si no se miden.
+     */
+    Estadisticas getEstadisticas() {
+        return estadisticas;
+    }
+
+    /**
+     * Regresa un graficador con las mismas opciones y cachés, con sus
+     * propias estadísticas si se miden, para graficar en otro hilo.
+     * @return un graficador con sus propias estadísticas, o este mismo si
+     *         no se miden.
+     */
+    DSV copiaConEstadisticas() {
+        if (estadisticas == null)
+            return this;
+        return new DSV(argumentos, composiciones, new Estadisticas());
+    }
+
+    /**
+     * Grafica un documento en sus archivos de salida pasando por la caché.
+     * Las imágenes que están en la caché se copian a su salida sin construir
+     * ni dibujar la estructura; las demás se dibujan juntas en archivos
+     * temporales de la caché, se copian a su salida y se guardan en la
+     * caché.
+     * @param documento el documento a graficar.
+     * @param sufijo el sufijo del documento, que se agrega al nombre de cada
+     *        salida antes de la extensión.
+     */
+    private void graficaConCache(Documento documento, String sufijo) {
+        Lista<String> archivos = argumentos.getArchivosSalida();
+        int n = Math.max(1, archivos.getLongitud());
+        String[] salidas = new String[n];
+        int i = 0;
+        for (String archivo : archivos)
+            salidas[i++] = sufijo.isEmpty() ? archivo : agregaSufijo(archivo, sufijo);
+        String[] llaves = new String[n];
+        Path[] temporales = new Path[n];
+        Lista<Lienzo> lienzos = new Lista<>();
+        try {
+            for (i = 0; i < n; i++) {
+                llaves[i] = CacheImagenes.llave(documento.getEstructura(),
+                                                documento.getEnteros(),
+                                                opcionesImagen(salidas[i]));
+                Estadisticas.Medicion medicion = new Estadisticas.Medicion();
+                FileChannel imagen = cache.abre(llaves[i]);
+                if (imagen != null) {
+                    copia(imagen, salidas[i]);
+                    if (registro != null)
+                        registro.agrega(Estadisticas.COPIA, medicion);
+                    continue;
+                }
+                temporales[i] = cache.temporal();
+                lienzos.agregaFinal(abreLienzo(FileChannel.open(temporales[i],
+                                                   StandardOpenOption.WRITE),
+                                               salidas[i]));
+            }
+            if (lienzos.esVacia())
+                return;
+            Lienzo[] arreglo = new Lienzo[lienzos.getLongitud()];
+            i = 0;
+            for (Lienzo lienzo : lienzos)
+                arreglo[i++] = lienzo;
+            grafica(arreglo, dibujo(documento));
+            for (i = 0; i < n; i++)
+                if (temporales[i] != null) {
+                    copia(FileChannel.open(temporales[i]), salidas[i]);
+                    cache.guarda(llaves[i], temporales[i]);
+                    temporales[i] = null;
+                }
+        } catch (IOException ioe) {
+            throw new ExcepcionDSV("No pudo escribirse la imagen.", ioe);
+        } finally {
+            for (Path temporal : temporales)
+                if (temporal != null)
+                    try {
+                        Files.deleteIfExists(temporal);
+                    } catch (IOException ioe) {
+                        // Se queda en la caché hasta que se borre a mano.
+                    }
+        }
+    }
+
+    /**
+     * Copia una imagen a su salida y la cierra.
+     * @param imagen el canal de la imagen.
+     * @param archivo el archivo de salida, o <tt>null</tt> para la salida
+     *        estándar, que no se cierra.
+     */
+    private void copia(FileChannel imagen, String archivo)
+        throws IOException {
+        Eventos.Escritura evento = Eventos.escritura();
+        try (FileChannel origen = imagen) {
+            if (archivo == null) {
+                CacheImagenes.transfiere(origen,
+                    new FileOutputStream(FileDescriptor.out).getChannel());
+            } else {
+                try (FileChannel destino = abreCanal(archivo)) {
+                    CacheImagenes.transfiere(origen, destino);
+                }
+            }
+            if (evento != null)
+                evento.termina(archivo, argumentos.getFormato(archivo), true,
+                               origen.size());
+        }
+    }
+
+    /**
+     * Regresa las opciones que cambian los bytes de la imagen que se escribe
+     * en el archivo recibido, para la llave de la caché.
+     * @param archivo el archivo de salida, o <tt>null</tt> para la salida
+     *        estándar.
+     * @return las opciones de la imagen.
+     */
+    private String opcionesImagen(String archivo) {
+        return String.format("%s z=%b n=%d c=%b a=%d l=%d",
+                             argumentos.getFormato(archivo),
+                             argumentos.comprimeSalida(archivo),
+                             argumentos.getNivelCompresion(),
+                             argumentos.esCompacta(),
+                             argumentos.getAristasPorBloque(),
+                             argumentos.getPresupuesto());
+    }
+
+    /**
+     * Aplica el guion del documento a la estructura viva, y escribe una
+     * imagen antes de la primera operación, una cada tantas operaciones como
+     * se pidió, y una después de la última. Las imágenes de cada paso se
+     * escriben en las salidas con el número del paso antes de la extensión.
+     * @param documento el documento a simular.
+     * @param sufijo el sufijo del documento, que va antes del número del
+     *        paso.
+     */
+    private void simula(Documento documento, String sufijo) {
+        if (argumentos.getArchivosSalida().esVacia()
+            && argumentos.getDirectorioMosaico() == null)
+            throw new ExcepcionDSV("Las operaciones requieren un archivo de salida.");
+        Estadisticas.Medicion medicion = new Estadisticas.Medicion();
+        Simulador simulador = simulador(documento);
+        if (registro != null)
+            registro.agrega(Estadisticas.CONSTRUCCION, medicion);
+        Guion guion = documento.getGuion();
+        int presupuesto = argumentos.getPresupuesto();
+        int pasos = guion.getPasos();
+        int k = argumentos.getPasosPorImagen();
+        String formato = sufijo + "-%0" + String.valueOf(pasos).length() + "d";
+        grafica(abreSalidas(String.format(formato, 0)),
+                lienzo -> simulador.grafica(lienzo, presupuesto));
+        medicion = new Estadisticas.Medicion();
+        for (int i = 0; i < pasos; i++) {
+            aplica(simulador, guion, i);
+            if ((i + 1) % k == 0 || i + 1 == pasos) {
+                if (registro != null)
+                    registro.agrega(Estadisticas.OPERACIONES, medicion);
+                grafica(abreSalidas(String.format(formato, i + 1)),
+                        lienzo -> simulador.grafica(lienzo, presupuesto));
+                medicion = new Estadisticas.Medicion();
+            }
+        }
+    }
+
+    /**
+     * Grafica un documento como un SVG animado en cada salida, con un
+     * cuadro antes de la primera operación, uno cada <tt>-k</tt> operaciones
+     * y uno después de la última. Un documento sin operaciones tiene un solo
+     * cuadro.
+     * @param documento el documento a graficar.
+     * @param sufijo el sufijo del documento, que se agrega al nombre de cada
+     *        salida antes de la extensión.
+     */
+    private void anima(Documento documento, String sufijo) {
+        Estadisticas.Medicion medicion = new Estadisticas.Medicion();
+        Simulador simulador = simulador(documento);
+        if (registro != null)
+            registro.agrega(Estadisticas.CONSTRUCCION, medicion);
+        Guion guion = documento.getGuion();
+        int presupuesto = argumentos.getPresupuesto();
+        int pasos = guion.getPasos();
+        int k = argumentos.getPasosPorImagen();
+        Lienzo[] lienzos = abreAnimaciones(sufijo);
+        Consumer<Lienzo> cuadro = lienzo -> simulador.grafica(lienzo, presupuesto);
+        dibujaCuadro(lienzos, cuadro);
+        medicion = new Estadisticas.Medicion();
+        for (int i = 0; i < pasos; i++) {
+            aplica(simulador, guion, i);
+            if ((i + 1) % k == 0 || i + 1 == pasos)
+                dibujaCuadro(lienzos, cuadro);
+        }
+        if (registro != null)
+            registro.agrega(Estadisticas.OPERACIONES, medicion);
+        medicion = new Estadisticas.Medicion();
+        for (Lienzo lienzo : lienzos)
+            lienzo.cierra();
+        if (registro != null)
+            registro.agrega(Estadisticas.ESCRITURA, medicion);
+    }
+
+    /**
+     * Dibuja un cuadro en las animaciones recibidas, sin cerrarlas. Si hay
+     * más de una, la distribución se calcula una sola vez en una
+     * composición.
+     * @param lienzos las animaciones.
+     * @param dibujo el dibujo del cuadro en un lienzo.
+     */
+    private static void dibujaCuadro(Lienzo[] lienzos, Consumer<Lienzo> dibujo) {
+        if (lienzos.length == 1) {
+            dibujo.accept(lienzos[0]);
+            return;
+        }
+        Composicion composicion = new Composicion(false);
+        dibujo.accept(composicion);
+        for (Lienzo lienzo : lienzos)
+            composicion.reproduce(lienzo);
+    }
+
+    /**
+     * Abre una animación en cada archivo de salida, o en la salida estándar
+     * si no hay ninguno.
+     * @param sufijo el sufijo que se agrega al nombre de cada archivo, antes
+     *        de la extensión.
+     * @return las animaciones de las salidas.
+     */
+    private Lienzo[] abreAnimaciones(String sufijo) {
+        Lista<String> archivos = argumentos.getArchivosSalida();
+        if (archivos.esVacia())
+            return new Lienzo[] { abreAnimacion(null) };
+        Lienzo[] lienzos = new Lienzo[archivos.getLongitud()];
+        int i = 0;
+        for (String archivo : archivos)
+            lienzos[i++] = abreAnimacion(sufijo.isEmpty() ? archivo
+                                         : agregaSufijo(archivo, sufijo));
+        return lienzos;
+    }
+
+    /**
+     * Abre una animación que se escribe en el archivo recibido, comprimida
+     * si corresponde.
+     * @param archivo el archivo de salida, o <tt>null</tt> para la salida
+     *        estándar.
+     * @return la animación ligada a la salida.
+     */
+    private Animacion abreAnimacion(String archivo) {
+        try {
+            WritableByteChannel canal = Eventos.escritura(
+                (archivo == null) ? Channels.newChannel(System.out)
+                                  : abreCanal(archivo),
+                archivo, Formato.SVG);
+            if (argumentos.comprimeSalida(archivo))
+                canal = Channels.newChannel(
+                    new FlujoGZIP(Channels.newOutputStream(canal),
+                                  argumentos.getNivelCompresion()));
+            return new Animacion(canal, argumentos.getMilisegundosAnimacion());
+        } catch (IOException ioe) {
+            throw new ExcepcionDSV("No pudo crearse el archivo de salida.", ioe);
+        }
+    }
+
+    /**
+     * Construye la estructura viva de un documento.
+     * @param documento el documento.
+     * @return el simulador con los elementos iniciales del documento.
+     */
+    private static Simulador simulador(Documento documento) {
+        try {
+            return new Simulador(documento.getEstructura(),
+                                 documento.getEnteros());
+        } catch (IllegalArgumentException iae) {
+            throw new ExcepcionDSV(iae.getMessage(), iae);
+        }
+    }
+
+    /**
+     * Aplica un paso del guion a la estructura viva.
+     * @param simulador el simulador de la estructura.
+     * @param guion el guion.
+     * @param paso el índice del paso.
+     */
+    private static void aplica(Simulador simulador, Guion guion, int paso) {
+        try {
+            simulador.aplica(guion, paso);
+        } catch (IllegalArgumentException iae) {
+            throw new ExcepcionDSV(String.format("Operación %d: %s", paso + 1,
+                                                 iae.getMessage()), iae);
+        }
+    }
+
+    /**
+     * Dibuja la imagen en los lienzos recibidos y los cierra. Si hay más de
+     * uno, la distribución se calcula una sola vez en una composición, que
+     * se reproduce en paralelo en cada lienzo.
+     * @param lienzos los lienzos de las salidas.
+     * @param dibujo el dibujo de la imagen en un lienzo.
+     */
+    void grafica(Lienzo[] lienzos, Consumer<Lienzo> dibujo) {
+        if (registro != null) {
+            graficaMidiendo(lienzos, dibujo);
+            return;
+        }
+        if (lienzos.length == 1) {
+            dibujo.accept(lienzos[0]);
+            lienzos[0].cierra();
+            return;
+        }
+        Composicion composicion =
+            new Composicion(argumentos.getAristasPorBloque() > 0);
+        dibujo.accept(composicion);
+        Arrays.stream(lienzos).parallel().forEach(lienzo -> {
+            composicion.reproduce(lienzo);
+            lienzo.cierra();
+        });
+    }
+
+    /**
+     * Dibuja la imagen en los lienzos recibidos y los cierra, registrando
+     * por separado la distribución, que se calcula en una composición, y la
+     * escritura de la composición en cada lienzo.
+     * @param lienzos los lienzos de las salidas.
+     * @param dibujo el dibujo de la imagen en un lienzo.
+     */
+    private void graficaMidiendo(Lienzo[] lienzos, Consumer<Lienzo> dibujo) {
+        Estadisticas.Medicion medicion = new Estadisticas.Medicion();
+        Composicion composicion = new Composicion((lienzos.length == 1)
+                                                  ? lienzos[0].agrupaAristas()
+                                                  : argumentos.getAristasPorBloque() > 0);
+        dibujo.accept(composicion);
+        registro.agrega(Estadisticas.DISTRIBUCION, medicion);
+        medicion = new Estadisticas.Medicion();
+        Arrays.stream(lienzos).parallel().forEach(lienzo -> {
+            composicion.reproduce(lienzo);
+            lienzo.cierra();
+        });
+        registro.agrega(Estadisticas.ESCRITURA, medicion);
+    }
+
+    /**
+     * Abre los lienzos de todas las salidas: la pirámide de mosaicos, si se
+     * pidió, y cada archivo de salida; si no hay ninguna, la salida estándar.
+     * @param sufijo el sufijo que se agrega al nombre de cada salida, antes
+     *        de la extensión, o <tt>null</tt> si no se agrega.
+     * @return los lienzos de las salidas.
+     */
+    Lienzo[] abreSalidas(String sufijo) {
+        Lista<String> archivos = argumentos.getArchivosSalida();
+        String mosaico = argumentos.getDirectorioMosaico();
+        if (archivos.esVacia() && mosaico == null)
+            return new Lienzo[] { abreSalida(null, null) };
+        Lienzo[] lienzos = new Lienzo[archivos.getLongitud()
+                                      + ((mosaico != null) ? 1 : 0)];
+        int i = 0;
+        if (mosaico != null)
+            lienzos[i++] = new Mosaico(Paths.get((sufijo == null) ? mosaico
+                                                 : mosaico + sufijo),
+                                       argumentos.getFormato(),
+                                       argumentos.esCompacta(),
+                                       argumentos.getNivelCompresion());
+        for (String archivo : archivos)
+            lienzos[i++] = abreSalida(archivo, sufijo);
+        return lienzos;
+    }
+
+    /**
+     * Agrega el sufijo recibido al nombre del archivo, antes de su
+     * extensión.
+     * @param archivo el nombre del archivo.
+     * @param sufijo el sufijo.
+     * @return el nombre del archivo con el sufijo.
+     */
+    private static String agregaSufijo(String archivo, String sufijo) {
+        int punto = archivo.lastIndexOf('.');
+        int separador = Math.max(archivo.lastIndexOf('/'),
+                                 archivo.lastIndexOf(File.separatorChar));
+        if (punto <= separador + 1)
+            punto = archivo.length();
+        return archivo.substring(0, punto) + sufijo + archivo.substring(punto);
+    }
+
+    /**
+     * Abre el lienzo donde se dibuja la imagen, en el formato elegido. Si se
+     * especificó un archivo, la imagen se escribe directamente en su canal,
+     * sin pasar por la salida estándar. Si un documento SVG se comprime, pasa
+     * por el compresor conforme se genera, sin guardarlo completo en memoria.
+     * @param archivo el nombre del archivo de salida, o <tt>null</tt> para la
+     *        salida estándar.
+     * @param sufijo el sufijo que se agrega al nombre del archivo, antes de
+     *        la extensión, o <tt>null</tt> si no se agrega.
+     * @return un lienzo ligado a la salida.
+     */
+    private Lienzo abreSalida(String archivo, String sufijo) {
+        if (archivo != null && sufijo != null)
+            archivo = agregaSufijo(archivo, sufijo);
+        try {
+            return abreLienzo((archivo == null)
+                              ? Channels.newChannel(System.out)
+                              : abreCanal(archivo),
+                              archivo);
+        } catch (IOException ioe) {
+            throw new ExcepcionDSV("No pudo crearse el archivo de salida.", ioe);
+        }
+    }
+
+    /**
+     * Abre un lienzo que escribe en el canal recibido, en el formato y con
+     * la compresión que corresponden al archivo recibido.
+     * @param canal el canal donde se escribe la imagen; se cierra al cerrar
+     *        el lienzo.
+     * @param archivo el nombre del archivo de salida, o <tt>null</tt> si la
+     *        imagen no va a un archivo.
+     * @return un lienzo ligado al canal.
+     */
+    Lienzo abreLienzo(WritableByteChannel canal, String archivo)
+        throws IOException {
+        canal = Eventos.escritura(canal, archivo,
+                                  argumentos.getFormato(archivo));
+        if (argumentos.getFormato(archivo) == Formato.DSVL)
+            return new DSVL(canal);
+        if (argumentos.getFormato(archivo) == Formato.PNG)
+            return new PNG(Channels.newOutputStream(canal),
+                           argumentos.getNivelCompresion());
+        SVG svg;
+        if (!argumentos.comprimeSalida(archivo))
+            svg = new SVG(canal);
         else
-            new GraficadorArbol(estructura, lista);
+            svg = new SVG(new FlujoGZIP(Channels.newOutputStream(canal),
+                                        argumentos.getNivelCompresion()));
+        svg.setCompacto(argumentos.esCompacta());
+        svg.setAristasPorBloque(argumentos.getAristasPorBloque());
+        return svg;
+    }
+
+    /**
+     * Dibuja un documento en el lienzo recibido, sin cerrarlo. Si el
+     * documento tiene operaciones, se dibuja la estructura después de la
+     * última.
+     * @param documento el documento a dibujar.
+     * @param lienzo el lienzo donde se dibuja.
+     * @throws ExcepcionDSV si una operación no puede aplicarse.
+     */
+    void dibuja(Documento documento, Lienzo lienzo) {
+        Guion guion = documento.getGuion();
+        if (guion.getPasos() == 0 && composiciones != null) {
+            composiciones.composicion(documento, argumentos.getPresupuesto(),
+                                      lienzo.agrupaAristas())
+                .reproduce(lienzo);
+            return;
+        }
+        if (guion.getPasos() == 0) {
+            Graficador.dibuja(documento.getEstructura(), documento.getEnteros(),
+                              lienzo, argumentos.getPresupuesto());
+            return;
+        }
+        Simulador simulador = simulador(documento);
+        for (int i = 0; i < guion.getPasos(); i++)
+            aplica(simulador, guion, i);
+        simulador.grafica(lienzo, argumentos.getPresupuesto());
+    }
+
+    /**
+     * Escribe la estructura y sus enteros en un archivo {@link DSVB},
+     * comprimido si se pidió compresión.
+     * @param estructura la estructura.
+     * @param enteros los enteros de la estructura.
+     * @param archivo el nombre del archivo DSVB.
+     */
+    private void convierte(Estructura estructura, ArregloEnteros enteros,
+                           String archivo) {
+        try (OutputStream salida = Channels.newOutputStream(abreCanal(archivo))) {
+            DSVB.escribe(estructura, enteros, salida,
+                         argumentos.comprimeSalida(null),
+                         argumentos.getNivelCompresion());
+        } catch (IOException ioe) {
+            throw new ExcepcionDSV("No pudo crearse el archivo de salida.", ioe);
+        }
+    }
+
+    /**
+     * Aplica las operaciones de un documento a su estructura viva y graba
+     * sus mutaciones en una bitácora DSVE.
+     * @param documento el documento.
+     * @param archivo el archivo de la bitácora.
+     */
+    private void graba(Documento documento, String archivo) {
+        Simulador simulador = simulador(documento);
+        Guion guion = documento.getGuion();
+        try (OutputStream salida = Channels.newOutputStream(abreCanal(archivo))) {
+            DSVE bitacora = new DSVE(simulador, salida);
+            for (int i = 0; i < guion.getPasos(); i++) {
+                aplica(simulador, guion, i);
+                bitacora.paso();
+            }
+            bitacora.termina();
+        } catch (IllegalArgumentException iae) {
+            throw new ExcepcionDSV(iae.getMessage(), iae);
+        } catch (IOException ioe) {
+            throw new ExcepcionDSV("No pudo crearse el archivo de salida.", ioe);
+        }
+    }
+
+    /**
+     * Grafica en las salidas la estructura después de un paso de una
+     * bitácora DSVE, restaurando el punto de control anterior y
+     * reproduciendo las mutaciones que le siguen.
+     * @param archivo el archivo de la bitácora.
+     * @param paso el número de operaciones aplicadas.
+     */
+    private void graficaPaso(String archivo, int paso) {
+        Simulador simulador;
+        try (FileChannel canal = FileChannel.open(Paths.get(archivo))) {
+            simulador = DSVE.restaura(canal, paso);
+        } catch (NoSuchFileException nsfe) {
+            throw new ExcepcionDSV("No se encontró el archivo.", nsfe);
+        } catch (IOException ioe) {
+            throw new ExcepcionDSV("Ocurrió un error al leer el archivo", ioe);
+        } catch (IllegalArgumentException iae) {
+            throw new ExcepcionDSV(iae.getMessage(), iae);
+        }
+        grafica(abreSalidas(null),
+                lienzo -> simulador.grafica(lienzo, argumentos.getPresupuesto()));
+    }
+
+    /**
+     * Abre para escritura el canal del archivo recibido.
+     * @param archivo el nombre del archivo.
+     * @return el canal del archivo.
+     */
+    private static FileChannel abreCanal(String archivo) throws IOException {
+        return FileChannel.open(Paths.get(archivo),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.WRITE);
     }
 }
@@ -0,0 +1,240 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import mx.unam.ciencias.edd.ArregloEnteros;
+
+/**
+ * <p> Clase para el formato binario de entrada DSVB. </p>
+ *
+ * <p> Un archivo DSVB guarda lo mismo que un archivo de texto de entrada,
+ *  la estructura y sus enteros, sin tener que interpretar texto: </p>
+ *
+ * <ul>
+ *   <li> Los bytes <tt>DSVB</tt> y un byte con la versión. </li>
+ *   <li> Un byte con la estructura: su posición en {@link Estructura}
+ *        (<tt>L</tt> es 0, <tt>Q</tt> 1, <tt>S</tt> 2, <tt>CBT</tt> 3,
+ *        <tt>BST</tt> 4, <tt>RBT</tt> 5, <tt>AVL</tt> 6, <tt>G</tt> 7 y
+ *        <tt>MH</tt> 8). </li>
+ *   <li> Un byte de banderas; si el bit 0 está prendido, el resto del
+ *        archivo está comprimido con <i>deflate</i> (formato zlib). </li>
+ *   <li> El número de enteros y los enteros, cada uno en zig-zag y como
+ *        entero de longitud variable (siete bits por byte, empezando por
+ *        los menos significativos). </li>
+ * </ul>
+ */
+public class DSVB {
+
+    /** La versión del formato. */
+    public static final int VERSION = 1;
+
+    /* Los bytes con que empiezan los archivos. */
+    private static final byte[] MAGIA = { 'D', 'S', 'V', 'B' };
+
+    /* Bandera de los archivos comprimidos. */
+    private static final int COMPRIMIDO = 1;
+
+    /* Tamaño de los búferes en bytes. */
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+
+    /* Mensaje de error para archivos dañados. */
+    private static final String ERROR_ARCHIVO = "El archivo binario está dañado";
+
+    /* La estructura leída. */
+    private Estructura estructura;
+
+    /* El número de enteros que anuncia el archivo. */
+    private long anunciados;
+
+    /* El arreglo donde se agregan los enteros. */
+    private ArregloEnteros enteros;
+
+    /* Número de enteros leídos. */
+    private long leidos;
+
+    /* El entero de longitud variable que se está leyendo. */
+    private long valor;
+
+    /* El desplazamiento del siguiente grupo de siete bits. */
+    private int desplazamiento;
+
+    /* Si ya se leyó el número de enteros. */
+    private boolean cabecera;
+
+    /* Construye un lector que agrega los enteros al arreglo recibido. */
+    private DSVB(ArregloEnteros enteros) {
+        this.enteros = enteros;
+    }
+
+    /**
+     * Nos dice si los bytes recibidos son el inicio de un archivo DSVB.
+     * @param inicio los primeros bytes de la entrada.
+     * @param n el número de bytes válidos.
+     * @return <tt>true</tt> si los bytes son el inicio de un archivo DSVB,
+     *         <tt>false</tt> en otro caso.
+     */
+    public static boolean esDSVB(byte[] inicio, int n) {
+        if (n < MAGIA.length)
+            return false;
+        for (int i = 0; i < MAGIA.length; i++)
+            if (inicio[i] != MAGIA[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Nos dice si el archivo del canal recibido es un archivo DSVB.
+     * @param canal el canal del archivo.
+     * @return <tt>true</tt> si el archivo es un archivo DSVB, <tt>false</tt>
+     *         en otro caso.
+     * @throws IOException si ocurre un error al leer el archivo.
+     */
+    public static boolean esDSVB(FileChannel canal) throws IOException {
+        ByteBuffer inicio = ByteBuffer.allocate(MAGIA.length);
+        while (inicio.hasRemaining() && canal.read(inicio, inicio.position()) > 0)
+            ;
+        return esDSVB(inicio.array(), inicio.position());
+    }
+
+    /**
+     * Lee un archivo DSVB completo del flujo recibido.
+     * @param entrada el flujo de donde se lee el archivo.
+     * @param enteros el arreglo donde se agregan los enteros.
+     * @return la estructura del archivo.
+     * @throws IOException si ocurre un error al leer.
+     * @throws IllegalArgumentException si el archivo está dañado.
+     */
+    public static Estructura lee(InputStream entrada, ArregloEnteros enteros)
+        throws IOException {
+        byte[] cabecera = new byte[MAGIA.length + 3];
+        int n = 0, r;
+        while (n < cabecera.length
+               && (r = entrada.read(cabecera, n, cabecera.length - n)) != -1)
+            n += r;
+        if (!esDSVB(cabecera, n) || n < cabecera.length
+            || cabecera[4] != VERSION
+            || cabecera[5] < 0 || cabecera[5] >= Estructura.values().length)
+            throw new IllegalArgumentException(ERROR_ARCHIVO);
+        DSVB lector = new DSVB(enteros);
+        lector.estructura = Estructura.values()[cabecera[5]];
+        Inflater descompresor = null;
+        if ((cabecera[6] & COMPRIMIDO) != 0) {
+            descompresor = new Inflater();
+            entrada = new InflaterInputStream(entrada, descompresor,
+                                              TAMAÑO_BUFFER);
+        }
+        try {
+            byte[] buffer = new byte[TAMAÑO_BUFFER];
+            while ((r = entrada.read(buffer)) != -1)
+                lector.procesa(buffer, r);
+        } finally {
+            if (descompresor != null)
+                descompresor.end();
+        }
+        lector.termina();
+        return lector.estructura;
+    }
+
+    /**
+     * Lee un archivo DSVB completo del canal recibido.
+     * @param canal el canal del archivo.
+     * @param enteros el arreglo donde se agregan los enteros.
+     * @return la estructura del archivo.
+     * @throws IOException si ocurre un error al leer.
+     * @throws IllegalArgumentException si el archivo está dañado.
+     */
+    public static Estructura lee(FileChannel canal, ArregloEnteros enteros)
+        throws IOException {
+        return lee(Channels.newInputStream(canal.position(0)), enteros);
+    }
+
+    /**
+     * Escribe un archivo DSVB con la estructura y los enteros recibidos.
+     * @param estructura la estructura.
+     * @param enteros los enteros de la estructura.
+     * @param salida el flujo donde se escribe el archivo; no se cierra.
+     * @param comprime si es <tt>true</tt>, los enteros se comprimen.
+     * @param nivelCompresion el nivel de compresión.
+     * @throws IOException si ocurre un error al escribir.
+     */
+    public static void escribe(Estructura estructura, ArregloEnteros enteros,
+                               OutputStream salida, boolean comprime,
+                               int nivelCompresion) throws IOException {
+        salida.write(MAGIA);
+        salida.write(VERSION);
+        salida.write(estructura.ordinal());
+        salida.write(comprime ? COMPRIMIDO : 0);
+        Deflater compresor = null;
+        OutputStream cuerpo = salida;
+        if (comprime) {
+            compresor = new Deflater(nivelCompresion);
+            cuerpo = new DeflaterOutputStream(salida, compresor, TAMAÑO_BUFFER);
+        }
+        byte[] buffer = new byte[TAMAÑO_BUFFER];
+        int n = escribeVariable(enteros.getElementos(), buffer, 0);
+        for (int i = 0; i < enteros.getElementos(); i++) {
+            if (n > buffer.length - 5) {
+                cuerpo.write(buffer, 0, n);
+                n = 0;
+            }
+            int e = enteros.get(i);
+            n = escribeVariable(((e << 1) ^ (e >> 31)) & 0xffffffffL, buffer, n);
+        }
+        cuerpo.write(buffer, 0, n);
+        if (comprime) {
+            ((DeflaterOutputStream) cuerpo).finish();
+            compresor.end();
+        }
+        cuerpo.flush();
+    }
+
+    /* Escribe un entero sin signo de longitud variable en el búfer y
+       regresa la posición siguiente. */
+    private static int escribeVariable(long v, byte[] buffer, int n) {
+        while (v >= 0x80) {
+            buffer[n++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        buffer[n++] = (byte) v;
+        return n;
+    }
+
+    /* Decodifica los enteros de longitud variable de los bytes recibidos. */
+    private void procesa(byte[] b, int n) {
+        for (int i = 0; i < n; i++) {
+            byte c = b[i];
+            valor |= (long) (c & 0x7f) << desplazamiento;
+            if (c < 0) {
+                desplazamiento += 7;
+                if (desplazamiento > 28 + (cabecera ? 0 : 35))
+                    throw new IllegalArgumentException(ERROR_ARCHIVO);
+                continue;
+            }
+            if (!cabecera) {
+                anunciados = valor;
+                cabecera = true;
+            } else {
+                if (valor > 0xffffffffL || leidos++ == anunciados)
+                    throw new IllegalArgumentException(ERROR_ARCHIVO);
+                int v = (int) valor;
+                enteros.agrega((v >>> 1) ^ -(v & 1));
+            }
+            valor = 0;
+            desplazamiento = 0;
+        }
+    }
+
+    /* Verifica que se hayan leído todos los enteros anunciados. */
+    private void termina() {
+        if (!cabecera || desplazamiento != 0 || leidos != anunciados)
+            throw new IllegalArgumentException(ERROR_ARCHIVO);
+    }
+}
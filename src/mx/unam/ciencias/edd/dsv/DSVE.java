@@ -0,0 +1,769 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import mx.unam.ciencias.edd.ArbolAVL;
+import mx.unam.ciencias.edd.ArbolBinarioOrdenado;
+import mx.unam.ciencias.edd.ArbolRojinegro;
+import mx.unam.ciencias.edd.ArregloEnteros;
+import mx.unam.ciencias.edd.BitacoraArbol;
+import mx.unam.ciencias.edd.BitacoraMonticulo;
+import mx.unam.ciencias.edd.Color;
+import mx.unam.ciencias.edd.Indexable;
+import mx.unam.ciencias.edd.Lista;
+import mx.unam.ciencias.edd.MonticuloMinimo;
+import mx.unam.ciencias.edd.VerticeArbolBinario;
+
+/**
+ * <p> Clase para las bitácoras de operaciones en formato binario DSVE. </p>
+ *
+ * <p> Una bitácora guarda cada mutación que las operaciones de un documento
+ *  le hacen a su estructura viva: en los árboles ordenados (<tt>BST</tt>,
+ *  <tt>AVL</tt> y <tt>RBT</tt>), los vértices que se agregan y se eliminan,
+ *  los elementos que se intercambian, los giros y los cambios de color; en
+ *  los montículos mínimos, los elementos que se agregan y eliminan al final
+ *  del arreglo, los intercambios y los cambios de valor. </p>
+ *
+ * <p> Antes de la primera operación, la bitácora guarda además un punto de
+ *  control con la estructura completa, y otro después de cada paso en que
+ *  las mutaciones desde el último punto de control ya ocupan tanto como él;
+ *  al final guarda un índice de los puntos de control. La estructura después
+ *  de cualquier paso se obtiene restaurando un solo punto de control y
+ *  reproduciendo a lo más otro tanto de mutaciones, sin volver a aplicar las
+ *  operaciones ni rebalancear; y como los puntos de control de una
+ *  estructura grande se espacian más, la bitácora crece con las mutaciones y
+ *  no con el número de pasos por el tamaño de la estructura. </p>
+ *
+ * <ul>
+ *   <li> Los bytes <tt>DSVE</tt>, un byte con la versión y un byte con la
+ *        estructura, como en {@link DSVB}. </li>
+ *   <li> Los puntos de control, cada uno seguido de las mutaciones de los
+ *        pasos hasta el siguiente. Un punto de control de un árbol es su
+ *        número de vértices y, por cada vértice en DFS <em>pre-order</em>,
+ *        su elemento y su forma (1 si tiene hijo izquierdo, más 2 si tiene
+ *        hijo derecho, más 4 veces el ordinal de su color en árboles
+ *        rojinegros); el de un montículo es su número de elementos y sus
+ *        valores en el orden del arreglo. Cada mutación es un byte con su
+ *        código y sus argumentos, y cada paso termina con el código 0. </li>
+ *   <li> El índice: por cada punto de control, el número de pasos antes de
+ *        él en cuatro bytes y su posición en ocho. </li>
+ *   <li> Al final, la posición del índice en ocho bytes, y el número de
+ *        pasos y de puntos de control en cuatro bytes cada uno. </li>
+ * </ul>
+ *
+ * <p> Los enteros de tamaño fijo están en orden <i>little-endian</i>; los
+ *  demás son enteros de longitud variable como en {@link DSVB}, en zig-zag
+ *  los elementos. Los vértices de un árbol se identifican por su número: los
+ *  del punto de control anterior se numeran en pre-order desde 0, y los que
+ *  se agregan después, con los números siguientes. </p>
+ */
+public class DSVE {
+
+    /** La versión del formato. */
+    public static final int VERSION = 1;
+
+    /* Los bytes con que empiezan los archivos. */
+    private static final byte[] MAGIA = { 'D', 'S', 'V', 'E' };
+
+    /* Los bytes del final del archivo. */
+    private static final int BYTES_FINAL = 16;
+
+    /* Los bytes de cada punto de control en el índice. */
+    private static final int BYTES_INDICE = 12;
+
+    /* Tamaño de los búferes en bytes. */
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+
+    /* Mensaje de error para archivos dañados. */
+    private static final String ERROR_ARCHIVO = "La bitácora está dañada";
+
+    /* Los códigos de las mutaciones. */
+    private static final int FIN = 0;
+    private static final int AGREGA = 1;
+    private static final int AGREGA_VACIO = 2;
+    private static final int ELIMINA = 3;
+    private static final int INTERCAMBIA = 4;
+    private static final int GIRA_IZQUIERDA = 5;
+    private static final int GIRA_DERECHA = 6;
+    private static final int COLOREA = 7;
+    private static final int ACTUALIZA = 8;
+
+    /* Clase interna privada para registrar las mutaciones de un árbol. */
+    private class Arbol implements BitacoraArbol<Integer> {
+
+        /* Registra un vértice nuevo con su padre y su lado. */
+        @Override public void agrega(VerticeArbolBinario<Integer> vertice) {
+            int posicion = 0;
+            if (vertice.hayPadre()) {
+                VerticeArbolBinario<Integer> padre = vertice.padre();
+                boolean derecho = !padre.hayIzquierdo()
+                    || padre.izquierdo() != vertice;
+                posicion = (id(padre) + 1) * 2 + (derecho ? 1 : 0);
+            }
+            ids.put(vertice, siguiente++);
+            if (vertice.get() == null) {
+                escribeVariable(AGREGA_VACIO);
+                escribeVariable(posicion);
+            } else {
+                escribeVariable(AGREGA);
+                escribeVariable(posicion);
+                escribeZigZag(vertice.get());
+            }
+        }
+
+        /* Registra un vértice eliminado. */
+        @Override public void elimina(VerticeArbolBinario<Integer> vertice) {
+            escribeVariable(ELIMINA);
+            escribeVariable(id(vertice));
+        }
+
+        /* Registra un intercambio de elementos. */
+        @Override public void intercambia(VerticeArbolBinario<Integer> vertice,
+                                          VerticeArbolBinario<Integer> otro) {
+            escribeVariable(INTERCAMBIA);
+            escribeVariable(id(vertice));
+            escribeVariable(id(otro));
+        }
+
+        /* Registra un giro a la izquierda. */
+        @Override public void giraIzquierda(VerticeArbolBinario<Integer> vertice) {
+            escribeVariable(GIRA_IZQUIERDA);
+            escribeVariable(id(vertice));
+        }
+
+        /* Registra un giro a la derecha. */
+        @Override public void giraDerecha(VerticeArbolBinario<Integer> vertice) {
+            escribeVariable(GIRA_DERECHA);
+            escribeVariable(id(vertice));
+        }
+
+        /* Registra un cambio de color. */
+        @Override public void colorea(VerticeArbolBinario<Integer> vertice,
+                                      Color color) {
+            escribeVariable(COLOREA);
+            escribeVariable(id(vertice));
+            escribeVariable(color.ordinal());
+        }
+
+        /* Regresa el número de un vértice. */
+        private int id(VerticeArbolBinario<Integer> vertice) {
+            return ids.get(vertice);
+        }
+    }
+
+    /* Clase interna privada para registrar las mutaciones de un montículo. */
+    private class Monticulo implements BitacoraMonticulo<Indexable<Integer>> {
+
+        /* Registra un elemento agregado al final. */
+        @Override public void agrega(Indexable<Integer> elemento) {
+            escribeVariable(AGREGA);
+            escribeZigZag((int) elemento.getValor());
+        }
+
+        /* Registra que se eliminó el último elemento. */
+        @Override public void elimina() {
+            escribeVariable(ELIMINA);
+        }
+
+        /* Registra un intercambio. */
+        @Override public void intercambia(int i, int j) {
+            escribeVariable(INTERCAMBIA);
+            escribeVariable(i);
+            escribeVariable(j);
+        }
+
+        /* Registra el nuevo valor de un elemento. */
+        @Override public void actualiza(Indexable<Integer> elemento) {
+            escribeVariable(ACTUALIZA);
+            escribeVariable(elemento.getIndice());
+            escribeZigZag((int) elemento.getValor());
+        }
+    }
+
+    /* Clase interna estática privada para reproducir las mutaciones en
+       arreglos, sin los objetos de la estructura. */
+    private static class Reproductor {
+
+        /* La estructura. */
+        private Estructura estructura;
+        /* Número de vértices o elementos. */
+        private int n;
+        /* Elementos de los vértices o valores del montículo. */
+        private int[] elementos = new int[16];
+        /* Si el vértice es uno vacío, sin elemento. */
+        private boolean[] vacios = new boolean[16];
+        /* Padres, hijos y colores de los vértices; -1 si no hay. */
+        private int[] padres = new int[16];
+        private int[] izquierdos = new int[16];
+        private int[] derechos = new int[16];
+        private int[] colores = new int[16];
+        /* La raíz del árbol, o -1 si es vacío. */
+        private int raiz = -1;
+
+        /* Construye un reproductor de la estructura recibida. */
+        public Reproductor(Estructura estructura) {
+            this.estructura = estructura;
+        }
+
+        /* Lee un punto de control. */
+        public void leePuntoDeControl(Lector lector) throws IOException {
+            int vertices = lector.leeVariable();
+            if (estructura == Estructura.MH) {
+                for (int i = 0; i < vertices; i++) {
+                    int v = nuevo();
+                    elementos[v] = lector.leeZigZag();
+                }
+                return;
+            }
+            int pendiente = -1;
+            int[] pila = new int[16];
+            int tope = 0;
+            for (int i = 0; i < vertices; i++) {
+                int v = nuevo();
+                elementos[v] = lector.leeZigZag();
+                int forma = lector.leeVariable();
+                colores[v] = forma >>> 2;
+                if (v == 0)
+                    raiz = v;
+                else if (pendiente != -1)
+                    cuelga(pendiente, false, v);
+                else if (tope > 0)
+                    cuelga(pila[--tope], true, v);
+                else
+                    throw new IllegalArgumentException(ERROR_ARCHIVO);
+                pendiente = ((forma & 1) != 0) ? v : -1;
+                if ((forma & 2) != 0) {
+                    if (tope == pila.length)
+                        pila = Arrays.copyOf(pila, tope * 2);
+                    pila[tope++] = v;
+                }
+            }
+            if (pendiente != -1 || tope > 0)
+                throw new IllegalArgumentException(ERROR_ARCHIVO);
+        }
+
+        /* Reproduce las mutaciones de un paso. */
+        public void reproducePaso(Lector lector) throws IOException {
+            int codigo;
+            while ((codigo = lector.leeVariable()) != FIN) {
+                if (estructura == Estructura.MH)
+                    reproduceMonticulo(codigo, lector);
+                else
+                    reproduceArbol(codigo, lector);
+            }
+        }
+
+        /* Reproduce una mutación de un árbol. */
+        private void reproduceArbol(int codigo, Lector lector)
+            throws IOException {
+            int v;
+            switch (codigo) {
+                case AGREGA:
+                case AGREGA_VACIO:
+                    int posicion = lector.leeVariable();
+                    v = nuevo();
+                    if (codigo == AGREGA)
+                        elementos[v] = lector.leeZigZag();
+                    vacios[v] = codigo == AGREGA_VACIO;
+                    if (posicion == 0)
+                        raiz = v;
+                    else
+                        cuelga(vertice(posicion / 2 - 1), posicion % 2 == 1, v);
+                    break;
+                case ELIMINA:
+                    elimina(vertice(lector.leeVariable()));
+                    break;
+                case INTERCAMBIA:
+                    v = vertice(lector.leeVariable());
+                    int u = vertice(lector.leeVariable());
+                    int e = elementos[v];
+                    elementos[v] = elementos[u];
+                    elementos[u] = e;
+                    boolean vacio = vacios[v];
+                    vacios[v] = vacios[u];
+                    vacios[u] = vacio;
+                    break;
+                case GIRA_IZQUIERDA:
+                    giraIzquierda(vertice(lector.leeVariable()));
+                    break;
+                case GIRA_DERECHA:
+                    giraDerecha(vertice(lector.leeVariable()));
+                    break;
+                case COLOREA:
+                    v = vertice(lector.leeVariable());
+                    colores[v] = lector.leeVariable();
+                    break;
+                default:
+                    throw new IllegalArgumentException(ERROR_ARCHIVO);
+            }
+        }
+
+        /* Reproduce una mutación de un montículo. */
+        private void reproduceMonticulo(int codigo, Lector lector)
+            throws IOException {
+            switch (codigo) {
+                case AGREGA:
+                    int v = nuevo();
+                    elementos[v] = lector.leeZigZag();
+                    break;
+                case ELIMINA:
+                    if (n == 0)
+                        throw new IllegalArgumentException(ERROR_ARCHIVO);
+                    n--;
+                    break;
+                case INTERCAMBIA:
+                    int i = vertice(lector.leeVariable());
+                    int j = vertice(lector.leeVariable());
+                    int e = elementos[i];
+                    elementos[i] = elementos[j];
+                    elementos[j] = e;
+                    break;
+                case ACTUALIZA:
+                    i = vertice(lector.leeVariable());
+                    elementos[i] = lector.leeZigZag();
+                    break;
+                default:
+                    throw new IllegalArgumentException(ERROR_ARCHIVO);
+            }
+        }
+
+        /* Regresa un vértice nuevo sin padre ni hijos. */
+        private int nuevo() {
+            if (n == elementos.length) {
+                int capacidad = n * 2;
+                elementos = Arrays.copyOf(elementos, capacidad);
+                vacios = Arrays.copyOf(vacios, capacidad);
+                padres = Arrays.copyOf(padres, capacidad);
+                izquierdos = Arrays.copyOf(izquierdos, capacidad);
+                derechos = Arrays.copyOf(derechos, capacidad);
+                colores = Arrays.copyOf(colores, capacidad);
+            }
+            padres[n] = izquierdos[n] = derechos[n] = -1;
+            colores[n] = Color.NINGUNO.ordinal();
+            vacios[n] = false;
+            return n++;
+        }
+
+        /* Verifica que el número sea de un vértice o elemento. */
+        private int vertice(int v) {
+            if (v >= n)
+                throw new IllegalArgumentException(ERROR_ARCHIVO);
+            return v;
+        }
+
+        /* Cuelga un vértice como hijo de otro. */
+        private void cuelga(int padre, boolean derecho, int v) {
+            if (derecho)
+                derechos[padre] = v;
+            else
+                izquierdos[padre] = v;
+            padres[v] = padre;
+        }
+
+        /* Reemplaza un vértice por otro (o por nadie) en su padre. */
+        private void reemplaza(int v, int u) {
+            int p = padres[v];
+            if (u != -1)
+                padres[u] = p;
+            if (p == -1)
+                raiz = u;
+            else if (izquierdos[p] == v)
+                izquierdos[p] = u;
+            else
+                derechos[p] = u;
+        }
+
+        /* Elimina un vértice con a lo más un hijo, subiendo su hijo. */
+        private void elimina(int v) {
+            reemplaza(v, (izquierdos[v] != -1 && derechos[v] == -1)
+                      ? izquierdos[v] : derechos[v]);
+        }
+
+        /* Gira a la izquierda sobre un vértice con hijo derecho. */
+        private void giraIzquierda(int p) {
+            int q = derechos[p];
+            if (q == -1)
+                throw new IllegalArgumentException(ERROR_ARCHIVO);
+            reemplaza(p, q);
+            padres[p] = q;
+            derechos[p] = izquierdos[q];
+            if (izquierdos[q] != -1)
+                padres[izquierdos[q]] = p;
+            izquierdos[q] = p;
+        }
+
+        /* Gira a la derecha sobre un vértice con hijo izquierdo. */
+        private void giraDerecha(int q) {
+            int p = izquierdos[q];
+            if (p == -1)
+                throw new IllegalArgumentException(ERROR_ARCHIVO);
+            reemplaza(q, p);
+            padres[q] = p;
+            izquierdos[q] = derechos[p];
+            if (derechos[p] != -1)
+                padres[derechos[p]] = q;
+            derechos[p] = q;
+        }
+
+        /* Construye la estructura viva con el estado reproducido. */
+        public Simulador simulador() {
+            if (estructura == Estructura.MH) {
+                Lista<Indexable<Integer>> lista = new Lista<>();
+                for (int i = 0; i < n; i++)
+                    lista.agregaFinal(new Indexable<>(elementos[i],
+                                                      elementos[i]));
+                return new Simulador(new MonticuloMinimo<>(lista));
+            }
+            ArregloEnteros valores = new ArregloEnteros();
+            ArregloEnteros forma = new ArregloEnteros();
+            int[] pila = new int[16];
+            int tope = 0;
+            if (raiz != -1)
+                pila[tope++] = raiz;
+            while (tope > 0) {
+                int v = pila[--tope];
+                if (vacios[v])
+                    throw new IllegalArgumentException(ERROR_ARCHIVO);
+                valores.agrega(elementos[v]);
+                forma.agrega((izquierdos[v] != -1 ? 1 : 0)
+                             | (derechos[v] != -1 ? 2 : 0) | colores[v] << 2);
+                if (tope + 2 > pila.length)
+                    pila = Arrays.copyOf(pila, pila.length * 2);
+                if (derechos[v] != -1)
+                    pila[tope++] = derechos[v];
+                if (izquierdos[v] != -1)
+                    pila[tope++] = izquierdos[v];
+            }
+            ArbolBinarioOrdenado<Integer> arbol = nuevoArbol(estructura);
+            arbol.restaura(valores, forma);
+            return new Simulador(estructura, arbol);
+        }
+    }
+
+    /* Clase interna estática privada para leer enteros de un flujo. */
+    private static class Lector {
+
+        /* El flujo. */
+        private InputStream entrada;
+
+        /* Construye un lector del flujo recibido. */
+        public Lector(InputStream entrada) {
+            this.entrada = entrada;
+        }
+
+        /* Lee un entero no negativo de longitud variable. */
+        public int leeVariable() throws IOException {
+            long valor = 0;
+            for (int desplazamiento = 0; desplazamiento <= 28;
+                 desplazamiento += 7) {
+                int c = entrada.read();
+                if (c == -1)
+                    throw new IllegalArgumentException(ERROR_ARCHIVO);
+                valor |= (long) (c & 0x7f) << desplazamiento;
+                if (c < 0x80) {
+                    if (valor > Integer.MAX_VALUE)
+                        break;
+                    return (int) valor;
+                }
+            }
+            throw new IllegalArgumentException(ERROR_ARCHIVO);
+        }
+
+        /* Lee un entero en zig-zag de longitud variable. */
+        public int leeZigZag() throws IOException {
+            long valor = 0;
+            for (int desplazamiento = 0; desplazamiento <= 28;
+                 desplazamiento += 7) {
+                int c = entrada.read();
+                if (c == -1)
+                    throw new IllegalArgumentException(ERROR_ARCHIVO);
+                valor |= (long) (c & 0x7f) << desplazamiento;
+                if (c < 0x80) {
+                    if (valor > 0xffffffffL)
+                        break;
+                    int v = (int) valor;
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+            throw new IllegalArgumentException(ERROR_ARCHIVO);
+        }
+    }
+
+    /* El simulador de la estructura que se graba. */
+    private Simulador simulador;
+
+    /* El flujo donde se escribe la bitácora. */
+    private OutputStream salida;
+
+    /* El búfer de las mutaciones del paso actual. */
+    private byte[] buffer = new byte[TAMAÑO_BUFFER];
+
+    /* Número de bytes en el búfer. */
+    private int bytes;
+
+    /* La posición en el archivo del inicio del búfer. */
+    private long posicion;
+
+    /* Los pasos de los puntos de control. */
+    private ArregloEnteros pasosPuntos = new ArregloEnteros();
+
+    /* Las posiciones de los puntos de control. */
+    private Lista<Long> posicionesPuntos = new Lista<>();
+
+    /* La posición del final del último punto de control. */
+    private long finPunto;
+
+    /* El tamaño en bytes del último punto de control. */
+    private long tamañoPunto;
+
+    /* Número de pasos grabados. */
+    private int pasos;
+
+    /* Los números de los vértices del árbol desde el último punto de
+       control. */
+    private IdentityHashMap<VerticeArbolBinario<Integer>, Integer> ids;
+
+    /* El número del siguiente vértice que se agregue. */
+    private int siguiente;
+
+    /**
+     * Empieza a grabar la bitácora de la estructura viva de un simulador,
+     * con un punto de control de su estado actual. Cada paso debe
+     * terminarse con {@link #paso}, y la bitácora con {@link #termina}.
+     * @param simulador el simulador de la estructura, antes de la primera
+     *        operación.
+     * @param salida el flujo donde se escribe la bitácora; no se cierra.
+     * @throws IOException si ocurre un error al escribir.
+     * @throws IllegalArgumentException si la estructura no es un árbol
+     *         ordenado ni un montículo mínimo.
+     */
+    public DSVE(Simulador simulador, OutputStream salida) throws IOException {
+        Estructura estructura = simulador.getEstructura();
+        if (estructura != Estructura.BST && estructura != Estructura.AVL
+            && estructura != Estructura.RBT && estructura != Estructura.MH)
+            throw new IllegalArgumentException(
+                "Sólo los árboles ordenados y los montículos mínimos tienen bitácora");
+        this.simulador = simulador;
+        this.salida = salida;
+        System.arraycopy(MAGIA, 0, buffer, 0, MAGIA.length);
+        bytes = MAGIA.length;
+        escribeVariable(VERSION);
+        escribeVariable(estructura.ordinal());
+        if (estructura == Estructura.MH) {
+            simulador.getMonticulo().setBitacora(new Monticulo());
+        } else {
+            ids = new IdentityHashMap<>();
+            arbol().setBitacora(new Arbol());
+        }
+        escribePuntoDeControl();
+        vacia();
+    }
+
+    /**
+     * Termina el paso actual: escribe sus mutaciones y, si las mutaciones
+     * desde el último punto de control ya ocupan tanto como él, un punto de
+     * control.
+     * @throws IOException si ocurre un error al escribir.
+     */
+    public void paso() throws IOException {
+        escribeVariable(FIN);
+        pasos++;
+        if (posicion + bytes - finPunto >= tamañoPunto)
+            escribePuntoDeControl();
+        vacia();
+    }
+
+    /**
+     * Deja de grabar la estructura y escribe el índice de los puntos de
+     * control y el final de la bitácora.
+     * @throws IOException si ocurre un error al escribir.
+     */
+    public void termina() throws IOException {
+        if (simulador.getEstructura() == Estructura.MH)
+            simulador.getMonticulo().setBitacora(null);
+        else
+            arbol().setBitacora(null);
+        int puntos = pasosPuntos.getElementos();
+        ByteBuffer fijos = ByteBuffer.allocate(BYTES_INDICE * puntos
+                                               + BYTES_FINAL)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        int i = 0;
+        for (long punto : posicionesPuntos)
+            fijos.putInt(pasosPuntos.get(i++)).putLong(punto);
+        fijos.putLong(posicion).putInt(pasos).putInt(puntos);
+        salida.write(fijos.array());
+        salida.flush();
+    }
+
+    /**
+     * Restaura la estructura después de un paso de una bitácora: lee el
+     * último punto de control antes del paso y reproduce las mutaciones de
+     * los pasos que le siguen.
+     * @param canal el canal de la bitácora.
+     * @param paso el número de operaciones aplicadas, entre 0 y el número
+     *        de pasos de la bitácora.
+     * @return el simulador de la estructura después del paso.
+     * @throws IOException si ocurre un error al leer.
+     * @throws IllegalArgumentException si el archivo no es una bitácora,
+     *         está dañado, o no tiene el paso.
+     */
+    public static Simulador restaura(FileChannel canal, int paso)
+        throws IOException {
+        long tamaño = canal.size();
+        ByteBuffer inicio = lee(canal, 0, MAGIA.length + 2);
+        for (int i = 0; i < MAGIA.length; i++)
+            if (inicio.get(i) != MAGIA[i])
+                throw new IllegalArgumentException("El archivo no es una bitácora");
+        int ordinal = inicio.get(MAGIA.length + 1);
+        if (inicio.get(MAGIA.length) != VERSION || ordinal < 0
+            || ordinal >= Estructura.values().length
+            || tamaño < MAGIA.length + 2 + BYTES_FINAL)
+            throw new IllegalArgumentException(ERROR_ARCHIVO);
+        ByteBuffer fin = lee(canal, tamaño - BYTES_FINAL, BYTES_FINAL);
+        long posicionIndice = fin.getLong();
+        int pasos = fin.getInt();
+        int puntos = fin.getInt();
+        if (puntos <= 0 || pasos < 0 || posicionIndice < 0
+            || posicionIndice + (long) BYTES_INDICE * puntos
+               != tamaño - BYTES_FINAL)
+            throw new IllegalArgumentException(ERROR_ARCHIVO);
+        if (paso < 0 || paso > pasos)
+            throw new IllegalArgumentException(String.format(
+                "La bitácora no tiene el paso %d; tiene %d pasos",
+                paso, pasos));
+        int a = 0, b = puntos - 1;
+        while (a < b) {
+            int m = (a + b + 1) >>> 1;
+            if (lee(canal, posicionIndice + (long) BYTES_INDICE * m, 4)
+                .getInt() <= paso)
+                a = m;
+            else
+                b = m - 1;
+        }
+        ByteBuffer entrada = lee(canal, posicionIndice
+                                 + (long) BYTES_INDICE * a, BYTES_INDICE);
+        int pasoPunto = entrada.getInt();
+        long punto = entrada.getLong();
+        if (pasoPunto > paso || punto < MAGIA.length + 2
+            || punto >= posicionIndice)
+            throw new IllegalArgumentException(ERROR_ARCHIVO);
+        Lector lector = new Lector(new BufferedInputStream(
+            Channels.newInputStream(canal.position(punto)), TAMAÑO_BUFFER));
+        Reproductor reproductor =
+            new Reproductor(Estructura.values()[ordinal]);
+        reproductor.leePuntoDeControl(lector);
+        for (int i = pasoPunto; i < paso; i++)
+            reproductor.reproducePaso(lector);
+        return reproductor.simulador();
+    }
+
+    /* Lee bytes del canal a partir de una posición. */
+    private static ByteBuffer lee(FileChannel canal, long posicion, int n)
+        throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(n).order(ByteOrder.LITTLE_ENDIAN);
+        while (b.hasRemaining())
+            if (canal.read(b, posicion + b.position()) == -1)
+                throw new IllegalArgumentException(ERROR_ARCHIVO);
+        b.flip();
+        return b;
+    }
+
+    /* Crea un árbol vacío de la estructura. */
+    private static ArbolBinarioOrdenado<Integer> nuevoArbol(Estructura estructura) {
+        switch (estructura) {
+            case AVL:
+                return new ArbolAVL<Integer>();
+            case RBT:
+                return new ArbolRojinegro<Integer>();
+            case BST:
+                return new ArbolBinarioOrdenado<Integer>();
+            default:
+                throw new IllegalArgumentException(ERROR_ARCHIVO);
+        }
+    }
+
+    /* Regresa el árbol que se graba. */
+    private ArbolBinarioOrdenado<Integer> arbol() {
+        return (ArbolBinarioOrdenado<Integer>) simulador.getArbol();
+    }
+
+    /* Escribe en el búfer un punto de control de la estructura, y lo
+       agrega al índice. */
+    private void escribePuntoDeControl() {
+        long inicio = posicion + bytes;
+        pasosPuntos.agrega(pasos);
+        posicionesPuntos.agregaFinal(inicio);
+        if (simulador.getEstructura() == Estructura.MH)
+            escribeMonticulo();
+        else
+            escribeArbol();
+        finPunto = posicion + bytes;
+        tamañoPunto = finPunto - inicio;
+    }
+
+    /* Escribe en el búfer el arreglo del montículo. */
+    private void escribeMonticulo() {
+        MonticuloMinimo<Indexable<Integer>> monticulo = simulador.getMonticulo();
+        escribeVariable(monticulo.getElementos());
+        for (Indexable<Integer> elemento : monticulo)
+            escribeZigZag((int) elemento.getValor());
+    }
+
+    /* Escribe en el búfer la forma del árbol, y numera sus vértices en
+       pre-order. */
+    private void escribeArbol() {
+        ArbolBinarioOrdenado<Integer> arbol = arbol();
+        ArbolRojinegro<Integer> rojinegro =
+            (arbol instanceof ArbolRojinegro)
+            ? (ArbolRojinegro<Integer>) arbol : null;
+        ids.clear();
+        siguiente = 0;
+        escribeVariable(arbol.getElementos());
+        arbol.dfsPreOrder(v -> {
+            ids.put(v, siguiente++);
+            escribeZigZag(v.get());
+            int marca = (rojinegro != null)
+                ? rojinegro.getColor(v).ordinal() : 0;
+            escribeVariable((v.hayIzquierdo() ? 1 : 0)
+                            | (v.hayDerecho() ? 2 : 0) | marca << 2);
+        });
+    }
+
+    /* Escribe un entero no negativo de longitud variable en el búfer. */
+    private void escribeVariable(int v) {
+        if (bytes > buffer.length - 5)
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        while (v >= 0x80) {
+            buffer[bytes++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        buffer[bytes++] = (byte) v;
+    }
+
+    /* Escribe un entero en zig-zag de longitud variable en el búfer. */
+    private void escribeZigZag(int e) {
+        long v = ((e << 1) ^ (e >> 31)) & 0xffffffffL;
+        if (bytes > buffer.length - 5)
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        while (v >= 0x80) {
+            buffer[bytes++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        buffer[bytes++] = (byte) v;
+    }
+
+    /* Escribe el búfer en el flujo y lo vacía. */
+    private void vacia() throws IOException {
+        salida.write(buffer, 0, bytes);
+        posicion += bytes;
+        bytes = 0;
+    }
+}
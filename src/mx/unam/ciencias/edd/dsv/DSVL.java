@@ -0,0 +1,253 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * <p> Clase para exportar la distribución de una imagen en formato binario
+ *  DSVL. </p>
+ *
+ * <p> En lugar de dibujar la imagen, el lienzo guarda la posición de los
+ *  vértices (círculos y rectángulos) y de las aristas (líneas y curvas), y
+ *  al escribir la piecera los escribe en columnas, para que otros programas
+ *  puedan mapear el archivo a memoria y leerlo sin interpretar XML. Todos
+ *  los valores ocupan cuatro bytes y están en orden <i>little-endian</i>:
+ *  </p>
+ *
+ * <ul>
+ *   <li> Cabecera de 24 bytes: los bytes <tt>DSVL</tt>, la versión (int),
+ *        el número de vértices <i>n</i> (int), el número de aristas
+ *        <i>m</i> (int), y el ancho y el largo de la imagen (float). </li>
+ *   <li> Vértices: <i>n</i> floats con las coordenadas en x de los
+ *        centros, <i>n</i> floats con las coordenadas en y, <i>n</i> floats
+ *        con los radios (la mitad del lado mayor para rectángulos), y
+ *        <i>n</i> ints con las etiquetas. </li>
+ *   <li> Aristas: <i>m</i> floats con las coordenadas en x de los inicios,
+ *        <i>m</i> con las coordenadas en y de los inicios, y lo mismo para
+ *        los finales. </li>
+ * </ul>
+ *
+ * <p> La etiqueta de un vértice es el primer texto que se dibuja después de
+ *  él, si es un entero; si no, es {@link Integer#MIN_VALUE}. </p>
+ */
+public class DSVL implements Lienzo {
+
+    /** La versión del formato. */
+    public static final int VERSION = 1;
+
+    /** La etiqueta de los vértices sin etiqueta entera. */
+    public static final int SIN_ETIQUETA = Integer.MIN_VALUE;
+
+    /* Tamaño del búfer de escritura en bytes. */
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+
+    /* El canal donde se escribe la distribución. */
+    private WritableByteChannel canal;
+
+    /* El búfer de escritura. */
+    private ByteBuffer buffer;
+
+    /* El ancho de la imagen. */
+    private float ancho;
+
+    /* El largo de la imagen. */
+    private float largo;
+
+    /* Número de vértices. */
+    private int vertices;
+
+    /* Coordenadas, radios y etiquetas de los vértices. */
+    private float[] verticeX, verticeY, radios;
+    private int[] etiquetas;
+
+    /* Número de aristas. */
+    private int aristas;
+
+    /* Coordenadas de los extremos de las aristas. */
+    private float[] inicioX, inicioY, finalX, finalY;
+
+    /* El vértice que espera su etiqueta, o -1 si no hay. */
+    private int pendiente;
+
+    /**
+     * Construye un lienzo que escribe la distribución en el canal recibido.
+     * @param canal el canal donde se escribe la distribución.
+     */
+    public DSVL(WritableByteChannel canal) {
+        this.canal = canal;
+        buffer = ByteBuffer.allocateDirect(TAMAÑO_BUFFER)
+                           .order(ByteOrder.LITTLE_ENDIAN);
+        verticeX = new float[64];
+        verticeY = new float[64];
+        radios = new float[64];
+        etiquetas = new int[64];
+        inicioX = new float[64];
+        inicioY = new float[64];
+        finalX = new float[64];
+        finalY = new float[64];
+        pendiente = -1;
+    }
+
+    @Override public void escribeCabecera(double ancho, double largo,
+                                          boolean defineFlechas) {
+        this.ancho = (float) ancho;
+        this.largo = (float) largo;
+    }
+
+    @Override public void dibujaCirculo(double centroX, double centroY,
+                                        double radio, String colorFondo,
+                                        String colorBorde) {
+        agregaVertice(centroX, centroY, radio);
+    }
+
+    @Override public void dibujaRectangulo(double x, double y, double ancho,
+                                           double largo, String colorFondo,
+                                           String colorBorde) {
+        agregaVertice(x + ancho / 2, y + largo / 2, Math.max(ancho, largo) / 2);
+    }
+
+    @Override public void dibujaTexto(double x, double y, String cadena,
+                                      String colorTexto, int size) {
+        if (pendiente == -1)
+            return;
+        etiquetas[pendiente] = entero(cadena);
+        pendiente = -1;
+    }
+
+    @Override public void dibujaLinea(double xInicio, double yInicio,
+                                      double xFinal, double yFinal,
+                                      boolean flechaInicio,
+                                      boolean flechaFinal) {
+        agregaArista(xInicio, yInicio, xFinal, yFinal);
+    }
+
+    @Override public void dibujaCurva(double x1, double y1, double curvaX,
+                                      double curvaY, double x2, double y2,
+                                      int color) {
+        agregaArista(x1, y1, x2, y2);
+    }
+
+    /**
+     * Escribe la cabecera y las columnas de vértices y aristas.
+     * @throws UncheckedIOException si ocurre un error al escribir.
+     */
+    @Override public void escribePiecera() {
+        buffer.put((byte) 'D').put((byte) 'S').put((byte) 'V').put((byte) 'L');
+        buffer.putInt(VERSION).putInt(vertices).putInt(aristas);
+        buffer.putFloat(ancho).putFloat(largo);
+        escribe(verticeX, vertices);
+        escribe(verticeY, vertices);
+        escribe(radios, vertices);
+        for (int i = 0; i < vertices; i++) {
+            if (!buffer.hasRemaining())
+                vacia();
+            buffer.putInt(etiquetas[i]);
+        }
+        escribe(inicioX, aristas);
+        escribe(inicioY, aristas);
+        escribe(finalX, aristas);
+        escribe(finalY, aristas);
+        vacia();
+    }
+
+    @Override public boolean agrupaAristas() {
+        return false;
+    }
+
+    /**
+     * Cierra el canal de salida.
+     * @throws UncheckedIOException si ocurre un error al cerrar.
+     */
+    @Override public void cierra() {
+        try {
+            canal.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /* Agrega un vértice, que espera su etiqueta. */
+    private void agregaVertice(double x, double y, double radio) {
+        if (vertices == verticeX.length) {
+            verticeX = crece(verticeX);
+            verticeY = crece(verticeY);
+            radios = crece(radios);
+            int[] e = new int[vertices * 2];
+            System.arraycopy(etiquetas, 0, e, 0, vertices);
+            etiquetas = e;
+        }
+        verticeX[vertices] = (float) x;
+        verticeY[vertices] = (float) y;
+        radios[vertices] = (float) radio;
+        etiquetas[vertices] = SIN_ETIQUETA;
+        pendiente = vertices++;
+    }
+
+    /* Agrega una arista. */
+    private void agregaArista(double x1, double y1, double x2, double y2) {
+        if (aristas == inicioX.length) {
+            inicioX = crece(inicioX);
+            inicioY = crece(inicioY);
+            finalX = crece(finalX);
+            finalY = crece(finalY);
+        }
+        inicioX[aristas] = (float) x1;
+        inicioY[aristas] = (float) y1;
+        finalX[aristas] = (float) x2;
+        finalY[aristas] = (float) y2;
+        aristas++;
+    }
+
+    /* Regresa un arreglo del doble de tamaño con los mismos elementos. */
+    private static float[] crece(float[] arreglo) {
+        float[] nuevo = new float[arreglo.length * 2];
+        System.arraycopy(arreglo, 0, nuevo, 0, arreglo.length);
+        return nuevo;
+    }
+
+    /* Regresa el entero que representa la cadena, o SIN_ETIQUETA si no
+       representa un entero. */
+    private static int entero(String cadena) {
+        int n = cadena.length(), i = 0;
+        boolean negativo = n > 0 && cadena.charAt(0) == '-';
+        if (negativo)
+            i++;
+        if (i == n || n - i > 10)
+            return SIN_ETIQUETA;
+        long valor = 0;
+        for (; i < n; i++) {
+            char c = cadena.charAt(i);
+            if (c < '0' || c > '9')
+                return SIN_ETIQUETA;
+            valor = valor * 10 + (c - '0');
+        }
+        valor = negativo ? -valor : valor;
+        if (valor <= Integer.MIN_VALUE || valor > Integer.MAX_VALUE)
+            return SIN_ETIQUETA;
+        return (int) valor;
+    }
+
+    /* Escribe los primeros n elementos del arreglo. */
+    private void escribe(float[] arreglo, int n) {
+        for (int i = 0; i < n; i++) {
+            if (!buffer.hasRemaining())
+                vacia();
+            buffer.putFloat(arreglo[i]);
+        }
+    }
+
+    /* Escribe en el canal el contenido del búfer. */
+    private void vacia() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining())
+                canal.write(buffer);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        buffer.clear();
+    }
+}
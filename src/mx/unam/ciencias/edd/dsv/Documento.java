@@ -0,0 +1,62 @@
+package mx.unam.ciencias.edd.dsv;
+
+import mx.unam.ciencias.edd.ArregloEnteros;
+
+/**
+ * <p> Clase para las secciones de la entrada. </p>
+ *
+ * <p> Una entrada puede tener varias estructuras, cada una en su propia
+ *  sección que empieza con el nombre de la estructura. Un documento guarda
+ *  lo leído de una sección: la estructura, sus elementos iniciales y las
+ *  operaciones que se le aplican. Cada documento se grafica en sus propias
+ *  salidas. </p>
+ */
+public class Documento {
+
+    /* La estructura del documento. */
+    private Estructura estructura;
+
+    /* Los elementos iniciales de la estructura. */
+    private ArregloEnteros enteros;
+
+    /* Las operaciones que se aplican a la estructura. */
+    private Guion guion;
+
+    /**
+     * Construye un documento.
+     * @param estructura la estructura del documento.
+     * @param enteros los elementos iniciales de la estructura.
+     * @param guion las operaciones que se aplican a la estructura.
+     */
+    public Documento(Estructura estructura, ArregloEnteros enteros,
+                     Guion guion) {
+        this.estructura = estructura;
+        this.enteros = enteros;
+        this.guion = guion;
+    }
+
+    /**
+     * Regresa la estructura del documento.
+     * @return la estructura del documento.
+     */
+    public Estructura getEstructura() {
+        return estructura;
+    }
+
+    /**
+     * Regresa los elementos iniciales de la estructura.
+     * @return los elementos iniciales de la estructura.
+     */
+    public ArregloEnteros getEnteros() {
+        return enteros;
+    }
+
+    /**
+     * Regresa las operaciones que se aplican a la estructura.
+     * @return el guion de operaciones; no tiene pasos si la sección sólo
+     *         tiene elementos.
+     */
+    public Guion getGuion() {
+        return guion;
+    }
+}
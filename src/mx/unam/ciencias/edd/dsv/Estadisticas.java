@@ -0,0 +1,246 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p> Clase para medir el costo de cada fase de una ejecución. </p>
+ *
+ * <p> Las fases son la lectura de cada entrada y, para cada documento, la
+ *  construcción de la estructura, la aplicación de sus operaciones, el
+ *  cálculo de su distribución y la escritura de sus imágenes (o su copia
+ *  desde la caché de imágenes). De cada fase se mide el tiempo de pared, el
+ *  tiempo de CPU y los bytes reservados en el montón, estos dos últimos con
+ *  el {@link com.sun.management.ThreadMXBean} del hilo que ejecuta la fase:
+ *  el trabajo que una fase reparte en otros hilos (la lectura en paralelo
+ *  de archivos grandes, la escritura en varias salidas) sólo se cuenta en el
+ *  tiempo de pared. Si la máquina virtual no puede medir el tiempo de CPU o
+ *  los bytes reservados, se reportan como -1. </p>
+ *
+ * <p> Los registros pueden agregarse desde varios hilos; el resumen se
+ *  regresa en JSON con {@link #toString}. </p>
+ */
+public class Estadisticas {
+
+    /** La fase de lectura de una entrada. */
+    public static final String LECTURA = "lectura";
+
+    /** La fase de construcción de la estructura. */
+    public static final String CONSTRUCCION = "construccion";
+
+    /** La fase de aplicación de las operaciones a la estructura. */
+    public static final String OPERACIONES = "operaciones";
+
+    /** La fase de cálculo de la distribución de la imagen. */
+    public static final String DISTRIBUCION = "distribucion";
+
+    /** La fase de escritura de las imágenes en sus salidas. */
+    public static final String ESCRITURA = "escritura";
+
+    /** La fase de copia de las imágenes desde la caché. */
+    public static final String COPIA = "copia";
+
+    /* Los hilos de la máquina virtual. */
+    private static final com.sun.management.ThreadMXBean HILOS = hilos();
+
+    /**
+     * Clase para el inicio de la medición de una fase.
+     */
+    public static class Medicion {
+
+        /* El tiempo de pared al iniciar, en nanosegundos. */
+        private long pared;
+        /* El tiempo de CPU del hilo al iniciar, en nanosegundos. */
+        private long cpu;
+        /* Los bytes reservados por el hilo al iniciar. */
+        private long bytes;
+
+        /**
+         * Inicia la medición de una fase en el hilo actual.
+         */
+        public Medicion() {
+            pared = System.nanoTime();
+            cpu = tiempoCPU();
+            bytes = bytesReservados();
+        }
+    }
+
+    /**
+     * Clase para los registros de fases de un documento o de una entrada.
+     */
+    public static class Registro {
+
+        /* La entrada del registro, o null si no se conoce. */
+        private String entrada;
+        /* La estructura del documento, o null en las lecturas. */
+        private Estructura estructura;
+        /* El número de elementos iniciales del documento. */
+        private int elementos;
+        /* El número de operaciones del documento. */
+        private int operaciones;
+        /* El tiempo de pared, el de CPU y los bytes de cada fase. */
+        private LinkedHashMap<String, long[]> fases = new LinkedHashMap<>();
+
+        /* Construye un registro. */
+        private Registro(String entrada, Documento documento) {
+            this.entrada = entrada;
+            if (documento != null) {
+                estructura = documento.getEstructura();
+                elementos = documento.getEnteros().getElementos();
+                operaciones = documento.getGuion().getPasos();
+            }
+        }
+
+        /**
+         * Termina la medición de una fase en el hilo donde se inició, y
+         * la suma a lo medido antes de la misma fase.
+         * @param fase el nombre de la fase.
+         * @param inicio el inicio de la medición.
+         */
+        public synchronized void agrega(String fase, Medicion inicio) {
+            long cpu = tiempoCPU();
+            long bytes = bytesReservados();
+            long[] total = fases.get(fase);
+            if (total == null) {
+                total = new long[3];
+                fases.put(fase, total);
+            }
+            total[0] += System.nanoTime() - inicio.pared;
+            total[1] = (cpu < 0 || total[1] < 0) ? -1
+                : total[1] + cpu - inicio.cpu;
+            total[2] = (bytes < 0 || total[2] < 0) ? -1
+                : total[2] + bytes - inicio.bytes;
+        }
+
+        /* Escribe el registro en JSON. */
+        private synchronized void escribe(StringBuilder json) {
+            json.append("{\"entrada\":");
+            cadena(json, entrada);
+            if (estructura != null)
+                json.append(",\"estructura\":\"").append(estructura.name())
+                    .append("\",\"elementos\":").append(elementos)
+                    .append(",\"operaciones\":").append(operaciones);
+            json.append(",\"fases\":{");
+            boolean primera = true;
+            for (Map.Entry<String, long[]> fase : fases.entrySet()) {
+                if (!primera)
+                    json.append(',');
+                primera = false;
+                long[] total = fase.getValue();
+                json.append('"').append(fase.getKey())
+                    .append("\":{\"pared_ns\":").append(total[0])
+                    .append(",\"cpu_ns\":").append(total[1])
+                    .append(",\"bytes\":").append(total[2]).append('}');
+            }
+            json.append("}}");
+        }
+    }
+
+    /* Los registros de lectura de las entradas. */
+    private List<Registro> lecturas = new ArrayList<>();
+
+    /* Los registros de los documentos. */
+    private List<Registro> documentos = new ArrayList<>();
+
+    /**
+     * Agrega el registro de la lectura de una entrada.
+     * @param entrada el archivo de entrada, o <tt>null</tt> para la entrada
+     *        estándar o un cliente del servidor.
+     * @param inicio el inicio de la medición de la lectura.
+     */
+    public void lectura(String entrada, Medicion inicio) {
+        Registro registro = new Registro(entrada, null);
+        registro.agrega(LECTURA, inicio);
+        synchronized (this) {
+            lecturas.add(registro);
+        }
+    }
+
+    /**
+     * Agrega y regresa un registro vacío para las fases de un documento.
+     * @param entrada el archivo de entrada del documento, o <tt>null</tt> si
+     *        no se conoce.
+     * @param documento el documento.
+     * @return el registro del documento.
+     */
+    public synchronized Registro documento(String entrada, Documento documento) {
+        Registro registro = new Registro(entrada, documento);
+        documentos.add(registro);
+        return registro;
+    }
+
+    /**
+     * Regresa el resumen de los registros en JSON, en una sola línea: un
+     * objeto con los arreglos <tt>lecturas</tt> y <tt>documentos</tt>, cuyos
+     * registros tienen el tiempo de pared (<tt>pared_ns</tt>), el de CPU
+     * (<tt>cpu_ns</tt>) y los bytes reservados (<tt>bytes</tt>) de cada fase.
+     * @return el resumen en JSON.
+     */
+    @Override public synchronized String toString() {
+        StringBuilder json = new StringBuilder("{\"lecturas\":[");
+        for (int i = 0; i < lecturas.size(); i++) {
+            if (i > 0)
+                json.append(',');
+            lecturas.get(i).escribe(json);
+        }
+        json.append("],\"documentos\":[");
+        for (int i = 0; i < documentos.size(); i++) {
+            if (i > 0)
+                json.append(',');
+            documentos.get(i).escribe(json);
+        }
+        return json.append("]}").toString();
+    }
+
+    /* Escribe una cadena en JSON, o null. */
+    private static void cadena(StringBuilder json, String cadena) {
+        if (cadena == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < cadena.length(); i++) {
+            char c = cadena.charAt(i);
+            if (c == '"' || c == '\\')
+                json.append('\\').append(c);
+            else if (c < ' ')
+                json.append(String.format("\\u%04x", (int)c));
+            else
+                json.append(c);
+        }
+        json.append('"');
+    }
+
+    /* Regresa los hilos de la máquina virtual con las mediciones que se
+       puedan habilitadas, o null si no son de HotSpot. */
+    private static com.sun.management.ThreadMXBean hilos() {
+        if (!(ManagementFactory.getThreadMXBean()
+              instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean hilos =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if (hilos.isCurrentThreadCpuTimeSupported())
+            hilos.setThreadCpuTimeEnabled(true);
+        if (hilos.isThreadAllocatedMemorySupported())
+            hilos.setThreadAllocatedMemoryEnabled(true);
+        return hilos;
+    }
+
+    /* Regresa el tiempo de CPU del hilo actual, o -1 si no se puede medir. */
+    private static long tiempoCPU() {
+        if (HILOS == null || !HILOS.isCurrentThreadCpuTimeSupported())
+            return -1;
+        return HILOS.getCurrentThreadCpuTime();
+    }
+
+    /* Regresa los bytes reservados por el hilo actual, o -1 si no se
+       pueden medir. */
+    private static long bytesReservados() {
+        if (HILOS == null || !HILOS.isThreadAllocatedMemorySupported())
+            return -1;
+        return HILOS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
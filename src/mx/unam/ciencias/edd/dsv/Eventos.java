@@ -0,0 +1,280 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import mx.unam.ciencias.edd.ArregloEnteros;
+import mx.unam.ciencias.edd.Lista;
+
+/**
+ * <p> Clase para los eventos de Java Flight Recorder de cada fase. </p>
+ *
+ * <p> Cada fase de una gráfica registra un evento con su duración: la
+ *  lectura de una entrada, la construcción de la estructura, su distribución
+ *  y dibujo en un lienzo, y la escritura de cada salida, desde que se abre
+ *  su canal hasta que se cierra, con los bytes escritos. Los giros de los
+ *  árboles balanceados los registra <tt>mx.unam.ciencias.edd.Rebalanceo</tt>,
+ *  deshabilitado por omisión. </p>
+ *
+ * <p> Los eventos se graban con <tt>-XX:StartFlightRecording</tt> o con
+ *  <tt>jcmd</tt>. Mientras no se haya iniciado ninguna grabación, los
+ *  métodos de esta clase regresan <tt>null</tt> sin crear los eventos, pues
+ *  inicializar la primera clase de eventos tarda más que graficar una
+ *  estructura pequeña; tampoco se envuelven los canales de salida para
+ *  contar sus bytes. </p>
+ */
+public abstract class Eventos {
+
+    /**
+     * Evento de la lectura de una entrada.
+     */
+    @Name("mx.unam.ciencias.edd.dsv.Lectura")
+    @Label("Lectura")
+    @Category({ "EDD", "DSV" })
+    @Description("La lectura de los documentos de una entrada.")
+    public static class Lectura extends Event {
+
+        /** El archivo de entrada, o null para un flujo. */
+        @Label("Entrada")
+        String entrada;
+
+        /** El número de enteros leídos. */
+        @Label("Enteros")
+        int enteros;
+
+        /** El número de documentos leídos. */
+        @Label("Documentos")
+        int documentos;
+
+        /* Termina el evento y lo registra si está habilitado. */
+        void termina(String entrada, ArregloEnteros enteros,
+                     Lista<Documento> documentos) {
+            if (!shouldCommit())
+                return;
+            this.entrada = entrada;
+            this.enteros = enteros.getElementos();
+            this.documentos = documentos.getLongitud();
+            commit();
+        }
+    }
+
+    /**
+     * Evento de la construcción de una estructura con sus elementos
+     * iniciales.
+     */
+    @Name("mx.unam.ciencias.edd.dsv.Construccion")
+    @Label("Construcción")
+    @Category({ "EDD", "DSV" })
+    @Description("La construcción de una estructura con sus elementos.")
+    public static class Construccion extends Event {
+
+        /** La estructura construida. */
+        @Label("Estructura")
+        String estructura;
+
+        /** El número de elementos de la entrada. */
+        @Label("Elementos")
+        int elementos;
+
+        /* Termina el evento y lo registra si está habilitado. */
+        void termina(Estructura estructura, int elementos) {
+            if (!shouldCommit())
+                return;
+            this.estructura = estructura.name();
+            this.elementos = elementos;
+            commit();
+        }
+    }
+
+    /**
+     * Evento de la distribución de una estructura y su dibujo en un lienzo.
+     */
+    @Name("mx.unam.ciencias.edd.dsv.Distribucion")
+    @Label("Distribución")
+    @Category({ "EDD", "DSV" })
+    @Description("La distribución de una estructura y su dibujo en un lienzo.")
+    public static class Distribucion extends Event {
+
+        /** La estructura dibujada. */
+        @Label("Estructura")
+        String estructura;
+
+        /** El número de elementos de la estructura. */
+        @Label("Elementos")
+        int elementos;
+
+        /** La clase del lienzo. */
+        @Label("Lienzo")
+        String lienzo;
+
+        /* Termina el evento y lo registra si está habilitado. */
+        void termina(Estructura estructura, int elementos, Lienzo lienzo) {
+            if (!shouldCommit())
+                return;
+            this.estructura = estructura.name();
+            this.elementos = elementos;
+            this.lienzo = lienzo.getClass().getSimpleName();
+            commit();
+        }
+    }
+
+    /**
+     * Evento de la escritura de una salida.
+     */
+    @Name("mx.unam.ciencias.edd.dsv.Escritura")
+    @Label("Escritura")
+    @Category({ "EDD", "DSV" })
+    @Description("La escritura de una imagen, hasta que se cierra su salida.")
+    public static class Escritura extends Event {
+
+        /** El archivo de salida, o null para la salida estándar. */
+        @Label("Archivo")
+        String archivo;
+
+        /** El formato de la imagen. */
+        @Label("Formato")
+        String formato;
+
+        /** Si la imagen se copió desde la caché de imágenes. */
+        @Label("Desde la caché")
+        boolean copia;
+
+        /** Los bytes escritos. */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        /* Termina el evento y lo registra si está habilitado. */
+        void termina(String archivo, Formato formato, boolean copia,
+                     long bytes) {
+            if (!shouldCommit())
+                return;
+            this.archivo = archivo;
+            this.formato = formato.name();
+            this.copia = copia;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+
+    /* Clase interna privada para canales que cuentan sus bytes y registran
+       su escritura al cerrarse. */
+    private static class CanalMedido implements WritableByteChannel {
+
+        /* El canal envuelto. */
+        private WritableByteChannel canal;
+        /* El evento de la escritura. */
+        private Escritura evento;
+        /* El archivo de salida. */
+        private String archivo;
+        /* El formato de la imagen. */
+        private Formato formato;
+        /* Los bytes escritos. */
+        private long bytes;
+
+        /* Construye un canal medido. */
+        CanalMedido(WritableByteChannel canal, Escritura evento,
+                    String archivo, Formato formato) {
+            this.canal = canal;
+            this.evento = evento;
+            this.archivo = archivo;
+            this.formato = formato;
+        }
+
+        /* Escribe en el canal envuelto y cuenta los bytes. */
+        @Override public int write(ByteBuffer buffer) throws IOException {
+            int n = canal.write(buffer);
+            bytes += n;
+            return n;
+        }
+
+        /* Nos dice si el canal envuelto está abierto. */
+        @Override public boolean isOpen() {
+            return canal.isOpen();
+        }
+
+        /* Cierra el canal envuelto y registra la escritura. */
+        @Override public void close() throws IOException {
+            if (!canal.isOpen())
+                return;
+            canal.close();
+            evento.termina(archivo, formato, false, bytes);
+        }
+    }
+
+    /**
+     * Empieza un evento de lectura de una entrada.
+     * @return el evento, o <tt>null</tt> si no hay grabaciones.
+     */
+    static Lectura lectura() {
+        if (!FlightRecorder.isInitialized())
+            return null;
+        Lectura evento = new Lectura();
+        evento.begin();
+        return evento;
+    }
+
+    /**
+     * Empieza un evento de construcción de una estructura.
+     * @return el evento, o <tt>null</tt> si no hay grabaciones.
+     */
+    static Construccion construccion() {
+        if (!FlightRecorder.isInitialized())
+            return null;
+        Construccion evento = new Construccion();
+        evento.begin();
+        return evento;
+    }
+
+    /**
+     * Empieza un evento de distribución de una estructura.
+     * @return el evento, o <tt>null</tt> si no hay grabaciones.
+     */
+    static Distribucion distribucion() {
+        if (!FlightRecorder.isInitialized())
+            return null;
+        Distribucion evento = new Distribucion();
+        evento.begin();
+        return evento;
+    }
+
+    /**
+     * Empieza un evento de escritura de una salida que se copia completa.
+     * @return el evento, o <tt>null</tt> si no hay grabaciones.
+     */
+    static Escritura escritura() {
+        if (!FlightRecorder.isInitialized())
+            return null;
+        Escritura evento = new Escritura();
+        evento.begin();
+        return evento;
+    }
+
+    /**
+     * Empieza un evento de escritura de una salida: si alguna grabación lo
+     * habilita, regresa un canal que cuenta los bytes escritos y registra
+     * el evento al cerrarse; si no, regresa el mismo canal.
+     * @param canal el canal de la salida.
+     * @param archivo el archivo de salida, o <tt>null</tt> para la salida
+     *        estándar.
+     * @param formato el formato de la imagen.
+     * @return el canal donde se escribe la salida.
+     */
+    static WritableByteChannel escritura(WritableByteChannel canal,
+                                         String archivo, Formato formato) {
+        if (!FlightRecorder.isInitialized())
+            return canal;
+        Escritura evento = new Escritura();
+        if (!evento.isEnabled())
+            return canal;
+        evento.begin();
+        return new CanalMedido(canal, evento, archivo, formato);
+    }
+}
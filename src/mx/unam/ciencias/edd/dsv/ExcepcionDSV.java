@@ -0,0 +1,25 @@
+package mx.unam.ciencias.edd.dsv;
+
+/**
+ * Clase para excepciones del graficador: argumentos, entradas o salidas
+ * inválidas. El mensaje de la excepción es el que verá el usuario.
+ */
+public class ExcepcionDSV extends RuntimeException {
+
+    /**
+     * Constructor que recibe un mensaje para el usuario.
+     * @param mensaje un mensaje que verá el usuario cuando ocurra la excepción.
+     */
+    public ExcepcionDSV(String mensaje) {
+        super(mensaje);
+    }
+
+    /**
+     * Constructor que recibe un mensaje para el usuario y la causa.
+     * @param mensaje un mensaje que verá el usuario cuando ocurra la excepción.
+     * @param causa la excepción que causó el error.
+     */
+    public ExcepcionDSV(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+}
@@ -0,0 +1,17 @@
+package mx.unam.ciencias.edd.dsv;
+
+/**
+ * Enumeración para los formatos de imagen de salida.
+ */
+public enum Formato {
+
+    /** Enumeracion correspondiente a un documento SVG. */
+    SVG,
+
+    /** Enumeracion correspondiente a una imagen PNG. */
+    PNG,
+
+    /** Enumeracion correspondiente a una distribución binaria DSVL. */
+    DSVL;
+
+}
@@ -7,10 +7,74 @@ import mx.unam.ciencias.edd.Coleccion;
  *
  * <p> Un graficador permite crear un archivo xml que genera una imagen
  *  SVG dada una estructura de datos y sus elementos y/o relaciones entre
- *  dichos elementos. </p>
+ *  dichos elementos. La imagen se dibuja en el {@link Lienzo} que recibe el
+ *  graficador, por lo que la misma estructura puede graficarse en SVG o en
+ *  otros formatos. </p>
+ *
+ * <p> Para generar varias imágenes de la misma estructura, la distribución
+ *  se calcula una sola vez en una {@link Composicion}, que después se
+ *  reproduce en cada lienzo. </p>
  */
 public abstract class Graficador {
 
+    /** El lienzo donde se grafica la estructura. */
+    protected Lienzo lienzo;
+
+    /**
+     * Constructor único que recibe el lienzo donde se grafica.
+     * @param lienzo el lienzo donde se grafica la estructura.
+     */
+    protected Graficador(Lienzo lienzo) {
+        this.lienzo = lienzo;
+    }
+
+    /**
+     * Grafica la estructura recibida en el lienzo recibido, con el
+     * graficador que le corresponde.
+     * @param estructura la estructura a graficar.
+     * @param coleccion la colección con los elementos a graficar.
+     * @param lienzo el lienzo donde se grafica la estructura.
+     * @param presupuesto el número máximo de vértices a dibujar de árboles y
+     *        gráficas, o 0 para dibujarlos completos.
+     */
+    public static void dibuja(Estructura estructura,
+                              Coleccion<Integer> coleccion, Lienzo lienzo,
+                              int presupuesto) {
+        switch (estructura) {
+            case L:
+            case S:
+            case Q:
+                new GraficadorEstructuraLineal(estructura, coleccion, lienzo);
+                break;
+            case G:
+                new GraficadorGrafica(coleccion, lienzo, presupuesto);
+                break;
+            default:
+                new GraficadorArbol(estructura, coleccion, lienzo, presupuesto);
+        }
+    }
+
+    /**
+     * Calcula la distribución de la estructura recibida y la regresa como
+     * una composición, que puede reproducirse en varios lienzos sin volver
+     * a calcularla.
+     * @param estructura la estructura a graficar.
+     * @param coleccion la colección con los elementos a graficar.
+     * @param presupuesto el número máximo de vértices a dibujar de árboles y
+     *        gráficas, o 0 para dibujarlos completos.
+     * @param agrupaAristas si es <tt>true</tt>, las aristas se dibujan antes
+     *        que los vértices.
+     * @return la composición con la imagen de la estructura.
+     */
+    public static Composicion distribuye(Estructura estructura,
+                                         Coleccion<Integer> coleccion,
+                                         int presupuesto,
+                                         boolean agrupaAristas) {
+        Composicion composicion = new Composicion(agrupaAristas);
+        dibuja(estructura, coleccion, composicion, presupuesto);
+        return composicion;
+    }
+
     /**
     * Regresa en ancho en pixéles de un contenedor para un elemento de la
     * colección recibida. El ancho es tal que es mínimo para contener el elemento
@@ -28,12 +92,12 @@ public abstract class Graficador {
     }
 
     /**
-     * Imprime el mensaje recibido en el flujo de error estandar y termina el programa.
-     * @param mensaje el mensaje a imprimir.
+     * Reporta un error con el mensaje recibido.
+     * @param mensaje el mensaje del error.
+     * @throws ExcepcionDSV siempre, con el mensaje recibido.
      */
     protected void salidaError(String mensaje) {
-        System.err.println(mensaje);
-        System.exit(1);
+        throw new ExcepcionDSV(mensaje);
     }
 
     /**
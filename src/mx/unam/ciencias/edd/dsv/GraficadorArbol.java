@@ -11,6 +11,8 @@ import mx.unam.ciencias.edd.Indexable;
 import mx.unam.ciencias.edd.ArbolRojinegro;
 import mx.unam.ciencias.edd.ArbolAVL;
 import mx.unam.ciencias.edd.Lista;
+import mx.unam.ciencias.edd.Cola;
+import mx.unam.ciencias.edd.Pila;
 
 
 /**
@@ -23,9 +25,17 @@ import mx.unam.ciencias.edd.Lista;
  *   <li> Árbol AVL </li>
  *   <li> Monticulo mínimo (árbol binario completo) </li>
  * </ul>
+ *
+ * <p> Si el árbol tiene más vértices que el presupuesto recibido, sólo se
+ *  dibujan los niveles superiores que caben en el presupuesto; cada vértice
+ *  del último nivel dibujado que tiene hijos se reemplaza por un resumen de
+ *  su subárbol (número de elementos, mínimo, máximo y altura). </p>
  */
 public class GraficadorArbol extends Graficador {
 
+    /* El alto en pixeles de los resúmenes de subárboles. */
+    private static final double ALTO_RESUMEN = 36;
+
     /* Árbol binario a graficar */
     private ArbolBinario<Integer> arbolBinario;
 
@@ -47,48 +57,101 @@ public class GraficadorArbol extends Graficador {
     /* La separación en pixeles entre cada nivel del árbol. */
     private double separacionNivel;
 
+    /* Si el recorrido actual dibuja las aristas del árbol. */
+    private boolean dibujaAristas;
+
+    /* Si el recorrido actual dibuja los vértices del árbol. */
+    private boolean dibujaVertices;
+
+    /* La profundidad de los vértices que se dibujan como resumen de su
+       subárbol, o Integer.MAX_VALUE si se dibuja el árbol completo. */
+    private int profundidadResumen;
+
+    /* El ancho en pixeles de los resúmenes de subárboles. */
+    private double anchoResumen;
+
+    /* El presupuesto de elementos a dibujar, o 0 si no hay límite. */
+    private int presupuesto;
+
+    /**
+    * Construye el árbol binario a graficar, el radio de los vértices, así
+    * como el ancho y largo de la imagen, y grafica el árbol completo.
+    * @param estructura enumeracion de la estructura a graficar.
+    * @param coleccion coleccion con los elementos a graficar.
+    * @param lienzo el lienzo donde se grafica el árbol.
+    */
+    public GraficadorArbol(Estructura estructura, Coleccion<Integer> coleccion,
+                           Lienzo lienzo) {
+        this(estructura, coleccion, lienzo, 0);
+    }
+
     /**
-    * Constructor único que construye el árbol binario a graficar, el radio
-    * de los vértices, así como el ancho y largo de la imagen.
+    * Construye el árbol binario a graficar y lo grafica dibujando a lo más
+    * el número de vértices recibido; los subárboles que no caben se
+    * dibujan como resúmenes.
     * @param estructura enumeracion de la estructura a graficar.
     * @param coleccion coleccion con los elementos a graficar.
+    * @param lienzo el lienzo donde se grafica el árbol.
+    * @param presupuesto el número máximo de vértices a dibujar, o 0 para
+    *        dibujar el árbol completo.
+    */
+    public GraficadorArbol(Estructura estructura, Coleccion<Integer> coleccion,
+                           Lienzo lienzo, int presupuesto) {
+        this(estructura, construyeArbol(estructura, coleccion), coleccion,
+             lienzo, presupuesto);
+    }
+
+    /**
+    * Grafica un árbol binario ya construido, dibujando a lo más el número de
+    * vértices recibido. Para montículos mínimos, el árbol es el árbol
+    * binario completo con los elementos en el orden del arreglo del
+    * montículo.
+    * @param estructura enumeracion de la estructura a graficar.
+    * @param arbol el árbol binario a graficar.
+    * @param lienzo el lienzo donde se grafica el árbol.
+    * @param presupuesto el número máximo de vértices a dibujar, o 0 para
+    *        dibujar el árbol completo.
     */
-    public GraficadorArbol(Estructura estructura, Coleccion<Integer> coleccion) {
+    public GraficadorArbol(Estructura estructura, ArbolBinario<Integer> arbol,
+                           Lienzo lienzo, int presupuesto) {
+        this(estructura, arbol, arbol, lienzo, presupuesto);
+    }
+
+    /* Calcula las medidas de la imagen y grafica el árbol. */
+    private GraficadorArbol(Estructura estructura, ArbolBinario<Integer> arbol,
+                            Coleccion<Integer> coleccion, Lienzo lienzo,
+                            int presupuesto) {
+        super(lienzo);
+        Eventos.Distribucion evento = Eventos.distribucion();
         this.estructura = estructura;
+        this.arbolBinario = arbol;
         this.coleccion = coleccion;
-        switch (estructura) {
-            case CBT:
-                arbolBinario = new ArbolBinarioCompleto<Integer>(coleccion);
-                break;
-            case BST:
-                arbolBinario = new ArbolBinarioOrdenado<Integer>(coleccion);
-                break;
-            case RBT:
-                arbolBinario = new ArbolRojinegro<Integer>(coleccion);
-                break;
-            case MH:
-                pueblaMonticuloMinimo();
-                break;
-            default:
-                arbolBinario = new ArbolAVL<Integer>(coleccion);
-        }
+        this.presupuesto = presupuesto;
         radio = getAnchoContenedor(coleccion, 2, 7);
         separacionNivel = 30;
-        if (estructura.equals(Estructura.AVL)){
-            ancho = Math.pow(2, arbolBinario.altura()) * (radio * 4);
-            largo = arbolBinario.altura() * radio * 2
-                    + arbolBinario.altura() * separacionNivel + radio * 3;
-        }
-        else {
-            ancho = Math.pow(2, arbolBinario.altura()) * (radio * 3);
-            largo = arbolBinario.altura() * radio * 2
-                    + arbolBinario.altura() * separacionNivel + radio * 2;
+        profundidadResumen = calculaProfundidadResumen();
+        boolean resume = profundidadResumen != Integer.MAX_VALUE;
+        int altura = resume ? profundidadResumen : arbolBinario.altura();
+        double anchoHoja = estructura.equals(Estructura.AVL) ? radio * 4
+                                                            : radio * 3;
+        if (resume) {
+            anchoResumen = getAnchoContenedor(coleccion, 4, 28);
+            anchoHoja = Math.max(anchoHoja, anchoResumen + radio);
         }
+        ancho = Math.pow(2, altura) * anchoHoja;
+        if (estructura.equals(Estructura.AVL))
+            largo = altura * radio * 2 + altura * separacionNivel + radio * 3;
+        else
+            largo = altura * radio * 2 + altura * separacionNivel + radio * 2;
+        if (resume)
+            largo += ALTO_RESUMEN;
         if (arbolBinario.getElementos() == 0)
-            SVG.escribeCabecera(1, 1, false);
+            lienzo.escribeCabecera(1, 1, false);
         else
             grafica();
-        SVG.escribePiecera();
+        lienzo.escribePiecera();
+        if (evento != null)
+            evento.termina(estructura, arbolBinario.getElementos(), lienzo);
     }
 
     /**
@@ -98,11 +161,32 @@ public class GraficadorArbol extends Graficador {
         if (estructura.equals(Estructura.MH))
             graficaMonticulo();
         else {
-            SVG.escribeCabecera(ancho, largo, false);
+            lienzo.escribeCabecera(ancho, largo, false);
             if (estructura.equals(Estructura.AVL))
-                graficaArbol(arbolBinario.raiz(), 0, ancho, radio * 2, false);
+                graficaArbol(radio * 2);
             else
-                graficaArbol(arbolBinario.raiz(), 0, ancho, radio, false);
+                graficaArbol(radio);
+        }
+    }
+
+    /**
+    * Grafica el árbol binario con la raíz a la altura recibida. Si el
+    * documento agrupa las aristas, se dibujan primero todas las aristas y
+    * después todos los vértices, para que las aristas queden consecutivas
+    * y los vértices sigan encima de ellas.
+    * @param y la coordenada "y" de la raíz.
+    */
+    private void graficaArbol(double y) {
+        if (lienzo.agrupaAristas()) {
+            dibujaAristas = true;
+            dibujaVertices = false;
+            graficaArbol(arbolBinario.raiz(), 0, ancho, y, false, 0);
+            dibujaAristas = false;
+            dibujaVertices = true;
+            graficaArbol(arbolBinario.raiz(), 0, ancho, y, false, 0);
+        } else {
+            dibujaAristas = dibujaVertices = true;
+            graficaArbol(arbolBinario.raiz(), 0, ancho, y, false, 0);
         }
     }
 
@@ -114,11 +198,19 @@ public class GraficadorArbol extends Graficador {
     * @param y la coordenada "y" del vértice
     * @param esHijoIzquierdo <tt>true</tt> si el vértice es hijo izquierdo,
     *              <tt>false</tt> en otro caso.
+    * @param profundidad la profundidad del vértice.
     */
     private void graficaArbol(VerticeArbolBinario<Integer> vertice,
                             double limiteIzquierdo, double limiteDerecho,
-                            double y, boolean esHijoIzquierdo) {
+                            double y, boolean esHijoIzquierdo,
+                            int profundidad) {
         double x = (limiteIzquierdo + limiteDerecho) / 2;
+        if (profundidad == profundidadResumen
+            && (vertice.hayIzquierdo() || vertice.hayDerecho())) {
+            if (dibujaVertices)
+                dibujaResumen(vertice, x, y);
+            return;
+        }
         double x1 = x + (radio * Math.cos((Math.PI * 5)/4));
         double x2 = x + (radio * Math.cos((Math.PI * 7)/4));
         double y1 = y + (radio * Math.cos((Math.PI * 7)/4));
@@ -133,21 +225,96 @@ public class GraficadorArbol extends Graficador {
                 colorLinea = colorFondo = "red";
             textColor = "white";
         }
-        if (estructura.equals(Estructura.AVL)) {
+        if (dibujaVertices && estructura.equals(Estructura.AVL)) {
             int balance = getBalance(vertice);
             double x3 = (esHijoIzquierdo) ? x - radio : x + radio;
-            SVG.dibujaTexto(x3, y - radio - 2, "(" + vertice.altura() + "/" + balance + ")", "black", 6);
+            lienzo.dibujaTexto(x3, y - radio - 2, "(" + vertice.altura() + "/" + balance + ")", "black", 6);
+        }
+        if (dibujaVertices) {
+            lienzo.dibujaCirculo(x, y, radio, colorFondo, colorLinea);
+            lienzo.dibujaTexto(x, y + 3, String.valueOf(vertice.get()), textColor, 8);
         }
-        SVG.dibujaCirculo(x, y, radio, colorFondo, colorLinea);
-        SVG.dibujaTexto(x, y + 3, String.valueOf(vertice.get()), textColor, 8);
         if (vertice.hayIzquierdo()) {
-            SVG.dibujaLinea(x1, y1, (limiteIzquierdo + x)/2, y + (radio * 2) + separacionNivel, false, false);
-            graficaArbol(vertice.izquierdo(), limiteIzquierdo, x, y + (radio * 2) + separacionNivel, true);
+            if (dibujaAristas)
+                lienzo.dibujaLinea(x1, y1, (limiteIzquierdo + x)/2, y + (radio * 2) + separacionNivel, false, false);
+            graficaArbol(vertice.izquierdo(), limiteIzquierdo, x, y + (radio * 2) + separacionNivel, true, profundidad + 1);
         }
         if (vertice.hayDerecho()) {
-            SVG.dibujaLinea(x2, y1, (limiteDerecho + x)/2, y + (radio * 2) + separacionNivel, false, false);
-            graficaArbol(vertice.derecho(), x, limiteDerecho, y + (radio * 2) + separacionNivel, false);
+            if (dibujaAristas)
+                lienzo.dibujaLinea(x2, y1, (limiteDerecho + x)/2, y + (radio * 2) + separacionNivel, false, false);
+            graficaArbol(vertice.derecho(), x, limiteDerecho, y + (radio * 2) + separacionNivel, false, profundidad + 1);
+        }
+    }
+
+    /**
+    * Calcula la profundidad a partir de la cuál los subárboles se dibujan
+    * como resúmenes: la mayor profundidad tal que los vértices hasta ella
+    * caben en el presupuesto. Sólo se recorren los niveles necesarios.
+    * @return la profundidad de los resúmenes, o Integer.MAX_VALUE si el
+    *         árbol completo cabe en el presupuesto.
+    */
+    private int calculaProfundidadResumen() {
+        if (presupuesto <= 0 || arbolBinario.getElementos() <= presupuesto)
+            return Integer.MAX_VALUE;
+        Cola<VerticeArbolBinario<Integer>> nivel = new Cola<>();
+        nivel.mete(arbolBinario.raiz());
+        int dibujados = 0;
+        for (int profundidad = 0; ; profundidad++) {
+            Cola<VerticeArbolBinario<Integer>> siguiente = new Cola<>();
+            int vertices = 0;
+            while (!nivel.esVacia()) {
+                VerticeArbolBinario<Integer> v = nivel.saca();
+                vertices++;
+                if (v.hayIzquierdo())
+                    siguiente.mete(v.izquierdo());
+                if (v.hayDerecho())
+                    siguiente.mete(v.derecho());
+            }
+            if (dibujados + vertices > presupuesto)
+                return Math.max(0, profundidad - 1);
+            dibujados += vertices;
+            nivel = siguiente;
+        }
+    }
+
+    /**
+    * Dibuja el resumen del subárbol del vértice recibido: un rectángulo con
+    * el número de elementos, el mínimo, el máximo y la altura del subárbol.
+    * @param vertice la raíz del subárbol.
+    * @param x la coordenada "x" del centro del resumen.
+    * @param y la coordenada "y" donde se dibujaría el vértice.
+    */
+    private void dibujaResumen(VerticeArbolBinario<Integer> vertice,
+                               double x, double y) {
+        int elementos = 0, altura = 0;
+        int minimo = Integer.MAX_VALUE, maximo = Integer.MIN_VALUE;
+        Pila<VerticeArbolBinario<Integer>> pila = new Pila<>();
+        Pila<Integer> profundidades = new Pila<>();
+        pila.mete(vertice);
+        profundidades.mete(0);
+        while (!pila.esVacia()) {
+            VerticeArbolBinario<Integer> v = pila.saca();
+            int profundidad = profundidades.saca();
+            elementos++;
+            minimo = Math.min(minimo, v.get());
+            maximo = Math.max(maximo, v.get());
+            altura = Math.max(altura, profundidad);
+            if (v.hayIzquierdo()) {
+                pila.mete(v.izquierdo());
+                profundidades.mete(profundidad + 1);
+            }
+            if (v.hayDerecho()) {
+                pila.mete(v.derecho());
+                profundidades.mete(profundidad + 1);
+            }
         }
+        double arriba = y - radio;
+        lienzo.dibujaRectangulo(x - anchoResumen / 2, arriba, anchoResumen,
+                                ALTO_RESUMEN, "white", "black");
+        lienzo.dibujaTexto(x, arriba + 8, "n=" + elementos, "black", 6);
+        lienzo.dibujaTexto(x, arriba + 16, "min=" + minimo, "black", 6);
+        lienzo.dibujaTexto(x, arriba + 24, "max=" + maximo, "black", 6);
+        lienzo.dibujaTexto(x, arriba + 32, "h=" + altura, "black", 6);
     }
 
     /**
@@ -174,12 +341,22 @@ public class GraficadorArbol extends Graficador {
         double crecimientoCurva = 10;
         double largoContenedor = 25;
         double anchoContenedor = getAnchoContenedor(coleccion, 2, 25);
-        double largoCurvas = (coleccion.getElementos() * crecimientoCurva) / 4;
+        int celdas = coleccion.getElementos();
+        int ocultos = 0;
+        if (presupuesto > 0 && celdas > presupuesto) {
+            ocultos = celdas - presupuesto;
+            celdas = presupuesto;
+        }
+        double largoCurvas = (celdas * crecimientoCurva) / 4;
         double largoMonticulo = (largoCurvas + radio) * 2 + largoContenedor;
-        ancho = coleccion.getElementos() * anchoContenedor + 10;
-        SVG.escribeCabecera(ancho, largoMonticulo + largo, true);
-        double inicio = (ancho / 2) - (coleccion.getElementos()*anchoContenedor / 2);
-        graficaArbol(arbolBinario.raiz(), 0, ancho, largoMonticulo, false);
+        int anchoArreglo = (ocultos > 0) ? celdas + 1 : celdas;
+        if (ocultos > 0)
+            ancho = Math.max(ancho, anchoArreglo * anchoContenedor + 10);
+        else
+            ancho = anchoArreglo * anchoContenedor + 10;
+        lienzo.escribeCabecera(ancho, largoMonticulo + largo, true);
+        double inicio = (ancho / 2) - (anchoArreglo*anchoContenedor / 2);
+        graficaArbol(largoMonticulo);
         int y = (int) largoCurvas + 5;
         int i = 0;
         int y2 = y + 25;
@@ -187,6 +364,8 @@ public class GraficadorArbol extends Graficador {
         int yp2 = y + 45;
         int color = 0;
         for (Integer entero : arbolBinario) {
+            if (i == celdas)
+                break;
             if (i % 3 == 0)
                 color = 0;
             else if (i % 2 == 0)
@@ -195,47 +374,100 @@ public class GraficadorArbol extends Graficador {
                 color = 75;
             double coordX = anchoContenedor*i + inicio;
             String cadena = String.valueOf(entero);
-            SVG.dibujaRectangulo(coordX, y, anchoContenedor, largoContenedor,
+            lienzo.dibujaRectangulo(coordX, y, anchoContenedor, largoContenedor,
                                 "white", "black");
-            SVG.dibujaTexto(coordX + anchoContenedor/2, y + 15, cadena, "black", 6);
-            SVG.dibujaTexto(coordX + 4, y + 5, String.valueOf(i), "black", 5);
+            lienzo.dibujaTexto(coordX + anchoContenedor/2, y + 15, cadena, "black", 6);
+            lienzo.dibujaTexto(coordX + 4, y + 5, String.valueOf(i), "black", 5);
             if (i != 0)
-                SVG.dibujaTexto(coordX + anchoContenedor/2, y + 23,
+                lienzo.dibujaTexto(coordX + anchoContenedor/2, y + 23,
                                 "p: " + (i - 1) / 2, "black", 5);
             coordX += anchoContenedor / 2;
-            if (i * 2 + 1 < coleccion.getElementos()) {
+            if (i * 2 + 1 < celdas) {
                 int nn = (i * 2 + 1) - i;
                 double curvaX = ((coordX + nn*anchoContenedor) + coordX) / 2;
                 double x1 = (coordX + 5);
                 double x2 = ((coordX) + nn*anchoContenedor);
-                SVG.dibujaCurva(x1, y, curvaX, yp1, x2, (y - 2), color);
+                lienzo.dibujaCurva(x1, y, curvaX, yp1, x2, (y - 2), color);
             }
-            if (i * 2 + 2 < coleccion.getElementos()) {
+            if (i * 2 + 2 < celdas) {
                 int nn = (i * 2 + 2) - i;
                 double curvaX = ((coordX + nn*anchoContenedor) + coordX) / 2;
                 double x1 = (coordX + 5);
                 double x2 = ((coordX) + nn*anchoContenedor);
-                SVG.dibujaCurva(x1, y2, curvaX, yp2, x2, (y2 + 2), color);
+                lienzo.dibujaCurva(x1, y2, curvaX, yp2, x2, (y2 + 2), color);
             }
             yp1 -= crecimientoCurva;
             yp2 += crecimientoCurva;
             i++;
         }
+        if (ocultos > 0) {
+            double coordX = anchoContenedor*celdas + inicio;
+            lienzo.dibujaRectangulo(coordX, y, anchoContenedor, largoContenedor,
+                                "white", "black");
+            lienzo.dibujaTexto(coordX + anchoContenedor/2, y + 15, "+" + ocultos,
+                               "black", 6);
+        }
     }
 
     /**
     * Crea un montículo mínimo con los elementos de la colección, y
     * posteriormente crea un árbol binario completo con el montículo.
+    * @param coleccion coleccion con los elementos del montículo.
+    * @return el árbol binario completo del montículo.
     */
-    private void pueblaMonticuloMinimo() {
-        MonticuloMinimo<Indexable<Integer>> monticulo;
-        arbolBinario = new ArbolBinarioCompleto<>();
+    private static ArbolBinario<Integer> pueblaMonticuloMinimo(
+        Coleccion<Integer> coleccion) {
         Lista<Indexable<Integer>> lista = new Lista<>();
         for (Integer numero : coleccion)
             lista.agrega(new Indexable<>(numero, numero));
-        monticulo = new MonticuloMinimo<>(lista);
+        return arbolDeMonticulo(new MonticuloMinimo<>(lista));
+    }
+
+    /**
+    * Construye el árbol binario de la estructura con los elementos de la
+    * colección recibida.
+    * @param estructura enumeracion de la estructura.
+    * @param coleccion coleccion con los elementos del árbol.
+    * @return el árbol binario; para montículos mínimos, el árbol binario
+    *         completo con los elementos en el orden del montículo.
+    */
+    static ArbolBinario<Integer> construyeArbol(Estructura estructura,
+                                                Coleccion<Integer> coleccion) {
+        Eventos.Construccion evento = Eventos.construccion();
+        ArbolBinario<Integer> arbol;
+        switch (estructura) {
+            case CBT:
+                arbol = new ArbolBinarioCompleto<Integer>(coleccion);
+                break;
+            case BST:
+                arbol = new ArbolBinarioOrdenado<Integer>(coleccion);
+                break;
+            case RBT:
+                arbol = new ArbolRojinegro<Integer>(coleccion);
+                break;
+            case MH:
+                arbol = pueblaMonticuloMinimo(coleccion);
+                break;
+            default:
+                arbol = new ArbolAVL<Integer>(coleccion);
+        }
+        if (evento != null)
+            evento.termina(estructura, coleccion.getElementos());
+        return arbol;
+    }
+
+    /**
+    * Regresa el árbol binario completo con los valores del montículo
+    * recibido, en el orden de su arreglo.
+    * @param monticulo el montículo mínimo.
+    * @return el árbol binario completo del montículo.
+    */
+    static ArbolBinarioCompleto<Integer> arbolDeMonticulo(
+        MonticuloMinimo<Indexable<Integer>> monticulo) {
+        ArbolBinarioCompleto<Integer> arbol = new ArbolBinarioCompleto<>();
         for (Indexable<Integer> idx : monticulo)
-            arbolBinario.agrega((int) idx.getValor());
+            arbol.agrega((int) idx.getValor());
+        return arbol;
     }
 
 }
@@ -31,17 +31,23 @@ public class GraficadorEstructuraLineal extends Graficador {
      * estructura.
      * @param estructura enumeracion de la estructura a graficar.
      * @param coleccion coleccion con los elementos a graficar.
+     * @param lienzo el lienzo donde se grafica la estructura.
      */
     public GraficadorEstructuraLineal(Estructura estructura,
-                                        Coleccion<Integer> coleccion) {
+                                        Coleccion<Integer> coleccion,
+                                        Lienzo lienzo) {
+        super(lienzo);
+        Eventos.Distribucion evento = Eventos.distribucion();
         this.estructura = estructura;
         this.coleccion = coleccion;
         anchoContenedor = getAnchoContenedor(coleccion, 2, 45);
         if (coleccion.getElementos() == 0)
-            SVG.escribeCabecera(1, 1, false);
+            lienzo.escribeCabecera(1, 1, false);
         else
             grafica();
-        SVG.escribePiecera();
+        lienzo.escribePiecera();
+        if (evento != null)
+            evento.termina(estructura, coleccion.getElementos(), lienzo);
     }
 
     /**
@@ -70,7 +76,7 @@ public class GraficadorEstructuraLineal extends Graficador {
                         : lista.getElementos() * anchoContenedor
                         + (lista.getElementos() - 1) * separacionContenedor + 10;;
         double largoSVG = largoContenedor + 10;
-        SVG.escribeCabecera(anchoSVG, largoSVG, true);
+        lienzo.escribeCabecera(anchoSVG, largoSVG, true);
         Iterator<Integer> it = lista.iterator();
         double y = 5;
         int i = 0;
@@ -79,12 +85,12 @@ public class GraficadorEstructuraLineal extends Graficador {
             double x = (anchoContenedor + separacionContenedor)*i + 5;
             double x2 = (anchoContenedor + separacionContenedor)*(i + 1) + 5;
             double mitadSVG = y + largoContenedor/2;
-            SVG.dibujaRectangulo(x, y, anchoContenedor, largoContenedor, "white",
+            lienzo.dibujaRectangulo(x, y, anchoContenedor, largoContenedor, "white",
                                 "black");
-            SVG.dibujaTexto(x + anchoContenedor/2, mitadSVG + 3,
+            lienzo.dibujaTexto(x + anchoContenedor/2, mitadSVG + 3,
                             String.valueOf(entero), "black", 10);
             if (it.hasNext())
-                SVG.dibujaLinea(x + anchoContenedor + 4, mitadSVG, x2 - 5,
+                lienzo.dibujaLinea(x + anchoContenedor + 4, mitadSVG, x2 - 5,
                                 mitadSVG, true, true);
             i++;
         }
@@ -104,7 +110,7 @@ public class GraficadorEstructuraLineal extends Graficador {
                         : coleccion.getElementos() * anchoContenedor
                         + (coleccion.getElementos() - 1) * separacionContenedor + 10;;
         double largoSVG = largoContenedor + 10;
-        SVG.escribeCabecera(anchoSVG, largoSVG, true);
+        lienzo.escribeCabecera(anchoSVG, largoSVG, true);
         double y = 5;
         int i = 0;
         while (!(cola.esVacia())) {
@@ -112,12 +118,12 @@ public class GraficadorEstructuraLineal extends Graficador {
             double x = (anchoContenedor + separacionContenedor)*i + 5;
             double x2 = (anchoContenedor + separacionContenedor)*(i + 1) + 5;
             double mitadSVG = y + largoContenedor/2;
-            SVG.dibujaRectangulo(x, y, anchoContenedor, largoContenedor, "white",
+            lienzo.dibujaRectangulo(x, y, anchoContenedor, largoContenedor, "white",
                                 "black");
-            SVG.dibujaTexto(x + anchoContenedor/2, mitadSVG + 3,
+            lienzo.dibujaTexto(x + anchoContenedor/2, mitadSVG + 3,
                             String.valueOf(entero), "black", 10);
             if (!(cola.esVacia()))
-                SVG.dibujaLinea(x + anchoContenedor + 4, mitadSVG, x2 - 5,
+                lienzo.dibujaLinea(x + anchoContenedor + 4, mitadSVG, x2 - 5,
                                 mitadSVG, false, true);
             i++;
         }
@@ -132,7 +138,7 @@ public class GraficadorEstructuraLineal extends Graficador {
             pila.mete(num);
         double largoSVG = coleccion.getElementos() * 50 + 10;
         double anchoSVG = anchoContenedor + 10;
-        SVG.escribeCabecera(anchoSVG, largoSVG, true);
+        lienzo.escribeCabecera(anchoSVG, largoSVG, true);
         double largoContenedor = 50;
         int i = 0;
         while (!(pila.esVacia())) {
@@ -140,11 +146,11 @@ public class GraficadorEstructuraLineal extends Graficador {
             double x2 = (anchoSVG + anchoContenedor)/2;
             double y = largoContenedor*i + 5;
             double y2 = largoContenedor*(i + 1) + 5;
-            SVG.dibujaRectangulo(x, y, anchoContenedor, largoContenedor, "white",
+            lienzo.dibujaRectangulo(x, y, anchoContenedor, largoContenedor, "white",
                                 "white");
-            SVG.dibujaLinea(x, y, x, y2, false, false);
-            SVG.dibujaLinea(x2, y, x2, y2, false, false);
-            SVG.dibujaTexto(anchoSVG/2, largoContenedor*i + largoContenedor/2 + 7,
+            lienzo.dibujaLinea(x, y, x, y2, false, false);
+            lienzo.dibujaLinea(x2, y, x2, y2, false, false);
+            lienzo.dibujaTexto(anchoSVG/2, largoContenedor*i + largoContenedor/2 + 7,
                             String.valueOf(pila.saca()), "black", 10);
             i++;
         }
@@ -153,7 +159,7 @@ public class GraficadorEstructuraLineal extends Graficador {
             double x = (anchoSVG - anchoContenedor)/2;
             double x2 = (anchoSVG + anchoContenedor)/2;
             double y = largoContenedor*(i++) + 5;
-            SVG.dibujaLinea(x, y, x2, y, false, false);
+            lienzo.dibujaLinea(x, y, x2, y, false, false);
         }
     }
 
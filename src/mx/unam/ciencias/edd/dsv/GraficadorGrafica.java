@@ -3,22 +3,30 @@ package mx.unam.ciencias.edd.dsv;
 import mx.unam.ciencias.edd.Grafica;
 import mx.unam.ciencias.edd.Lista;
 import mx.unam.ciencias.edd.Coleccion;
+import mx.unam.ciencias.edd.VerticeGrafica;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 
 /**
  * <p>Clase para graficar graficas no dirigidas. </p>
+ *
+ * <p> Si la gráfica tiene más vértices que el presupuesto recibido, sólo se
+ *  dibujan los vértices de mayor grado; el resto se reemplaza por un único
+ *  resumen en el centro (número de vértices, mínimo, máximo y grado
+ *  máximo), conectado con los vértices dibujados que eran vecinos de algún
+ *  vértice resumido. </p>
  */
 public class GraficadorGrafica extends Graficador {
 
     /* Diametro en pixeles de los vertices de la grafica. */
     private double diametro;
 
-    /* Coleccion de elementos a graficar. */
-    private Coleccion<Integer> coleccion;
-
     /* Grafica de enteros para graficar la coleccion. */
     private Grafica<Integer> grafica;
 
+    /* El presupuesto de vértices a dibujar, o 0 si no hay límite. */
+    private int presupuesto;
+
     /**
      * Clase interna privada para vértices de graficas.
      * Los vertices graficables nos permiten guardar las coordenadas de cada
@@ -51,51 +59,117 @@ public class GraficadorGrafica extends Graficador {
     }
 
     /**
-    * Constructor único que determina el díametro de cada vértice y grafica la
-    * gráfica.
+    * Determina el díametro de cada vértice y grafica la gráfica completa.
     * Si la sucesión de aristas es de longitud impar, ocurre un error.
     * @param coleccion coleccion con los elementos a graficar.
+    * @param lienzo el lienzo donde se grafica la gráfica.
     */
-    public GraficadorGrafica(Coleccion<Integer> coleccion) {
-        this.coleccion = coleccion;
-        grafica = new Grafica<>();
-        diametro = getAnchoContenedor(coleccion, 5, 20);
-        if (coleccion.getElementos() % 2 != 0)
-            salidaError("El número de elementos en el archivo debe ser par.");
-        pueblaGrafica();
-        if (coleccion.getElementos() == 0)
-            SVG.escribeCabecera(1, 1, false);
-        else
-            grafica();
-        SVG.escribePiecera();
+    public GraficadorGrafica(Coleccion<Integer> coleccion, Lienzo lienzo) {
+        this(coleccion, lienzo, 0);
+    }
+
+    /**
+    * Determina el díametro de cada vértice y grafica la gráfica dibujando a
+    * lo más el número de vértices recibido.
+    * Si la sucesión de aristas es de longitud impar, ocurre un error.
+    * @param coleccion coleccion con los elementos a graficar.
+    * @param lienzo el lienzo donde se grafica la gráfica.
+    * @param presupuesto el número máximo de vértices a dibujar, contando el
+    *        resumen, o 0 para dibujar la gráfica completa.
+    */
+    public GraficadorGrafica(Coleccion<Integer> coleccion, Lienzo lienzo,
+                             int presupuesto) {
+        super(lienzo);
+        this.presupuesto = presupuesto;
+        try {
+            grafica = pueblaGrafica(coleccion);
+        } catch (IllegalArgumentException iae) {
+            salidaError(iae.getMessage());
+        }
+        graficaDocumento();
+    }
+
+    /**
+    * Grafica una gráfica ya construida, dibujando a lo más el número de
+    * vértices recibido.
+    * @param grafica la gráfica a graficar.
+    * @param lienzo el lienzo donde se grafica la gráfica.
+    * @param presupuesto el número máximo de vértices a dibujar, contando el
+    *        resumen, o 0 para dibujar la gráfica completa.
+    */
+    public GraficadorGrafica(Grafica<Integer> grafica, Lienzo lienzo,
+                             int presupuesto) {
+        super(lienzo);
+        this.grafica = grafica;
+        this.presupuesto = presupuesto;
+        graficaDocumento();
     }
 
     /**
     * Construye la gráfica con los elementos de la colección, y conecta los
     * elementos que sean consecutivos. Si dos elementos consecutivos son iguales,
     * se crea un único vértice sin crear una arista a sí mismo.
-    * Si se añade el mismo vértice dos veces, ocurre un error.
-    * Si se añade la misma arista dos veces, ocurre un error.
+    * @param coleccion coleccion con los elementos de la gráfica.
+    * @return la gráfica de la colección.
+    * @throws IllegalArgumentException si la sucesión es de longitud impar,
+    *         si se añade el mismo vértice dos veces o si se añade la misma
+    *         arista dos veces.
     */
-    private void pueblaGrafica() {
+    static Grafica<Integer> pueblaGrafica(Coleccion<Integer> coleccion) {
+        if (coleccion.getElementos() % 2 != 0)
+            throw new IllegalArgumentException(
+                "El número de elementos en el archivo debe ser par.");
+        Eventos.Construccion evento = Eventos.construccion();
+        Grafica<Integer> grafica = new Grafica<>();
         Iterator<Integer> it = coleccion.iterator();
-        while (it.hasNext()) {
-            int el1 = it.next();
-            int el2 = it.next();
-            if (el1 != el2) {
-                if (!(grafica.contiene(el1)))
-                    grafica.agrega(el1);
-                if (!(grafica.contiene(el2)))
-                    grafica.agrega(el2);
-                if (grafica.sonVecinos(el1, el2))
-                    salidaError("Las gráficas no pueden tener aristas repetidas.");
-                grafica.conecta(el1, el2);
-            }
-            else if (el1 == el2 && !(grafica.contiene(el1)))
+        while (it.hasNext())
+            agregaPar(grafica, it.next(), it.next());
+        if (evento != null)
+            evento.termina(Estructura.G, coleccion.getElementos());
+        return grafica;
+    }
+
+    /**
+    * Agrega a la gráfica un par de elementos de la entrada: la arista entre
+    * ellos, agregando los vértices que falten, o un vértice aislado si son
+    * iguales.
+    * @param grafica la gráfica.
+    * @param el1 el primer elemento del par.
+    * @param el2 el segundo elemento del par.
+    * @throws IllegalArgumentException si se añade el mismo vértice dos veces
+    *         o si se añade la misma arista dos veces.
+    */
+    static void agregaPar(Grafica<Integer> grafica, int el1, int el2) {
+        if (el1 != el2) {
+            if (!(grafica.contiene(el1)))
                 grafica.agrega(el1);
-            else
-                salidaError("Las gráficas no pueden tener vértices repetidos.");
+            if (!(grafica.contiene(el2)))
+                grafica.agrega(el2);
+            if (grafica.sonVecinos(el1, el2))
+                throw new IllegalArgumentException(
+                    "Las gráficas no pueden tener aristas repetidas.");
+            grafica.conecta(el1, el2);
         }
+        else if (el1 == el2 && !(grafica.contiene(el1)))
+            grafica.agrega(el1);
+        else
+            throw new IllegalArgumentException(
+                "Las gráficas no pueden tener vértices repetidos.");
+    }
+
+    /**
+    * Determina el díametro de cada vértice y escribe el documento completo.
+    */
+    private void graficaDocumento() {
+        Eventos.Distribucion evento = Eventos.distribucion();
+        diametro = getAnchoContenedor(grafica, 5, 20);
+        if (grafica.getElementos() == 0)
+            lienzo.escribeCabecera(1, 1, false);
+        else
+            grafica();
+        lienzo.escribePiecera();
+        if (evento != null)
+            evento.termina(Estructura.G, grafica.getElementos(), lienzo);
     }
 
     /**
@@ -104,15 +178,19 @@ public class GraficadorGrafica extends Graficador {
     @Override protected void grafica() {
         if (grafica.getElementos() == 1) {
             for (Integer numero : grafica) {
-                SVG.escribeCabecera(50, 50, false);
-                SVG.dibujaCirculo(25, 25, 10, "white", "black");
-                SVG.dibujaTexto(25, 29, String.valueOf(numero), "black", 10);
+                lienzo.escribeCabecera(50, 50, false);
+                lienzo.dibujaCirculo(25, 25, 10, "white", "black");
+                lienzo.dibujaTexto(25, 29, String.valueOf(numero), "black", 10);
             }
             return;
         }
+        if (presupuesto > 0 && grafica.getElementos() > presupuesto) {
+            graficaResumen();
+            return;
+        }
         double radio = grafica.getElementos() * 10 + diametro * 3;
         double tamaño = radio * 2 + diametro + 20;
-        SVG.escribeCabecera(tamaño, tamaño, false);
+        lienzo.escribeCabecera(tamaño, tamaño, false);
         double centroX = tamaño/2, centroY = tamaño/2;
         double grados = 360.0 / grafica.getElementos();
         int i = 0;
@@ -128,13 +206,83 @@ public class GraficadorGrafica extends Graficador {
             for (int j = i + 1; j < vertices.length; j++) {
                 VerticeGraficable v2 = vertices[j];
                 if (grafica.sonVecinos(v1.entero, v2.entero))
-                    SVG.dibujaLinea(v1.x, v1.y, v2.x, v2.y, false, false);
+                    lienzo.dibujaLinea(v1.x, v1.y, v2.x, v2.y, false, false);
+            }
+        }
+        for (i = 0; i < vertices.length; i++) {
+            VerticeGraficable v = vertices[i];
+            lienzo.dibujaCirculo(v.x, v.y, diametro/2, "white", "black");
+            lienzo.dibujaTexto(v.x, v.y + 4, String.valueOf(v.entero), "black", 10);
+        }
+    }
+
+    /**
+    * Grafica los vértices de mayor grado que caben en el presupuesto, en
+    * círculo, y un resumen del resto de los vértices en el centro. Las
+    * aristas se recorren desde los vértices dibujados, por lo que el
+    * tiempo no depende de los vértices resumidos más que para calcular el
+    * resumen.
+    */
+    private void graficaResumen() {
+        Lista<VerticeGrafica<Integer>> todos = new Lista<>();
+        grafica.paraCadaVertice((v) -> todos.agrega(v));
+        Lista<VerticeGrafica<Integer>> ordenados =
+            todos.mergeSort((a, b) -> b.getGrado() - a.getGrado());
+        int dibujados = presupuesto - 1;
+        double radio = dibujados * 10 + diametro * 3;
+        double tamaño = radio * 2 + diametro + 20;
+        lienzo.escribeCabecera(tamaño, tamaño, false);
+        double centroX = tamaño/2, centroY = tamaño/2;
+        double grados = 360.0 / Math.max(1, dibujados);
+        IdentityHashMap<VerticeGrafica<Integer>, Integer> indices =
+            new IdentityHashMap<>();
+        VerticeGraficable[] vertices = new VerticeGraficable[dibujados];
+        int resumidos = 0, gradoMaximo = 0;
+        int minimo = Integer.MAX_VALUE, maximo = Integer.MIN_VALUE;
+        int i = 0;
+        for (VerticeGrafica<Integer> v : ordenados) {
+            if (i < dibujados) {
+                double x = centroX + (radio * Math.cos((Math.PI * grados*i)/180));
+                double y = centroY + (radio * Math.sin((Math.PI * grados*i)/180));
+                vertices[i] = new VerticeGraficable(x, y, v.get());
+                indices.put(v, i++);
+            } else {
+                resumidos++;
+                minimo = Math.min(minimo, v.get());
+                maximo = Math.max(maximo, v.get());
+                gradoMaximo = Math.max(gradoMaximo, v.getGrado());
+            }
+        }
+        i = 0;
+        for (VerticeGrafica<Integer> v : ordenados) {
+            if (i == dibujados)
+                break;
+            VerticeGraficable v1 = vertices[i];
+            boolean tocaResumen = false;
+            for (VerticeGrafica<Integer> u : v.vecinos()) {
+                Integer j = indices.get(u);
+                if (j == null)
+                    tocaResumen = true;
+                else if (j > i)
+                    lienzo.dibujaLinea(v1.x, v1.y, vertices[j].x, vertices[j].y,
+                                       false, false);
             }
+            if (tocaResumen)
+                lienzo.dibujaLinea(v1.x, v1.y, centroX, centroY, false, false);
+            i++;
         }
         for (i = 0; i < vertices.length; i++) {
             VerticeGraficable v = vertices[i];
-            SVG.dibujaCirculo(v.x, v.y, diametro/2, "white", "black");
-            SVG.dibujaTexto(v.x, v.y + 4, String.valueOf(v.entero), "black", 10);
+            lienzo.dibujaCirculo(v.x, v.y, diametro/2, "white", "black");
+            lienzo.dibujaTexto(v.x, v.y + 4, String.valueOf(v.entero), "black", 10);
         }
+        double anchoResumen = diametro * 3, altoResumen = 48;
+        lienzo.dibujaRectangulo(centroX - anchoResumen/2, centroY - altoResumen/2,
+                                anchoResumen, altoResumen, "white", "black");
+        double y = centroY - altoResumen/2;
+        lienzo.dibujaTexto(centroX, y + 11, "n=" + resumidos, "black", 9);
+        lienzo.dibujaTexto(centroX, y + 22, "min=" + minimo, "black", 9);
+        lienzo.dibujaTexto(centroX, y + 33, "max=" + maximo, "black", 9);
+        lienzo.dibujaTexto(centroX, y + 44, "g<=" + gradoMaximo, "black", 9);
     }
 }
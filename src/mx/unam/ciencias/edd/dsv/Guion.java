@@ -0,0 +1,152 @@
+package mx.unam.ciencias.edd.dsv;
+
+import mx.unam.ciencias.edd.ArregloEnteros;
+
+/**
+ * <p> Clase para guiones de operaciones. </p>
+ *
+ * <p> Después de los elementos de la estructura, la entrada puede tener una
+ *  sucesión de operaciones que se aplican en orden a la estructura: </p>
+ *
+ * <ul>
+ *   <li> <tt>I x</tt>: agrega <tt>x</tt>. </li>
+ *   <li> <tt>D x</tt>: elimina <tt>x</tt>. </li>
+ *   <li> <tt>K x y</tt>: disminuye a <tt>y</tt> el valor de <tt>x</tt>
+ *        (sólo montículos mínimos). </li>
+ *   <li> <tt>C a b</tt>: conecta <tt>a</tt> y <tt>b</tt> (sólo
+ *        gráficas). </li>
+ *   <li> <tt>X a b</tt>: desconecta <tt>a</tt> y <tt>b</tt> (sólo
+ *        gráficas). </li>
+ * </ul>
+ *
+ * <p> En las gráficas, <tt>I x</tt> agrega un vértice sin vecinos y
+ *  <tt>D x</tt> elimina el vértice con sus aristas. </p>
+ */
+public class Guion {
+
+    /** La letra de la operación que agrega un elemento. */
+    public static final int INSERTA = 'I';
+
+    /** La letra de la operación que elimina un elemento. */
+    public static final int ELIMINA = 'D';
+
+    /** La letra de la operación que disminuye el valor de un elemento. */
+    public static final int DECREMENTA = 'K';
+
+    /** La letra de la operación que conecta dos vértices. */
+    public static final int CONECTA = 'C';
+
+    /** La letra de la operación que desconecta dos vértices. */
+    public static final int DESCONECTA = 'X';
+
+    /* Las letras de las operaciones. */
+    private ArregloEnteros operaciones;
+
+    /* Los primeros argumentos de las operaciones. */
+    private ArregloEnteros primeros;
+
+    /* Los segundos argumentos de las operaciones, o 0 si no tienen. */
+    private ArregloEnteros segundos;
+
+    /**
+     * Construye un guion sin operaciones.
+     */
+    public Guion() {
+        operaciones = new ArregloEnteros();
+        primeros = new ArregloEnteros();
+        segundos = new ArregloEnteros();
+    }
+
+    /**
+     * Construye el guion con las operaciones que leyó un {@link Tokenizador}
+     * y sus argumentos, y deja en el arreglo de enteros sólo los elementos
+     * iniciales de la estructura: los que están antes de la primera
+     * operación.
+     * @param estructura la estructura a la que se aplica el guion.
+     * @param enteros todos los enteros de la entrada.
+     * @param marcas por cada operación, su letra y el número de enteros
+     *        leídos antes de ella.
+     * @throws IllegalArgumentException si una operación no se permite en la
+     *         estructura o no tiene el número de argumentos que le
+     *         corresponde.
+     */
+    public Guion(Estructura estructura, ArregloEnteros enteros,
+                 ArregloEnteros marcas) {
+        this();
+        int n = marcas.getElementos() / 2;
+        for (int i = 0; i < n; i++) {
+            int operacion = marcas.get(2 * i);
+            int inicio = marcas.get(2 * i + 1);
+            int fin = (i + 1 < n) ? marcas.get(2 * i + 3)
+                                  : enteros.getElementos();
+            if (!sePermite(estructura, operacion))
+                throw new IllegalArgumentException(
+                    String.format("La operación %c no se permite en la estructura %s",
+                                  operacion, estructura));
+            int argumentos = getArgumentos(operacion);
+            if (fin - inicio != argumentos)
+                throw new IllegalArgumentException(
+                    String.format("La operación %c recibe %d %s", operacion,
+                                  argumentos,
+                                  (argumentos == 1) ? "entero" : "enteros"));
+            operaciones.agrega(operacion);
+            primeros.agrega(enteros.get(inicio));
+            segundos.agrega((argumentos == 2) ? enteros.get(inicio + 1) : 0);
+        }
+        if (n > 0)
+            enteros.trunca(marcas.get(1));
+    }
+
+    /**
+     * Regresa el número de pasos del guion.
+     * @return el número de operaciones del guion.
+     */
+    public int getPasos() {
+        return operaciones.getElementos();
+    }
+
+    /**
+     * Regresa la letra de la operación del paso recibido.
+     * @param paso el índice del paso, empezando en 0.
+     * @return la letra de la operación.
+     */
+    public int getOperacion(int paso) {
+        return operaciones.get(paso);
+    }
+
+    /**
+     * Regresa el primer argumento de la operación del paso recibido.
+     * @param paso el índice del paso, empezando en 0.
+     * @return el primer argumento de la operación.
+     */
+    public int getPrimero(int paso) {
+        return primeros.get(paso);
+    }
+
+    /**
+     * Regresa el segundo argumento de la operación del paso recibido.
+     * @param paso el índice del paso, empezando en 0.
+     * @return el segundo argumento de la operación, o 0 si sólo recibe uno.
+     */
+    public int getSegundo(int paso) {
+        return segundos.get(paso);
+    }
+
+    /* Regresa el número de argumentos de la operación. */
+    private static int getArgumentos(int operacion) {
+        return (operacion == INSERTA || operacion == ELIMINA) ? 1 : 2;
+    }
+
+    /* Nos dice si la operación se permite en la estructura. */
+    private static boolean sePermite(Estructura estructura, int operacion) {
+        switch (operacion) {
+            case INSERTA:
+            case ELIMINA:
+                return true;
+            case DECREMENTA:
+                return estructura == Estructura.MH;
+            default:
+                return estructura == Estructura.G;
+        }
+    }
+}
@@ -1,144 +1,585 @@
 package mx.unam.ciencias.edd.dsv;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.zip.Deflater;
 import mx.unam.ciencias.edd.Lista;
 
 /**
- * <p>Clase abstracta para leer los argumentos que recibe el programa.</p>
+ * <p>Clase para leer los argumentos que recibe el programa.</p>
  *
- * <p>La clase es capaz de regresar una lista de los elementos leidos y la
- * enumeracion de la estructura a graficar correspondiente.</p>
+ * <p>Cada lector guarda las opciones de una ejecución y los documentos que
+ * leyó de sus entradas, por lo que pueden usarse varios lectores a la vez.
+ * Los errores se reportan con {@link ExcepcionDSV}.</p>
  */
-public abstract class LectorArgumentos {
+public class LectorArgumentos {
 
-    /** La estructura a graficar leida */
-    private static Estructura estructura;
+    /** Los archivos de entrada; vacía para la entrada estándar. */
+    private Lista<String> archivosEntrada = new Lista<>();
 
-    /** Lista elementos de la estructura de datos a graficar. */
-    private static Lista<Integer> listaEnteros;
+    /** Los archivos donde se escribe la imagen; vacía para la salida estándar. */
+    private Lista<String> archivosSalida = new Lista<>();
 
-    /** La entrada para leer el archivo. */
-    private static BufferedReader in;
+    /** Si todas las imágenes SVG se comprimen con gzip (formato SVGZ). */
+    private boolean comprime;
+
+    /** El nivel de compresión de la imagen, entre 0 y 9. */
+    private int nivelCompresion = Deflater.DEFAULT_COMPRESSION;
+
+    /** Si la imagen se escribe en el dialecto SVG compacto. */
+    private boolean compacta;
+
+    /** El número de aristas por trayectoria, o 0 si no se agrupan. */
+    private int aristasPorBloque;
+
+    /** El formato de la imagen, o <tt>null</tt> si se deduce de cada archivo. */
+    private Formato formato;
+
+    /** El directorio de la pirámide de mosaicos, o <tt>null</tt> si no se genera. */
+    private String directorioMosaico;
+
+    /** El número máximo de vértices a dibujar, o 0 si no hay límite. */
+    private int presupuesto;
+
+    /** El archivo DSVB donde se convierte la entrada, o <tt>null</tt>. */
+    private String archivoBinario;
+
+    /** El archivo DSVE donde se graba la bitácora de las operaciones, o <tt>null</tt>. */
+    private String archivoBitacora;
+
+    /** El paso que se grafica de la bitácora de entrada, o -1 si la entrada no es una bitácora. */
+    private int pasoBitacora = -1;
+
+    /** Los documentos leídos de todas las entradas, en orden. */
+    private Lista<Documento> documentos;
+
+    /** El número de operaciones entre cada imagen. */
+    private int pasosPorImagen = 1;
+
+    /** La dirección donde escucha el servidor, o <tt>null</tt> si no hay servidor. */
+    private String direccionServidor;
+
+    /** El directorio o patrón de los archivos a graficar por lotes, o <tt>null</tt>. */
+    private String lote;
+
+    /** Si el archivo de entrada se vuelve a graficar cada vez que cambia. */
+    private boolean vigila;
+
+    /** El directorio de la caché de imágenes, o <tt>null</tt> si no se usa. */
+    private String directorioCache;
+
+    /** El tamaño máximo de la caché de imágenes en bytes. */
+    private long tamañoCache = 256L << 20;
+
+    /** El tamaño máximo de la caché de distribuciones en bytes, o 0 si no se usa. */
+    private long tamañoComposiciones;
+
+    /** Si se miden y reportan las estadísticas de cada fase. */
+    private boolean estadisticas;
+
+    /** Los milisegundos de cada imagen de una animación, o 0 si no se anima. */
+    private int milisegundosAnimacion;
+
+    /** El número de hilos con que se grafica un lote. */
+    private int hilos = Runtime.getRuntime().availableProcessors();
 
     /**
-    * Lee los argumentos que recibe el programa al ejecutarse y los guarda.
+    * Lee las opciones de los argumentos que recibe el programa al ejecutarse
+    * y las guarda; los demás argumentos son los archivos de entrada.
     * @param args un arreglo de argumentos.
-    * @return Una coleccion con los enteros leidos del archivo.
+    * @throws ExcepcionDSV si una opción no es válida.
     */
-    public static Lista<Integer> lee(String[] args) {
-        listaEnteros = new Lista<>();
-        if (args.length == 0)
-            try {
-                if (System.in.available() != 0)
-                    in = new BufferedReader(new InputStreamReader(System.in));
-                else
-                    salidaError("No se especificó la entrada");
-            } catch (IOException ioe) {
-                salidaError("No pudo leerse el archivo.");
-            }
-        else
-            try {
-                in = new BufferedReader(
-                        new InputStreamReader(
-                            new FileInputStream(args[0])));
-            } catch (FileNotFoundException fnfe) {
-                salidaError("No se encontró el archivo.");
-            }
-        leerArchivo(in);
-        return listaEnteros;
+    public LectorArgumentos(String[] args) {
+        for (int i = 0; i < args.length; i++)
+            if (args[i].equals("-o")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el archivo de salida");
+                archivosSalida.agregaFinal(args[i]);
+            } else if (args[i].equals("-z")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el nivel de compresión");
+                nivelCompresion = leeOpcionEntera(args[i], 0, 9,
+                    "El nivel de compresión debe estar entre 0 y 9");
+                comprime = true;
+            } else if (args[i].equals("-c")) {
+                compacta = true;
+            } else if (args[i].equals("-a")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el número de aristas por trayectoria");
+                aristasPorBloque = leeOpcionEntera(args[i], 1, Integer.MAX_VALUE,
+                    "El número de aristas por trayectoria debe ser positivo");
+            } else if (args[i].equals("-f")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el formato de la imagen");
+                formato = determinaFormato(args[i]);
+            } else if (args[i].equals("-m")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el directorio de los mosaicos");
+                directorioMosaico = args[i];
+            } else if (args[i].equals("-l")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el número máximo de vértices");
+                presupuesto = leeOpcionEntera(args[i], 1, Integer.MAX_VALUE,
+                    "El número máximo de vértices debe ser positivo");
+            } else if (args[i].equals("-b")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el archivo binario");
+                archivoBinario = args[i];
+            } else if (args[i].equals("-k")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el número de operaciones por imagen");
+                pasosPorImagen = leeOpcionEntera(args[i], 1, Integer.MAX_VALUE,
+                    "El número de operaciones por imagen debe ser positivo");
+            } else if (args[i].equals("-d")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó la dirección del servidor");
+                direccionServidor = args[i];
+            } else if (args[i].equals("-x")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el directorio de la caché");
+                directorioCache = args[i];
+            } else if (args[i].equals("-X")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el tamaño de la caché");
+                tamañoCache = (long)leeOpcionEntera(args[i], 1, Integer.MAX_VALUE,
+                    "El tamaño de la caché debe ser positivo") << 20;
+            } else if (args[i].equals("-e")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el tamaño de la caché de distribuciones");
+                tamañoComposiciones = (long)leeOpcionEntera(args[i], 1, Integer.MAX_VALUE,
+                    "El tamaño de la caché de distribuciones debe ser positivo") << 20;
+            } else if (args[i].equals("--stats")) {
+                estadisticas = true;
+            } else if (args[i].equals("-w")) {
+                vigila = true;
+            } else if (args[i].equals("-r")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el lote");
+                lote = args[i];
+            } else if (args[i].equals("-s")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó la duración de cada imagen");
+                milisegundosAnimacion = leeOpcionEntera(args[i], 1, Integer.MAX_VALUE,
+                    "La duración de cada imagen debe ser positiva");
+            } else if (args[i].equals("-g")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el archivo de la bitácora");
+                archivoBitacora = args[i];
+            } else if (args[i].equals("-p")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el paso de la bitácora");
+                pasoBitacora = leeOpcionEntera(args[i], 0, Integer.MAX_VALUE,
+                    "El paso de la bitácora no puede ser negativo");
+            } else if (args[i].equals("-t")) {
+                if (++i == args.length)
+                    throw new ExcepcionDSV("No se especificó el número de hilos");
+                hilos = leeOpcionEntera(args[i], 1, Short.MAX_VALUE,
+                    "El número de hilos debe ser positivo");
+            } else
+                archivosEntrada.agregaFinal(args[i]);
+        if (lote != null && (!archivosSalida.esVacia() || directorioMosaico != null
+                             || archivoBinario != null || direccionServidor != null
+                             || !archivosEntrada.esVacia()))
+            throw new ExcepcionDSV("Un lote escribe cada imagen junto a su entrada");
+        if (vigila && archivosEntrada.getLongitud() != 1)
+            throw new ExcepcionDSV("Debe especificarse un solo archivo a vigilar");
+        if (vigila && archivosSalida.esVacia() && directorioMosaico == null)
+            throw new ExcepcionDSV("Vigilar un archivo requiere un archivo de salida");
+        if (pasoBitacora >= 0 && (archivosEntrada.getLongitud() != 1 || vigila
+                                  || direccionServidor != null))
+            throw new ExcepcionDSV("Un paso se grafica de un solo archivo de bitácora");
+        if (milisegundosAnimacion > 0 && !escribeAnimacion())
+            throw new ExcepcionDSV("Una animación sólo puede escribirse en archivos SVG");
+    }
+
+    /**
+     * Nos dice si todas las salidas pueden escribir una animación: no hay
+     * mosaicos, ni servidor, ni se vigila la entrada, y todas las salidas
+     * son SVG.
+     * @return <tt>true</tt> si las salidas pueden escribir una animación,
+     *         <tt>false</tt> en otro caso.
+     */
+    private boolean escribeAnimacion() {
+        if (directorioMosaico != null || vigila || direccionServidor != null)
+            return false;
+        if (archivosSalida.esVacia())
+            return getFormato(null) == Formato.SVG;
+        for (String archivo : archivosSalida)
+            if (getFormato(archivo) != Formato.SVG)
+                return false;
+        return true;
+    }
+
+    /**
+     * Construye un lector con las opciones de imagen de otro, para graficar
+     * un solo archivo de entrada en un solo archivo de salida.
+     * @param otro el lector con las opciones.
+     * @param entrada el archivo de entrada.
+     * @param salida el archivo de salida.
+     */
+    private LectorArgumentos(LectorArgumentos otro, String entrada,
+                             String salida) {
+        archivosEntrada.agregaFinal(entrada);
+        archivosSalida.agregaFinal(salida);
+        comprime = otro.comprime;
+        nivelCompresion = otro.nivelCompresion;
+        compacta = otro.compacta;
+        aristasPorBloque = otro.aristasPorBloque;
+        formato = otro.formato;
+        presupuesto = otro.presupuesto;
+        pasosPorImagen = otro.pasosPorImagen;
+        milisegundosAnimacion = otro.milisegundosAnimacion;
+        directorioCache = otro.directorioCache;
+        tamañoCache = otro.tamañoCache;
     }
 
     /**
-     * Lee un archivo linea por linea, guardando el nombre de la estructura a
-     * graficar así como sus elementos y/o relaciones entre los mismos.
-     * @param in la entrada de donde leer el archivo.
+     * Regresa un lector con las mismas opciones de imagen, que lee sólo el
+     * archivo de entrada recibido y grafica en el archivo de salida
+     * recibido.
+     * @param entrada el archivo de entrada.
+     * @param salida el archivo de salida.
+     * @return el lector para el archivo.
      */
-    private static void leerArchivo(BufferedReader in) {
-        String linea;
-        Lista<String> palabras = new Lista<>();
+    LectorArgumentos paraArchivo(String entrada, String salida) {
+        return new LectorArgumentos(this, entrada, salida);
+    }
+
+    /**
+     * Lee los documentos de todas las entradas.
+     * @return los documentos de las entradas, en orden.
+     * @throws ExcepcionDSV si una entrada no puede leerse o no es válida.
+     */
+    public Lista<Documento> lee() {
+        return lee(null);
+    }
+
+    /**
+     * Lee los documentos de todas las entradas, registrando la lectura de
+     * cada una en las estadísticas recibidas.
+     * @param estadisticas las estadísticas, o <tt>null</tt> si no se miden.
+     * @return los documentos de las entradas, en orden.
+     * @throws ExcepcionDSV si una entrada no puede leerse o no es válida.
+     */
+    public Lista<Documento> lee(Estadisticas estadisticas) {
+        documentos = new Lista<>();
+        if (archivosEntrada.esVacia())
+            leeEntrada(null, estadisticas);
+        for (String archivo : archivosEntrada)
+            leeEntrada(archivo, estadisticas);
+        if (archivoBinario != null && documentos.getLongitud() > 1)
+            throw new ExcepcionDSV("El formato binario admite una sola estructura");
+        if (archivoBinario != null
+            && documentos.getPrimero().getGuion().getPasos() > 0)
+            throw new ExcepcionDSV("El formato binario no admite operaciones");
+        if (archivoBitacora != null && documentos.getLongitud() > 1)
+            throw new ExcepcionDSV("La bitácora admite una sola estructura");
+        return documentos;
+    }
+
+    /**
+     * Lee una entrada y agrega sus documentos.
+     * @param archivoEntrada el archivo de entrada, o <tt>null</tt> para la
+     *        entrada estándar.
+     * @param estadisticas las estadísticas, o <tt>null</tt> si no se miden.
+     */
+    private void leeEntrada(String archivoEntrada, Estadisticas estadisticas) {
+        Lista<Documento> leidos;
+        Estadisticas.Medicion medicion = new Estadisticas.Medicion();
         try {
-            while ((linea = in.readLine()) != null) {
-                int index = linea.indexOf('#');
-                if (index != -1)
-                    linea = linea.substring(0, index);
-                linea = linea.trim();
-                if (linea.length() > 0)
-                    for (String cadena : linea.split("\\s+"))
-                        palabras.agrega(cadena);
+            if (archivoEntrada == null) {
+                if (System.in.available() == 0)
+                    throw new ExcepcionDSV("No se especificó la entrada");
+                leidos = LectorDocumentos.lee(System.in);
+            } else {
+                leidos = LectorDocumentos.lee(Paths.get(archivoEntrada));
             }
+        } catch (NoSuchFileException nsfe) {
+            throw new ExcepcionDSV("No se encontró el archivo.", nsfe);
         } catch (IOException ioe) {
-            salidaError("Ocurrió un error al leer el archivo");
+            throw new ExcepcionDSV("Ocurrió un error al leer el archivo", ioe);
         }
-        if (palabras.getElementos() == 0)
-            salidaError("No se especificó la estructura");
-        estructura = determinaEstructura(palabras.eliminaPrimero());
-        for (String palabra : palabras)
-            listaEnteros.agrega(verificaDigitoEntero(palabra));
+        if (estadisticas != null)
+            estadisticas.lectura(archivoEntrada, medicion);
+        for (Documento documento : leidos)
+            documentos.agregaFinal(documento);
     }
 
     /**
-     * Determina si la cadena recibida es un numero entero y regresa su
-     * representacion como numero entero.
-     * @param cadena la cadena a evaluar.
+     * Regresa el valor entero de una opción, verificando que esté en el rango
+     * dado.
+     * @param cadena la cadena con el valor de la opción.
+     * @param minimo el valor mínimo permitido.
+     * @param maximo el valor máximo permitido.
+     * @param mensaje el mensaje de error si el valor no es válido.
+     * @return el valor entero de la opción.
      */
-    private static int verificaDigitoEntero(String cadena) {
-        int num = 0;
+    private int leeOpcionEntera(String cadena, int minimo, int maximo,
+                                       String mensaje) {
+        int valor;
         try {
-            num = Integer.parseInt(cadena);
-        } catch (Exception e) {
-            salidaError("Solo se permiten números enteros positivos como elementos");
+            valor = Integer.parseInt(cadena);
+        } catch (NumberFormatException nfe) {
+            throw new ExcepcionDSV(mensaje, nfe);
         }
-        return num;
-    }
-
-    /**
-     * Determina la enumeracion a la que corresponde la estructura recibida.
-     * @param estructura la cadena a evaluar.
-     * @return la enumeracion correspondiente a la estructura.
-     */
-    private static Estructura determinaEstructura(String estructura) {
-        switch (estructura) {
-            case "L":
-                return Estructura.L;
-            case "Q":
-                return Estructura.Q;
-            case "S":
-                return Estructura.S;
-            case "CBT":
-                return Estructura.CBT;
-            case "BST":
-                return Estructura.BST;
-            case "RBT":
-                return Estructura.RBT;
-            case "AVL":
-                return Estructura.AVL;
-            case "G":
-                return Estructura.G;
-            case "MH":
-                return Estructura.MH;
+        if (valor < minimo || valor > maximo)
+            throw new ExcepcionDSV(mensaje);
+        return valor;
+    }
+
+    /**
+     * Determina la enumeracion a la que corresponde el formato recibido.
+     * @param formato la cadena a evaluar.
+     * @return la enumeracion correspondiente al formato.
+     */
+    private Formato determinaFormato(String formato) {
+        switch (formato) {
+            case "svg":
+                return Formato.SVG;
+            case "png":
+                return Formato.PNG;
+            case "dsvl":
+                return Formato.DSVL;
             default:
-                salidaError("Estructura desconocida");
+                throw new ExcepcionDSV("Formato desconocido");
         }
-        return null;
     }
 
+    /**
+     * Regresa el primer archivo donde se escribe la imagen.
+     * @return el primer archivo donde se escribe la imagen, o <tt>null</tt>
+     *         si se escribe en la salida estándar.
+     */
+    public String getArchivoSalida() {
+        return archivosSalida.esVacia() ? null : archivosSalida.getPrimero();
+    }
+
+    /**
+     * Regresa los archivos donde se escribe la imagen.
+     * @return la lista de archivos donde se escribe la imagen; es vacía si
+     *         se escribe en la salida estándar.
+     */
+    public Lista<String> getArchivosSalida() {
+        return archivosSalida;
+    }
+
+    /**
+     * Regresa el formato de la imagen del primer archivo de salida.
+     * @return el formato de la imagen.
+     */
+    public Formato getFormato() {
+        return getFormato(getArchivoSalida());
+    }
+
+    /**
+     * Regresa el formato de la imagen que se escribe en el archivo recibido:
+     * el formato elegido con <tt>-f</tt> o, si no se eligió, el que indica
+     * la extensión del archivo.
+     * @param archivo el archivo de salida, o <tt>null</tt> para la salida
+     *        estándar.
+     * @return el formato de la imagen.
+     */
+    public Formato getFormato(String archivo) {
+        if (formato != null)
+            return formato;
+        if (archivo != null && archivo.endsWith(".png"))
+            return Formato.PNG;
+        if (archivo != null && archivo.endsWith(".dsvl"))
+            return Formato.DSVL;
+        return Formato.SVG;
+    }
+
+    /**
+     * Regresa el directorio donde se escribe la pirámide de mosaicos.
+     * @return el directorio de la pirámide, o <tt>null</tt> si la imagen no
+     *         se escribe como mosaicos.
+     */
+    public String getDirectorioMosaico() {
+        return directorioMosaico;
+    }
+
+    /**
+     * Regresa el archivo donde se convierte la entrada al formato binario.
+     * @return el archivo DSVB, o <tt>null</tt> si la entrada se grafica.
+     */
+    public String getArchivoBinario() {
+        return archivoBinario;
+    }
+
+    /**
+     * Regresa el archivo DSVE donde se graba la bitácora de las operaciones.
+     * @return el archivo de la bitácora, o <tt>null</tt> si no se graba.
+     */
+    public String getArchivoBitacora() {
+        return archivoBitacora;
+    }
+
+    /**
+     * Regresa el paso que se grafica de la bitácora de entrada.
+     * @return el paso, o -1 si la entrada no es una bitácora.
+     */
+    public int getPasoBitacora() {
+        return pasoBitacora;
+    }
+
+    /**
+     * Regresa los documentos leídos de todas las entradas.
+     * @return la lista de documentos, en el orden de las entradas y de sus
+     *         secciones.
+     */
+    public Lista<Documento> getDocumentos() {
+        return documentos;
+    }
+
+    /**
+     * Regresa la dirección donde escucha el servidor.
+     * @return un número de puerto local o la ruta de un socket de dominio
+     *         Unix, o <tt>null</tt> si no se inicia el servidor.
+     */
+    public String getDireccionServidor() {
+        return direccionServidor;
+    }
+
+    /**
+     * Regresa el primer archivo de entrada.
+     * @return el primer archivo de entrada, o <tt>null</tt> si se lee la
+     *         entrada estándar.
+     */
+    public String getArchivoEntrada() {
+        return archivosEntrada.esVacia() ? null : archivosEntrada.getPrimero();
+    }
+
+    /**
+     * Nos dice si el archivo de entrada se vuelve a graficar cada vez que
+     * cambia.
+     * @return <tt>true</tt> si se vigila el archivo de entrada,
+     *         <tt>false</tt> en otro caso.
+     */
+    public boolean vigilaEntrada() {
+        return vigila;
+    }
+
+    /**
+     * Regresa el directorio o patrón de los archivos a graficar por lotes.
+     * @return el lote, o <tt>null</tt> si no se grafica por lotes.
+     */
+    public String getLote() {
+        return lote;
+    }
+
+    /**
+     * Regresa el directorio de la caché de imágenes.
+     * @return el directorio de la caché, o <tt>null</tt> si no se usa.
+     */
+    public String getDirectorioCache() {
+        return directorioCache;
+    }
 
-    /** Regresa la estructura a graficar leida.  */
-    public static Estructura getEstructura() {
-        return estructura;
+    /**
+     * Regresa el tamaño máximo de la caché de imágenes.
+     * @return el tamaño máximo de la caché en bytes.
+     */
+    public long getTamañoCache() {
+        return tamañoCache;
+    }
+
+    /**
+     * Regresa el tamaño máximo de la caché de distribuciones.
+     * @return el tamaño máximo en bytes estimados, o 0 si no se usa la
+     *         caché.
+     */
+    public long getTamañoComposiciones() {
+        return tamañoComposiciones;
     }
 
     /**
-     * Imprime el mensaje recibido en el flujo de error estandar y termina el programa.
-     * @param mensaje el mensaje a imprimir.
+     * Nos dice si se miden y reportan las estadísticas de cada fase.
+     * @return <tt>true</tt> si se miden las estadísticas, <tt>false</tt> en
+     *         otro caso.
      */
-    private static void salidaError(String mensaje) {
-        System.err.println(mensaje);
-        System.exit(1);
+    public boolean mideEstadisticas() {
+        return estadisticas;
     }
 
+    /**
+     * Regresa el número de hilos con que se grafica un lote.
+     * @return el número de hilos.
+     */
+    public int getHilos() {
+        return hilos;
+    }
+
+    /**
+     * Regresa el número de operaciones entre cada imagen.
+     * @return el número de operaciones entre cada imagen.
+     */
+    public int getPasosPorImagen() {
+        return pasosPorImagen;
+    }
+
+    /**
+     * Regresa los milisegundos que dura cada imagen de una animación.
+     * @return los milisegundos de cada imagen, o 0 si las imágenes no se
+     *         escriben como una animación.
+     */
+    public int getMilisegundosAnimacion() {
+        return milisegundosAnimacion;
+    }
+
+    /**
+     * Regresa el número máximo de vértices a dibujar.
+     * @return el número máximo de vértices a dibujar, o 0 si no hay límite.
+     */
+    public int getPresupuesto() {
+        return presupuesto;
+    }
+
+    /**
+     * Nos dice si la imagen del primer archivo de salida debe comprimirse
+     * con gzip.
+     * @return <tt>true</tt> si la imagen debe comprimirse,
+     *         <tt>false</tt> en otro caso.
+     */
+    public boolean comprimeSalida() {
+        return comprimeSalida(getArchivoSalida());
+    }
+
+    /**
+     * Nos dice si la imagen que se escribe en el archivo recibido debe
+     * comprimirse con gzip.
+     * @param archivo el archivo de salida, o <tt>null</tt> para la salida
+     *        estándar.
+     * @return <tt>true</tt> si la imagen debe comprimirse,
+     *         <tt>false</tt> en otro caso.
+     */
+    public boolean comprimeSalida(String archivo) {
+        return comprime || (archivo != null && archivo.endsWith(".svgz"));
+    }
+
+    /**
+     * Nos dice si la imagen se escribe en el dialecto SVG compacto.
+     * @return <tt>true</tt> si la imagen se escribe en el dialecto compacto,
+     *         <tt>false</tt> en otro caso.
+     */
+    public boolean esCompacta() {
+        return compacta;
+    }
+
+    /**
+     * Regresa el número de aristas que se agrupan en cada trayectoria.
+     * @return el número de aristas por trayectoria, o 0 si no se agrupan.
+     */
+    public int getAristasPorBloque() {
+        return aristasPorBloque;
+    }
+
+    /**
+     * Regresa el nivel de compresión de la imagen.
+     * @return el nivel de compresión de la imagen, entre 0 y 9, o
+     *         {@link Deflater#DEFAULT_COMPRESSION} si no se especificó.
+     */
+    public int getNivelCompresion() {
+        return nivelCompresion;
+    }
 }
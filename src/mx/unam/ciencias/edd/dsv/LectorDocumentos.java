@@ -0,0 +1,189 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import mx.unam.ciencias.edd.ArregloEnteros;
+import mx.unam.ciencias.edd.Lista;
+
+/**
+ * <p> Clase abstracta para leer los documentos de una entrada. </p>
+ *
+ * <p> Los métodos no guardan estado entre llamadas, por lo que pueden
+ *  usarse desde varios hilos a la vez. Una entrada puede ser de texto, con
+ *  una o varias secciones, o un archivo binario {@link DSVB}. </p>
+ */
+public abstract class LectorDocumentos {
+
+    /**
+     * Lee los documentos del flujo recibido, de texto o DSVB.
+     * @param flujo el flujo de la entrada; no se cierra.
+     * @return los documentos de la entrada, en orden.
+     * @throws IOException si ocurre un error al leer.
+     * @throws ExcepcionDSV si la entrada no es válida.
+     */
+    public static Lista<Documento> lee(InputStream flujo) throws IOException {
+        Eventos.Lectura evento = Eventos.lectura();
+        ArregloEnteros enteros = new ArregloEnteros();
+        Lista<Documento> documentos = lee(flujo, enteros);
+        if (evento != null)
+            evento.termina(null, enteros, documentos);
+        return documentos;
+    }
+
+    /**
+     * Lee los documentos del flujo recibido, de texto o DSVB.
+     * @param flujo el flujo de la entrada; no se cierra.
+     * @param enteros el arreglo, vacío, donde se leen los enteros.
+     * @return los documentos de la entrada, en orden.
+     * @throws IOException si ocurre un error al leer.
+     * @throws ExcepcionDSV si la entrada no es válida.
+     */
+    private static Lista<Documento> lee(InputStream flujo,
+                                        ArregloEnteros enteros)
+        throws IOException {
+        BufferedInputStream entrada = new BufferedInputStream(flujo);
+        byte[] inicio = new byte[4];
+        entrada.mark(inicio.length);
+        int n = entrada.readNBytes(inicio, 0, inicio.length);
+        entrada.reset();
+        Tokenizador tokenizador = new Tokenizador(enteros);
+        try {
+            if (DSVB.esDSVB(inicio, n))
+                return documentoBinario(DSVB.lee(entrada, enteros), enteros);
+            tokenizador.lee(Channels.newChannel(entrada));
+        } catch (IllegalArgumentException iae) {
+            throw new ExcepcionDSV(iae.getMessage(), iae);
+        }
+        return documentos(tokenizador, enteros);
+    }
+
+    /**
+     * Lee los documentos del archivo recibido, de texto o DSVB. Los archivos
+     * de texto grandes se procesan en paralelo.
+     * @param archivo la ruta del archivo.
+     * @return los documentos del archivo, en orden.
+     * @throws IOException si ocurre un error al leer el archivo.
+     * @throws ExcepcionDSV si el archivo no es válido.
+     */
+    public static Lista<Documento> lee(Path archivo) throws IOException {
+        Eventos.Lectura evento = Eventos.lectura();
+        ArregloEnteros enteros = new ArregloEnteros();
+        Lista<Documento> documentos = lee(archivo, enteros);
+        if (evento != null)
+            evento.termina(archivo.toString(), enteros, documentos);
+        return documentos;
+    }
+
+    /**
+     * Lee los documentos del archivo recibido, de texto o DSVB.
+     * @param archivo la ruta del archivo.
+     * @param enteros el arreglo, vacío, donde se leen los enteros.
+     * @return los documentos del archivo, en orden.
+     * @throws IOException si ocurre un error al leer el archivo.
+     * @throws ExcepcionDSV si el archivo no es válido.
+     */
+    private static Lista<Documento> lee(Path archivo, ArregloEnteros enteros)
+        throws IOException {
+        Tokenizador tokenizador = new Tokenizador(enteros);
+        try (FileChannel canal = FileChannel.open(archivo)) {
+            if (DSVB.esDSVB(canal))
+                return documentoBinario(DSVB.lee(canal, enteros), enteros);
+            tokenizador.leeParalelo(canal);
+        } catch (IllegalArgumentException iae) {
+            throw new ExcepcionDSV(iae.getMessage(), iae);
+        }
+        return documentos(tokenizador, enteros);
+    }
+
+    /**
+     * Regresa el documento de una entrada binaria, que no tiene operaciones.
+     * @param estructura la estructura leída.
+     * @param enteros los enteros leídos.
+     * @return una lista con el documento.
+     */
+    private static Lista<Documento> documentoBinario(Estructura estructura,
+                                                     ArregloEnteros enteros) {
+        Lista<Documento> documentos = new Lista<>();
+        documentos.agregaFinal(new Documento(estructura, enteros, new Guion()));
+        return documentos;
+    }
+
+    /**
+     * Regresa un documento por cada sección que leyó el tokenizador, con sus
+     * elementos y sus operaciones. Si sólo hay una sección, su documento
+     * usa el mismo arreglo de enteros.
+     * @param tokenizador el tokenizador que leyó la entrada.
+     * @param enteros los enteros de todas las secciones.
+     * @return los documentos de la entrada.
+     */
+    private static Lista<Documento> documentos(Tokenizador tokenizador,
+                                               ArregloEnteros enteros) {
+        if (tokenizador.getEstructura() == null)
+            throw new ExcepcionDSV("No se especificó la estructura");
+        Lista<Documento> documentos = new Lista<>();
+        List<String> secciones = tokenizador.getSecciones();
+        ArregloEnteros inicios = tokenizador.getInicios();
+        ArregloEnteros operaciones = tokenizador.getOperaciones();
+        int n = secciones.size();
+        for (int i = 0; i <= n; i++) {
+            Estructura estructura = determinaEstructura(
+                (i == 0) ? tokenizador.getEstructura() : secciones.get(i - 1));
+            int inicio = (i == 0) ? 0 : inicios.get(2 * i - 2);
+            int fin = (i == n) ? enteros.getElementos() : inicios.get(2 * i);
+            int primera = (i == 0) ? 0 : inicios.get(2 * i - 1);
+            int ultima = (i == n) ? operaciones.getElementos()
+                                  : inicios.get(2 * i + 1);
+            ArregloEnteros elementos = (n == 0) ? enteros
+                                                : enteros.copia(inicio, fin);
+            ArregloEnteros marcas = new ArregloEnteros(ultima - primera);
+            for (int j = primera; j < ultima; j += 2) {
+                marcas.agrega(operaciones.get(j));
+                marcas.agrega(operaciones.get(j + 1) - inicio);
+            }
+            try {
+                Guion guion = new Guion(estructura, elementos, marcas);
+                documentos.agregaFinal(new Documento(estructura, elementos,
+                                                     guion));
+            } catch (IllegalArgumentException iae) {
+                throw new ExcepcionDSV(iae.getMessage(), iae);
+            }
+        }
+        return documentos;
+    }
+
+    /**
+     * Determina la enumeracion a la que corresponde la estructura recibida.
+     * @param estructura la cadena a evaluar.
+     * @return la enumeracion correspondiente a la estructura.
+     * @throws ExcepcionDSV si la estructura no existe.
+     */
+    private static Estructura determinaEstructura(String estructura) {
+        switch (estructura) {
+            case "L":
+                return Estructura.L;
+            case "Q":
+                return Estructura.Q;
+            case "S":
+                return Estructura.S;
+            case "CBT":
+                return Estructura.CBT;
+            case "BST":
+                return Estructura.BST;
+            case "RBT":
+                return Estructura.RBT;
+            case "AVL":
+                return Estructura.AVL;
+            case "G":
+                return Estructura.G;
+            case "MH":
+                return Estructura.MH;
+            default:
+                throw new ExcepcionDSV("Estructura desconocida");
+        }
+    }
+}
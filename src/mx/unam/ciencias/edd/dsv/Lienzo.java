@@ -0,0 +1,103 @@
+package mx.unam.ciencias.edd.dsv;
+
+/**
+ * <p> Interfaz para lienzos donde los graficadores dibujan. </p>
+ *
+ * <p> Un lienzo recibe las primitivas de una imagen (círculos, rectángulos,
+ *  texto, líneas y curvas) en coordenadas de pixeles y las traduce a un
+ *  formato concreto: un documento SVG, una imagen PNG, o un modelo en
+ *  memoria que puede reproducirse después en otros lienzos. </p>
+ */
+public interface Lienzo {
+
+    /**
+    * Inicia la imagen con las dimensiones dadas.
+    * @param ancho el ancho de la imagen.
+    * @param largo el largo de la imagen.
+    * @param defineFlechas si es <tt>true</tt>, la imagen usa flechas en
+    *        los extremos de líneas y curvas.
+    */
+    public void escribeCabecera(double ancho, double largo,
+                                boolean defineFlechas);
+
+    /**
+    * Dibuja un círculo.
+    * @param centroX coordenada en x del centro del círculo.
+    * @param centroY coordenada en y del centro del círculo.
+    * @param radio el radio del círculo.
+    * @param colorFondo una cadena con el nombre del color de fondo.
+    * @param colorBorde una cadena con el nombre del color del borde.
+    */
+    public void dibujaCirculo(double centroX, double centroY, double radio,
+                              String colorFondo, String colorBorde);
+
+    /**
+    * Dibuja un rectángulo.
+    * @param x coordenada en x de la esquina superior izquierda del rectángulo.
+    * @param y coordenada en y de la esquina superior izquierda del rectángulo.
+    * @param ancho el ancho del rectángulo.
+    * @param largo el largo del rectángulo.
+    * @param colorFondo una cadena con el nombre del color de fondo.
+    * @param colorBorde una cadena con el nombre del color del borde.
+    */
+    public void dibujaRectangulo(double x, double y, double ancho,
+                                 double largo, String colorFondo,
+                                 String colorBorde);
+
+    /**
+    * Dibuja una etiqueta de texto centrada horizontalmente.
+    * @param x coordenada en x del centro de la etiqueta de texto.
+    * @param y coordenada en y de la línea base de la etiqueta de texto.
+    * @param cadena cadena de texto a dibujar.
+    * @param colorTexto una cadena con el nombre del color del texto.
+    * @param size un entero que determina el tamaño en pixeles del texto.
+    */
+    public void dibujaTexto(double x, double y, String cadena,
+                            String colorTexto, int size);
+
+    /**
+    * Dibuja una línea negra.
+    * @param xInicio coordenada en x del inicio de la línea.
+    * @param yInicio coordenada en y del inicio de la línea.
+    * @param xFinal coordenada en x del final de la línea.
+    * @param yFinal coordenada en y del final de la línea.
+    * @param flechaInicio si es <tt>true</tt>, pone una flecha al inicio de la línea.
+    * @param flechaFinal si es <tt>true</tt>, pone una flecha al final de la línea.
+    */
+    public void dibujaLinea(double xInicio, double yInicio, double xFinal,
+                            double yFinal, boolean flechaInicio,
+                            boolean flechaFinal);
+
+    /**
+    * Dibuja una curva cuadrática de Bézier con una flecha al final.
+    * @param x1 coordenada en x del inicio de la curva.
+    * @param y1 coordenada en y del inicio de la curva.
+    * @param curvaX coordenada en x del punto de control de la curva.
+    * @param curvaY coordenada en y del punto de control de la curva.
+    * @param x2 coordenada en x del final de la curva.
+    * @param y2 coordenada en y del final de la curva.
+    * @param color entero entre 0 y 255 que determina un color de tres valores
+    *               iguales en formato rgb.
+    */
+    public void dibujaCurva(double x1, double y1, double curvaX,
+                            double curvaY, double x2, double y2,
+                            int color);
+
+    /**
+    * Termina la imagen.
+    */
+    public void escribePiecera();
+
+    /**
+     * Nos dice si el lienzo agrupa las aristas consecutivas. Si lo hace, los
+     * graficadores dibujan todas las aristas antes que los vértices.
+     * @return <tt>true</tt> si el lienzo agrupa las aristas consecutivas,
+     *         <tt>false</tt> en otro caso.
+     */
+    public boolean agrupaAristas();
+
+    /**
+     * Escribe lo que quede pendiente y cierra la salida del lienzo.
+     */
+    public void cierra();
+}
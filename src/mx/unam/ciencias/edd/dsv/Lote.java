@@ -0,0 +1,186 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p> Clase para graficar por lotes los archivos de un directorio. </p>
+ *
+ * <p> Un lote es un directorio, cuyos archivos se recorren recursivamente, o
+ *  un patrón glob como <tt>examples/*&#47;avl*</tt>. Cada archivo de entrada
+ *  se grafica en una tarea de un {@link ForkJoinPool} con el número de hilos
+ *  elegido, y su imagen se escribe junto a él, con el nombre del archivo y la
+ *  extensión del formato: <tt>avl1</tt> se grafica en <tt>avl1.svg</tt>.
+ *  Los archivos con la extensión de una imagen no son entradas. </p>
+ *
+ * <p> Cada archivo se grafica con su propio {@link DSV}, por lo que las
+ *  imágenes son las mismas que al graficar cada archivo por separado, sin
+ *  importar el número de hilos ni el orden en que terminen las tareas. Los
+ *  errores se reportan en el orden de los archivos. </p>
+ */
+public class Lote {
+
+    /* Las extensiones de los archivos que no son entradas. */
+    private static final String[] EXTENSIONES_IMAGEN = {
+        ".svg", ".svgz", ".png", ".dsvl"
+    };
+
+    /* Los argumentos de la ejecución. */
+    private LectorArgumentos argumentos;
+
+    /* La caché de distribuciones que comparten los archivos, o null. */
+    private CacheComposiciones composiciones;
+
+    /* Las estadísticas que comparten los archivos, o null. */
+    private Estadisticas estadisticas;
+
+    /**
+     * Construye un lote con los argumentos recibidos.
+     * @param argumentos los argumentos de la ejecución.
+     * @param composiciones la caché de distribuciones que comparten todos
+     *        los archivos, o <tt>null</tt> si no se usa.
+     * @param estadisticas las estadísticas donde todos los archivos
+     *        registran sus fases, o <tt>null</tt> si no se miden.
+     */
+    public Lote(LectorArgumentos argumentos,
+                CacheComposiciones composiciones, Estadisticas estadisticas) {
+        this.argumentos = argumentos;
+        this.composiciones = composiciones;
+        this.estadisticas = estadisticas;
+    }
+
+    /**
+     * Grafica en paralelo todos los archivos del lote.
+     * @throws ExcepcionDSV si el lote no puede recorrerse, o si algún
+     *         archivo no pudo graficarse; los demás se grafican de todas
+     *         formas.
+     */
+    public void ejecuta() {
+        List<Path> archivos = archivos(argumentos.getLote());
+        if (archivos.isEmpty())
+            throw new ExcepcionDSV("El lote no tiene archivos de entrada.");
+        String extension = extension();
+        ForkJoinPool hilos = new ForkJoinPool(argumentos.getHilos());
+        List<Callable<String>> tareas = new ArrayList<>();
+        for (Path archivo : archivos)
+            tareas.add(() -> grafica(archivo, extension));
+        int errores = 0;
+        try {
+            for (Future<String> tarea : hilos.invokeAll(tareas)) {
+                String error = tarea.get();
+                if (error != null) {
+                    System.err.println(error);
+                    errores++;
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new ExcepcionDSV("Se interrumpió el lote.", e);
+        } finally {
+            hilos.shutdown();
+        }
+        if (errores > 0)
+            throw new ExcepcionDSV(String.format(
+                "%d de %d archivos no pudieron graficarse.",
+                errores, archivos.size()));
+    }
+
+    /**
+     * Grafica un archivo del lote junto a él.
+     * @param archivo el archivo de entrada.
+     * @param extension la extensión de la imagen.
+     * @return <tt>null</tt> si el archivo se graficó, o el mensaje de error
+     *         en otro caso.
+     */
+    private String grafica(Path archivo, String extension) {
+        String entrada = archivo.toString();
+        try {
+            new DSV(argumentos.paraArchivo(entrada, entrada + extension),
+                    composiciones, estadisticas).ejecuta();
+            return null;
+        } catch (ExcepcionDSV e) {
+            return entrada + ": " + e.getMessage();
+        }
+    }
+
+    /**
+     * Regresa la extensión de las imágenes del lote, según el formato y la
+     * compresión elegidos.
+     * @return la extensión de las imágenes, con el punto.
+     */
+    private String extension() {
+        switch (argumentos.getFormato(null)) {
+            case PNG:
+                return ".png";
+            case DSVL:
+                return ".dsvl";
+            default:
+                return argumentos.comprimeSalida(null) ? ".svgz" : ".svg";
+        }
+    }
+
+    /**
+     * Regresa los archivos de entrada del lote, ordenados por ruta.
+     * @param lote un directorio o un patrón glob.
+     * @return los archivos de entrada del lote.
+     */
+    private static List<Path> archivos(String lote) {
+        int comodin = primerComodin(lote);
+        int separador = (comodin == -1) ? lote.length()
+                                        : lote.lastIndexOf('/', comodin) + 1;
+        Path base = Paths.get((separador == 0) ? "."
+                              : lote.substring(0, separador));
+        if (!Files.isDirectory(base))
+            throw new ExcepcionDSV("No se encontró el directorio del lote.");
+        PathMatcher patron = (comodin == -1) ? ruta -> true
+            : FileSystems.getDefault().getPathMatcher(
+                "glob:" + lote.substring(separador));
+        try (Stream<Path> rutas = Files.walk(base)) {
+            return rutas.filter(Files::isRegularFile)
+                        .filter(ruta -> !esImagen(ruta))
+                        .filter(ruta -> patron.matches(base.relativize(ruta)))
+                        .sorted()
+                        .collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            throw new ExcepcionDSV("No pudo recorrerse el lote.", e);
+        }
+    }
+
+    /**
+     * Regresa el índice del primer comodín del patrón.
+     * @param lote el directorio o patrón del lote.
+     * @return el índice del primer comodín, o -1 si no tiene.
+     */
+    private static int primerComodin(String lote) {
+        for (int i = 0; i < lote.length(); i++)
+            if ("*?[{".indexOf(lote.charAt(i)) != -1)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Nos dice si el archivo tiene la extensión de una imagen.
+     * @param archivo el archivo.
+     * @return <tt>true</tt> si el archivo es una imagen, <tt>false</tt> en
+     *         otro caso.
+     */
+    private static boolean esImagen(Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        for (String extension : EXTENSIONES_IMAGEN)
+            if (nombre.endsWith(extension))
+                return true;
+        return false;
+    }
+}
@@ -0,0 +1,248 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p> Clase para lienzos que escriben la imagen como una pirámide de
+ *  mosaicos. </p>
+ *
+ * <p> El lienzo guarda las primitivas en una {@link Composicion} y, al
+ *  escribir la piecera, parte la imagen en teselas cuadradas de
+ *  {@link #LADO} pixeles en varios niveles de acercamiento: en el nivel 0
+ *  toda la imagen cabe en una tesela, y cada nivel duplica la escala del
+ *  anterior hasta llegar al tamaño real. Cada tesela es un archivo
+ *  <tt>nivel/columna_fila.svg</tt> (o <tt>.png</tt>) que sólo contiene las
+ *  primitivas que la intersecan; las teselas vacías no se escriben. Un
+ *  índice <tt>mosaico.json</tt> describe la pirámide. Las teselas de cada
+ *  nivel se escriben en paralelo. </p>
+ */
+public class Mosaico implements Lienzo {
+
+    /** El lado en pixeles de cada tesela. */
+    public static final int LADO = 512;
+
+    /* El directorio donde se escribe la pirámide. */
+    private Path directorio;
+
+    /* El formato de las teselas. */
+    private Formato formato;
+
+    /* Si las teselas SVG se escriben en el dialecto compacto. */
+    private boolean compacto;
+
+    /* El nivel de compresión de las teselas PNG. */
+    private int nivelCompresion;
+
+    /* La composición donde se guardan las primitivas. */
+    private Composicion composicion;
+
+    /**
+     * Construye un lienzo que escribe una pirámide de mosaicos en el
+     * directorio recibido.
+     * @param directorio el directorio donde se escribe la pirámide.
+     * @param formato el formato de las teselas.
+     * @param compacto si es <tt>true</tt>, las teselas SVG se escriben en el
+     *        dialecto compacto.
+     * @param nivelCompresion el nivel de compresión de las teselas PNG.
+     */
+    public Mosaico(Path directorio, Formato formato, boolean compacto,
+                   int nivelCompresion) {
+        this.directorio = directorio;
+        this.formato = formato;
+        this.compacto = compacto;
+        this.nivelCompresion = nivelCompresion;
+        composicion = new Composicion();
+    }
+
+    @Override public void escribeCabecera(double ancho, double largo,
+                                          boolean defineFlechas) {
+        composicion.escribeCabecera(ancho, largo, defineFlechas);
+    }
+
+    @Override public void dibujaCirculo(double centroX, double centroY,
+                                        double radio, String colorFondo,
+                                        String colorBorde) {
+        composicion.dibujaCirculo(centroX, centroY, radio, colorFondo, colorBorde);
+    }
+
+    @Override public void dibujaRectangulo(double x, double y, double ancho,
+                                           double largo, String colorFondo,
+                                           String colorBorde) {
+        composicion.dibujaRectangulo(x, y, ancho, largo, colorFondo, colorBorde);
+    }
+
+    @Override public void dibujaTexto(double x, double y, String cadena,
+                                      String colorTexto, int size) {
+        composicion.dibujaTexto(x, y, cadena, colorTexto, size);
+    }
+
+    @Override public void dibujaLinea(double xInicio, double yInicio,
+                                      double xFinal, double yFinal,
+                                      boolean flechaInicio,
+                                      boolean flechaFinal) {
+        composicion.dibujaLinea(xInicio, yInicio, xFinal, yFinal,
+                                flechaInicio, flechaFinal);
+    }
+
+    @Override public void dibujaCurva(double x1, double y1, double curvaX,
+                                      double curvaY, double x2, double y2,
+                                      int color) {
+        composicion.dibujaCurva(x1, y1, curvaX, curvaY, x2, y2, color);
+    }
+
+    /**
+     * Escribe la pirámide de mosaicos y su índice.
+     * @throws UncheckedIOException si ocurre un error al escribir.
+     */
+    @Override public void escribePiecera() {
+        try {
+            escribePiramide(composicion, directorio);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Override public boolean agrupaAristas() {
+        return false;
+    }
+
+    @Override public void cierra() {}
+
+    /* Escribe todos los niveles de la pirámide y el índice. */
+    private void escribePiramide(Composicion composicion, Path directorio)
+        throws IOException {
+        double lado = Math.max(1, Math.max(composicion.getAncho(),
+                                           composicion.getLargo()));
+        int niveles = 1;
+        while (LADO * Math.pow(2, niveles - 1) < lado)
+            niveles++;
+        StringBuilder indice = new StringBuilder();
+        indice.append("{\"ancho\":").append(Math.round(composicion.getAncho()))
+              .append(",\"largo\":").append(Math.round(composicion.getLargo()))
+              .append(",\"lado\":").append(LADO)
+              .append(",\"formato\":\"").append(extension()).append('"')
+              .append(",\"niveles\":[");
+        for (int nivel = 0; nivel < niveles; nivel++) {
+            double escala = Math.pow(2, nivel - (niveles - 1));
+            double ladoMundo = LADO / escala;
+            int columnas = Math.max(1, (int) Math.ceil(composicion.getAncho() / ladoMundo));
+            int filas = Math.max(1, (int) Math.ceil(composicion.getLargo() / ladoMundo));
+            escribeNivel(composicion, nivel, ladoMundo, columnas, filas);
+            if (nivel > 0)
+                indice.append(',');
+            indice.append("{\"nivel\":").append(nivel)
+                  .append(",\"escala\":").append(escala)
+                  .append(",\"columnas\":").append(columnas)
+                  .append(",\"filas\":").append(filas).append('}');
+        }
+        indice.append("]}\n");
+        Files.createDirectories(directorio);
+        Files.write(directorio.resolve("mosaico.json"),
+                    indice.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /* Reparte las primitivas entre las teselas de un nivel y escribe en
+       paralelo las teselas que no quedan vacías. */
+    private void escribeNivel(Composicion composicion, int nivel,
+                              double ladoMundo, int columnas, int filas)
+        throws IOException {
+        Map<Long, Indices> teselas = new HashMap<>();
+        double[] caja = new double[4];
+        for (int i = 0; i < composicion.getPrimitivas(); i++) {
+            composicion.limites(i, caja);
+            int c0 = acota(caja[0] / ladoMundo, columnas);
+            int c1 = acota(caja[2] / ladoMundo, columnas);
+            int f0 = acota(caja[1] / ladoMundo, filas);
+            int f1 = acota(caja[3] / ladoMundo, filas);
+            for (int f = f0; f <= f1; f++)
+                for (int c = c0; c <= c1; c++) {
+                    long clave = (long) f * columnas + c;
+                    Indices t = teselas.get(clave);
+                    if (t == null) {
+                        t = new Indices();
+                        teselas.put(clave, t);
+                    }
+                    t.agrega(i);
+                }
+        }
+        Path carpeta = directorio.resolve(String.valueOf(nivel));
+        Files.createDirectories(carpeta);
+        teselas.entrySet().parallelStream().forEach(e -> {
+            long clave = e.getKey();
+            int columna = (int) (clave % columnas);
+            int fila = (int) (clave / columnas);
+            Path archivo = carpeta.resolve(columna + "_" + fila + "." + extension());
+            try {
+                escribeTesela(composicion, e.getValue(), archivo,
+                              columna * ladoMundo, fila * ladoMundo, ladoMundo);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        });
+    }
+
+    /* Escribe una tesela con las primitivas recibidas. */
+    private void escribeTesela(Composicion composicion, Indices primitivas,
+                               Path archivo, double x, double y,
+                               double ladoMundo) throws IOException {
+        FileChannel canal = FileChannel.open(archivo,
+                                             StandardOpenOption.CREATE,
+                                             StandardOpenOption.TRUNCATE_EXISTING,
+                                             StandardOpenOption.WRITE);
+        Lienzo tesela;
+        if (formato == Formato.PNG) {
+            PNG png = new PNG(Channels.newOutputStream(canal), nivelCompresion);
+            png.setVentana(x, y, ladoMundo, ladoMundo);
+            tesela = png;
+        } else {
+            SVG svg = new SVG(canal);
+            svg.setCompacto(compacto);
+            svg.setVentana(x, y, ladoMundo, ladoMundo);
+            tesela = svg;
+        }
+        tesela.escribeCabecera(LADO, LADO, composicion.defineFlechas());
+        for (int k = 0; k < primitivas.n; k++)
+            composicion.dibuja(primitivas.indices[k], tesela);
+        tesela.escribePiecera();
+        tesela.cierra();
+    }
+
+    /* Regresa la extensión de las teselas. */
+    private String extension() {
+        return (formato == Formato.PNG) ? "png" : "svg";
+    }
+
+    /* Regresa el índice de la tesela que contiene la coordenada, acotado. */
+    private static int acota(double t, int n) {
+        return Math.max(0, Math.min(n - 1, (int) Math.floor(t)));
+    }
+
+    /* Lista creciente de índices de primitivas de una tesela. */
+    private static class Indices {
+
+        /* Los índices de las primitivas. */
+        int[] indices = new int[16];
+
+        /* Número de índices. */
+        int n;
+
+        /* Agrega un índice. */
+        void agrega(int i) {
+            if (n == indices.length) {
+                int[] nuevos = new int[n * 2];
+                System.arraycopy(indices, 0, nuevos, 0, n);
+                indices = nuevos;
+            }
+            indices[n++] = i;
+        }
+    }
+}
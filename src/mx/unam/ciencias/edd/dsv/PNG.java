@@ -0,0 +1,464 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.awt.BasicStroke;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.QuadCurve2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * <p> Clase para lienzos que rasterizan la imagen en formato PNG. </p>
+ *
+ * <p> El lienzo guarda las primitivas en una {@link Composicion} y, al
+ *  escribir la piecera, las dibuja con Java2D sin pantalla en bandas
+ *  horizontales de altura fija que se comprimen y escriben una tras otra. Si
+ *  la imagen es más grande que {@link #LADO_MAXIMO} pixeles se escala para
+ *  caber, así que la memoria usada no depende del tamaño de la imagen. </p>
+ *
+ * <p> La clase no cambia el modo de AWT de la máquina virtual; en un
+ *  servidor sin pantalla, quien la use debe correr con
+ *  <tt>java.awt.headless</tt> en <tt>true</tt>, como lo hace {@link
+ *  DSV#main}. </p>
+ */
+public class PNG implements Lienzo {
+
+    /** El lado máximo en pixeles de la imagen rasterizada. */
+    public static final int LADO_MAXIMO = 16384;
+
+    /* Altura en pixeles de cada banda que se dibuja. */
+    private static final int ALTO_BANDA = 128;
+
+    /* Tamaño máximo de los bloques IDAT. */
+    private static final int TAMAÑO_BLOQUE = 1 << 16;
+
+    /* Firma de los archivos PNG. */
+    private static final byte[] FIRMA = { (byte) 0x89, 'P', 'N', 'G',
+                                          '\r', '\n', 0x1a, '\n' };
+
+    /**
+     * Clase interna privada para flujos que empaquetan los bytes recibidos
+     * en bloques IDAT.
+     */
+    private class FlujoIDAT extends OutputStream {
+
+        /* Los bytes pendientes del bloque. */
+        private byte[] bloque = new byte[TAMAÑO_BLOQUE];
+
+        /* Número de bytes pendientes. */
+        private int n;
+
+        /* Agrega un byte al bloque. */
+        @Override public void write(int b) throws IOException {
+            if (n == bloque.length)
+                flush();
+            bloque[n++] = (byte) b;
+        }
+
+        /* Agrega bytes al bloque, escribiéndolo cada vez que se llena. */
+        @Override public void write(byte[] b, int inicio, int longitud)
+            throws IOException {
+            while (longitud > 0) {
+                if (n == bloque.length)
+                    flush();
+                int k = Math.min(longitud, bloque.length - n);
+                System.arraycopy(b, inicio, bloque, n, k);
+                n += k;
+                inicio += k;
+                longitud -= k;
+            }
+        }
+
+        /* Escribe los bytes pendientes como un bloque IDAT. */
+        @Override public void flush() throws IOException {
+            if (n > 0)
+                escribeBloque("IDAT", bloque, n);
+            n = 0;
+        }
+    }
+
+    /**
+     * Clase interna privada para lienzos que dibujan las primitivas en un
+     * contexto gráfico de Java2D.
+     */
+    private class Pintor implements Lienzo {
+
+        /* El contexto gráfico. */
+        private Graphics2D g;
+
+        /* Colores ya interpretados, por nombre. */
+        private HashMap<String, java.awt.Color> colores = new HashMap<>();
+
+        /* Fuentes ya creadas, por tamaño. */
+        private HashMap<Integer, Font> fuentes = new HashMap<>();
+
+        /* Forma reutilizable para círculos. */
+        private Ellipse2D.Double elipse = new Ellipse2D.Double();
+
+        /* Forma reutilizable para rectángulos. */
+        private Rectangle2D.Double rectangulo = new Rectangle2D.Double();
+
+        /* Forma reutilizable para líneas. */
+        private Line2D.Double linea = new Line2D.Double();
+
+        /* Forma reutilizable para curvas. */
+        private QuadCurve2D.Double curva = new QuadCurve2D.Double();
+
+        /* No hace nada; las dimensiones las define la banda. */
+        @Override public void escribeCabecera(double ancho, double largo,
+                                              boolean defineFlechas) {}
+
+        /* Dibuja un círculo relleno con borde. */
+        @Override public void dibujaCirculo(double centroX, double centroY,
+                                            double radio, String colorFondo,
+                                            String colorBorde) {
+            elipse.setFrame(centroX - radio, centroY - radio, 2 * radio, 2 * radio);
+            g.setColor(color(colorFondo));
+            g.fill(elipse);
+            g.setColor(color(colorBorde));
+            g.draw(elipse);
+        }
+
+        /* Dibuja un rectángulo relleno con borde. */
+        @Override public void dibujaRectangulo(double x, double y, double ancho,
+                                               double largo, String colorFondo,
+                                               String colorBorde) {
+            rectangulo.setRect(x, y, ancho, largo);
+            g.setColor(color(colorFondo));
+            g.fill(rectangulo);
+            g.setColor(color(colorBorde));
+            g.draw(rectangulo);
+        }
+
+        /* Dibuja texto centrado horizontalmente. */
+        @Override public void dibujaTexto(double x, double y, String cadena,
+                                          String colorTexto, int size) {
+            Font fuente = fuentes.get(size);
+            if (fuente == null) {
+                fuente = new Font(Font.SANS_SERIF, Font.PLAIN, size);
+                fuentes.put(size, fuente);
+            }
+            g.setFont(fuente);
+            g.setColor(color(colorTexto));
+            FontMetrics metricas = g.getFontMetrics();
+            g.drawString(cadena, (float) (x - metricas.stringWidth(cadena) / 2.0),
+                         (float) y);
+        }
+
+        /* Dibuja una línea negra con sus flechas. */
+        @Override public void dibujaLinea(double xInicio, double yInicio,
+                                          double xFinal, double yFinal,
+                                          boolean flechaInicio,
+                                          boolean flechaFinal) {
+            g.setColor(java.awt.Color.BLACK);
+            linea.setLine(xInicio, yInicio, xFinal, yFinal);
+            g.draw(linea);
+            if (flechaInicio)
+                dibujaFlecha(xFinal, yFinal, xInicio, yInicio);
+            if (flechaFinal)
+                dibujaFlecha(xInicio, yInicio, xFinal, yFinal);
+        }
+
+        /* Dibuja una curva gris con flecha al final. */
+        @Override public void dibujaCurva(double x1, double y1, double curvaX,
+                                          double curvaY, double x2, double y2,
+                                          int color) {
+            g.setColor(new java.awt.Color(color, color, color));
+            curva.setCurve(x1, y1, curvaX, curvaY, x2, y2);
+            g.draw(curva);
+            g.setColor(java.awt.Color.BLACK);
+            dibujaFlecha(curvaX, curvaY, x2, y2);
+        }
+
+        /* No hace nada. */
+        @Override public void escribePiecera() {}
+
+        /* El pintor no agrupa aristas. */
+        @Override public boolean agrupaAristas() {
+            return false;
+        }
+
+        /* No hace nada. */
+        @Override public void cierra() {}
+
+        /* Dibuja una punta de flecha en (x2, y2) en la dirección desde (x1, y1). */
+        private void dibujaFlecha(double x1, double y1, double x2, double y2) {
+            double angulo = Math.atan2(y2 - y1, x2 - x1);
+            Path2D.Double punta = new Path2D.Double();
+            punta.moveTo(x2, y2);
+            punta.lineTo(x2 - 5 * Math.cos(angulo - 0.4), y2 - 5 * Math.sin(angulo - 0.4));
+            punta.lineTo(x2 - 5 * Math.cos(angulo + 0.4), y2 - 5 * Math.sin(angulo + 0.4));
+            punta.closePath();
+            g.fill(punta);
+        }
+
+        /* Interpreta un nombre de color de SVG. */
+        private java.awt.Color color(String nombre) {
+            java.awt.Color c = colores.get(nombre);
+            if (c != null)
+                return c;
+            if (nombre.startsWith("rgb(")) {
+                String[] v = nombre.substring(4, nombre.length() - 1).split(",");
+                c = new java.awt.Color(Integer.parseInt(v[0].trim()),
+                                       Integer.parseInt(v[1].trim()),
+                                       Integer.parseInt(v[2].trim()));
+            } else if (nombre.startsWith("#")) {
+                String h = nombre.substring(1);
+                if (h.length() == 3)
+                    h = "" + h.charAt(0) + h.charAt(0) + h.charAt(1)
+                        + h.charAt(1) + h.charAt(2) + h.charAt(2);
+                c = new java.awt.Color(Integer.parseInt(h, 16));
+            } else {
+                switch (nombre) {
+                    case "white":
+                        c = java.awt.Color.WHITE;
+                        break;
+                    case "red":
+                        c = java.awt.Color.RED;
+                        break;
+                    default:
+                        c = java.awt.Color.BLACK;
+                }
+            }
+            colores.put(nombre, c);
+            return c;
+        }
+    }
+
+    /* El flujo donde se escribe la imagen. */
+    private OutputStream salida;
+
+    /* El nivel de compresión de los datos de la imagen. */
+    private int nivelCompresion;
+
+    /* La composición donde se guardan las primitivas. */
+    private Composicion composicion;
+
+    /* Suma de verificación de los bloques. */
+    private CRC32 crc;
+
+    /* La región de la imagen que se rasteriza, o null para toda. */
+    private double[] ventana;
+
+    /**
+     * Construye un lienzo PNG que se escribe en el flujo recibido.
+     * @param salida el flujo donde se escribe la imagen.
+     * @param nivelCompresion el nivel de compresión, entre 0 y 9, o
+     *        {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public PNG(OutputStream salida, int nivelCompresion) {
+        this.salida = salida;
+        this.nivelCompresion = nivelCompresion;
+        composicion = new Composicion();
+        crc = new CRC32();
+    }
+
+    /**
+     * Define la región de coordenadas que se rasteriza. La región se escala
+     * para ocupar la imagen completa, cuyas dimensiones en pixeles son las
+     * que recibe la cabecera.
+     * @param x coordenada en x de la esquina superior izquierda de la región.
+     * @param y coordenada en y de la esquina superior izquierda de la región.
+     * @param ancho el ancho de la región.
+     * @param largo el largo de la región.
+     */
+    public void setVentana(double x, double y, double ancho, double largo) {
+        ventana = new double[] { x, y, ancho, largo };
+    }
+
+    @Override public void escribeCabecera(double ancho, double largo,
+                                          boolean defineFlechas) {
+        composicion.escribeCabecera(ancho, largo, defineFlechas);
+    }
+
+    @Override public void dibujaCirculo(double centroX, double centroY,
+                                        double radio, String colorFondo,
+                                        String colorBorde) {
+        composicion.dibujaCirculo(centroX, centroY, radio, colorFondo, colorBorde);
+    }
+
+    @Override public void dibujaRectangulo(double x, double y, double ancho,
+                                           double largo, String colorFondo,
+                                           String colorBorde) {
+        composicion.dibujaRectangulo(x, y, ancho, largo, colorFondo, colorBorde);
+    }
+
+    @Override public void dibujaTexto(double x, double y, String cadena,
+                                      String colorTexto, int size) {
+        composicion.dibujaTexto(x, y, cadena, colorTexto, size);
+    }
+
+    @Override public void dibujaLinea(double xInicio, double yInicio,
+                                      double xFinal, double yFinal,
+                                      boolean flechaInicio,
+                                      boolean flechaFinal) {
+        composicion.dibujaLinea(xInicio, yInicio, xFinal, yFinal,
+                                flechaInicio, flechaFinal);
+    }
+
+    @Override public void dibujaCurva(double x1, double y1, double curvaX,
+                                      double curvaY, double x2, double y2,
+                                      int color) {
+        composicion.dibujaCurva(x1, y1, curvaX, curvaY, x2, y2, color);
+    }
+
+    /**
+     * Rasteriza las primitivas guardadas y escribe la imagen PNG.
+     * @throws UncheckedIOException si ocurre un error al escribir.
+     */
+    @Override public void escribePiecera() {
+        try {
+            rasteriza(composicion);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Override public boolean agrupaAristas() {
+        return false;
+    }
+
+    /**
+     * Cierra el flujo de la imagen.
+     * @throws UncheckedIOException si ocurre un error al cerrar.
+     */
+    @Override public void cierra() {
+        try {
+            salida.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /* Dibuja la composición banda por banda y escribe la imagen. */
+    private void rasteriza(Composicion composicion) throws IOException {
+        double lado = Math.max(composicion.getAncho(), composicion.getLargo());
+        double escala = (lado > LADO_MAXIMO) ? LADO_MAXIMO / lado : 1;
+        int ancho = Math.max(1, (int) Math.ceil(composicion.getAncho() * escala));
+        int largo = Math.max(1, (int) Math.ceil(composicion.getLargo() * escala));
+        double origenX = 0, origenY = 0;
+        if (ventana != null) {
+            escala *= composicion.getAncho() / ventana[2];
+            origenX = ventana[0];
+            origenY = ventana[1];
+        }
+        int bandas = (largo + ALTO_BANDA - 1) / ALTO_BANDA;
+
+        int n = composicion.getPrimitivas();
+        int[] primera = new int[n];
+        int[] ultima = new int[n];
+        int[] inicio = new int[bandas + 1];
+        double[] caja = new double[4];
+        for (int i = 0; i < n; i++) {
+            composicion.limites(i, caja);
+            primera[i] = banda((caja[1] - origenY) * escala - 1, bandas);
+            ultima[i] = banda((caja[3] - origenY) * escala + 1, bandas);
+            for (int b = primera[i]; b <= ultima[i]; b++)
+                inicio[b + 1]++;
+        }
+        for (int b = 0; b < bandas; b++)
+            inicio[b + 1] += inicio[b];
+        int[] indices = new int[inicio[bandas]];
+        int[] siguiente = new int[bandas];
+        System.arraycopy(inicio, 0, siguiente, 0, bandas);
+        for (int i = 0; i < n; i++)
+            for (int b = primera[i]; b <= ultima[i]; b++)
+                indices[siguiente[b]++] = i;
+
+        salida.write(FIRMA);
+        byte[] ihdr = new byte[13];
+        escribeEntero(ihdr, 0, ancho);
+        escribeEntero(ihdr, 4, largo);
+        ihdr[8] = 8;
+        ihdr[9] = 2;
+        escribeBloque("IHDR", ihdr, ihdr.length);
+
+        Deflater deflater = new Deflater(nivelCompresion);
+        FlujoIDAT idat = new FlujoIDAT();
+        DeflaterOutputStream datos = new DeflaterOutputStream(idat, deflater,
+                                                              TAMAÑO_BLOQUE);
+        BufferedImage imagen = new BufferedImage(ancho, ALTO_BANDA,
+                                                 BufferedImage.TYPE_INT_RGB);
+        int[] pixeles = ((DataBufferInt) imagen.getRaster().getDataBuffer()).getData();
+        byte[] fila = new byte[1 + 3 * ancho];
+        Pintor pintor = new Pintor();
+        for (int b = 0; b < bandas; b++) {
+            Graphics2D g = imagen.createGraphics();
+            g.setColor(java.awt.Color.WHITE);
+            g.fillRect(0, 0, ancho, ALTO_BANDA);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                               RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                               RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.translate(0, -b * ALTO_BANDA);
+            g.scale(escala, escala);
+            g.translate(-origenX, -origenY);
+            g.setStroke(new BasicStroke(1));
+            pintor.g = g;
+            for (int k = inicio[b]; k < inicio[b + 1]; k++)
+                composicion.dibuja(indices[k], pintor);
+            g.dispose();
+            int filas = Math.min(ALTO_BANDA, largo - b * ALTO_BANDA);
+            for (int y = 0; y < filas; y++) {
+                int p = y * ancho;
+                int j = 1;
+                for (int x = 0; x < ancho; x++) {
+                    int rgb = pixeles[p + x];
+                    fila[j++] = (byte) (rgb >> 16);
+                    fila[j++] = (byte) (rgb >> 8);
+                    fila[j++] = (byte) rgb;
+                }
+                datos.write(fila);
+            }
+        }
+        datos.finish();
+        deflater.end();
+        idat.flush();
+        escribeBloque("IEND", new byte[0], 0);
+        salida.flush();
+    }
+
+    /* Regresa la banda que contiene la coordenada y, acotada a la imagen. */
+    private static int banda(double y, int bandas) {
+        int b = (int) Math.floor(y / ALTO_BANDA);
+        return Math.max(0, Math.min(bandas - 1, b));
+    }
+
+    /* Escribe un bloque PNG con su longitud, tipo, datos y suma CRC. */
+    private void escribeBloque(String tipo, byte[] datos, int longitud)
+        throws IOException {
+        byte[] cabecera = new byte[8];
+        escribeEntero(cabecera, 0, longitud);
+        for (int i = 0; i < 4; i++)
+            cabecera[4 + i] = (byte) tipo.charAt(i);
+        crc.reset();
+        crc.update(cabecera, 4, 4);
+        crc.update(datos, 0, longitud);
+        salida.write(cabecera);
+        salida.write(datos, 0, longitud);
+        byte[] suma = new byte[4];
+        escribeEntero(suma, 0, (int) crc.getValue());
+        salida.write(suma);
+    }
+
+    /* Escribe un entero de 32 bits en orden de red. */
+    private static void escribeEntero(byte[] b, int i, int n) {
+        b[i] = (byte) (n >>> 24);
+        b[i + 1] = (byte) (n >>> 16);
+        b[i + 2] = (byte) (n >>> 8);
+        b[i + 3] = (byte) n;
+    }
+}
@@ -1,79 +1,236 @@
 package mx.unam.ciencias.edd.dsv;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import mx.unam.ciencias.edd.Lista;
+
 /**
- * <p> Clase abstracta para generar cadenas de formato SVG. </p>
+ * <p> Clase para generar documentos de formato SVG. </p>
+ *
+ * <p> Un objeto SVG escribe etiquetas SVG en la salida a la que está ligado
+ *  (un flujo de bytes o un canal, por ejemplo el de un archivo), con métodos
+ *  para cabeceras, pieceras, líneas, círculos, rectángulos, texto y curvas
+ *  cuadráticas de Bézier. </p>
+ *
+ * <p> Las etiquetas se escriben directamente como bytes en un búfer
+ *  reutilizable, sin construir cadenas intermedias; el búfer sólo se vacía en
+ *  la salida cuando se llena o cuando se invoca {@link #vacia}. </p>
  *
- * <p> La clase SVG permite imprimir cadenas de formato SVG en la salida
- *  estándar, con métodos para cabeceras, pieceras, líneas, círculos,
-    rectángulos, texto y curvas cuadráticas de Bézier. </p>
+ * <p> En modo compacto el documento no tiene indentación, los estilos se
+ *  definen una sola vez como clases CSS, y los círculos y rectángulos se
+ *  definen una vez por tamaño dentro de <tt>&lt;defs&gt;</tt> y se
+ *  referencian con <tt>&lt;use&gt;</tt>. </p>
+ *
+ * <p> Si se agrupan las aristas, las líneas consecutivas sin flechas se
+ *  escriben como subtrayectorias de un único elemento <tt>&lt;path&gt;</tt>,
+ *  partido en bloques de tamaño configurable; el orden de dibujo no
+ *  cambia. </p>
  */
-public abstract class SVG {
+public class SVG implements Lienzo {
+
+    /* Tamaño por omisión del búfer en bytes. */
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+
+    /* Bytes de un nivel de indentación. */
+    private static final byte[] TABULADOR = { ' ', ' ', ' ' };
+
+    /* El flujo de salida, si el documento se escribe a un flujo. */
+    private OutputStream flujo;
+
+    /* El canal de salida, si el documento se escribe a un canal. */
+    private WritableByteChannel canal;
+
+    /* El búfer donde se acumulan los bytes del documento. */
+    private byte[] buffer;
+
+    /* Envoltura del búfer para escribirlo en un canal. */
+    private ByteBuffer envoltura;
+
+    /* Número de bytes ocupados en el búfer. */
+    private int posicion;
+
+    /* Número de bytes escritos en la salida. */
+    private long escritos;
+
+    /* Si el documento se escribe en modo compacto. */
+    private boolean compacto;
+
+    /* Radios de los círculos ya definidos en modo compacto. */
+    private Lista<Integer> circulosDefinidos;
+
+    /* Dimensiones de los rectángulos ya definidos en modo compacto. */
+    private Lista<Long> rectangulosDefinidos;
+
+    /* Número máximo de aristas por trayectoria, o 0 si no se agrupan. */
+    private int aristasPorBloque;
+
+    /* Número de aristas en la trayectoria abierta. */
+    private int aristasPendientes;
+
+    /* La región de coordenadas visible en el documento, o null para toda. */
+    private double[] ventana;
 
     /**
-    * Escribe en la salida estándar las etiquetas SVG correspondientes
-    * al inicio del archivo.
+     * Construye un documento SVG que se escribe en el flujo recibido.
+     * @param flujo el flujo donde se escribe el documento.
+     */
+    public SVG(OutputStream flujo) {
+        this.flujo = flujo;
+        buffer = new byte[TAMAÑO_BUFFER];
+    }
+
+    /**
+     * Construye un documento SVG que se escribe en el canal recibido.
+     * @param canal el canal donde se escribe el documento.
+     */
+    public SVG(WritableByteChannel canal) {
+        this.canal = canal;
+        buffer = new byte[TAMAÑO_BUFFER];
+        envoltura = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Define si el documento se escribe en modo compacto. Debe llamarse
+     * antes de escribir la cabecera.
+     * @param compacto si es <tt>true</tt>, el documento se escribe en modo
+     *        compacto.
+     */
+    public void setCompacto(boolean compacto) {
+        this.compacto = compacto;
+        circulosDefinidos = new Lista<>();
+        rectangulosDefinidos = new Lista<>();
+    }
+
+    /**
+     * Define cuántas aristas se agrupan en cada trayectoria. Las líneas
+     * consecutivas sin flechas se escriben como una sola trayectoria de hasta
+     * el número de aristas recibido.
+     * @param aristasPorBloque el número máximo de aristas por trayectoria, o
+     *        0 para escribir cada arista como una línea.
+     */
+    public void setAristasPorBloque(int aristasPorBloque) {
+        this.aristasPorBloque = aristasPorBloque;
+    }
+
+    /**
+     * Define la región de coordenadas visible en el documento, que se escala
+     * para ocupar las dimensiones que recibe la cabecera. Debe llamarse antes
+     * de escribir la cabecera.
+     * @param x coordenada en x de la esquina superior izquierda de la región.
+     * @param y coordenada en y de la esquina superior izquierda de la región.
+     * @param ancho el ancho de la región.
+     * @param largo el largo de la región.
+     */
+    public void setVentana(double x, double y, double ancho, double largo) {
+        ventana = new double[] { x, y, ancho, largo };
+    }
+
+    /**
+     * Nos dice si las aristas se agrupan en trayectorias.
+     * @return <tt>true</tt> si las aristas se agrupan en trayectorias,
+     *         <tt>false</tt> en otro caso.
+     */
+    @Override public boolean agrupaAristas() {
+        return aristasPorBloque > 0;
+    }
+
+    /**
+    * Escribe las etiquetas SVG correspondientes al inicio del archivo.
     * @param anchoSVG el ancho de la imagen SVG.
     * @param largoSVG el largo de la imagen SVG.
     * @param defineFlechas si es <tt>true</tt>, escribe un bloque de definición
     */
-    public static void escribeCabecera(double anchoSVG, double largoSVG,
-                                    boolean defineFlechas) {
-        int anchoi = (int) Math.round(anchoSVG);
-        int largoi = (int) Math.round(largoSVG);
-        System.out.println("<?xml version='1.0' encoding='UTF-8' ?>\n" +
-                            escribeTabuladores(1) + "<svg width='" + anchoi
-                            + "' height='" + largoi + "'>");
-        if (defineFlechas)
-            System.out.println(escribeTabuladores(2) + "<defs>\n" +
-                                escribeTabuladores(3)
-                                + "<marker id='startarrow' markerWidth='5' "
-                                + "markerHeight='6' refX='2' refY='3' "
-                                + "orient='auto'>\n"
-                                + escribeTabuladores(4) + "<polygon points='9 0, 9 6, 0 2.8' "
-                                + "fill='black'/>\n" +
-                                escribeTabuladores(3) + "</marker>\n" +
-                                escribeTabuladores(3) + "<marker id='endarrow' "
-                                + "markerWidth='5' markerHeight='6' "
-                                + "refX='2' refY='1.7' orient='auto'>\n"
-                                + escribeTabuladores(4) + "<polygon points='0 0, 5 1.5, 0 3.2' "
-                                + "fill='black'/>\n" +
-                                escribeTabuladores(3) + "</marker>\n" +
-                            escribeTabuladores(2) + "</defs>");
-        System.out.println(escribeTabuladores(2) + "<g>");
-    }
-
-    /**
-    * Crea y regresa una cadena con la cantidad de tabuladores especificada.
-    * @param tabs el número de tabuladores requeridos.
-    * @return una cadena con la cantidad de tabuladores especificada.
-    */
-    private static String escribeTabuladores(int tabs) {
-        String s = "";
-        for (int i = 1; i <= tabs; i++)
-            s += "   ";
-        return s;
+    @Override public void escribeCabecera(double anchoSVG, double largoSVG,
+                                boolean defineFlechas) {
+        if (compacto) {
+            escribeCabeceraCompacta(anchoSVG, largoSVG, defineFlechas);
+            return;
+        }
+        escribe("<?xml version='1.0' encoding='UTF-8' ?>\n");
+        escribeTabuladores(1);
+        escribe("<svg width='");
+        escribe(anchoSVG);
+        escribe("' height='");
+        escribe(largoSVG);
+        escribe('\'');
+        escribeVentana();
+        escribe(">\n");
+        if (defineFlechas) {
+            escribeTabuladores(2);
+            escribe("<defs>\n");
+            escribeTabuladores(3);
+            escribe("<marker id='startarrow' markerWidth='5' markerHeight='6' "
+                    + "refX='2' refY='3' orient='auto'>\n");
+            escribeTabuladores(4);
+            escribe("<polygon points='9 0, 9 6, 0 2.8' fill='black'/>\n");
+            escribeTabuladores(3);
+            escribe("</marker>\n");
+            escribeTabuladores(3);
+            escribe("<marker id='endarrow' markerWidth='5' markerHeight='6' "
+                    + "refX='2' refY='1.7' orient='auto'>\n");
+            escribeTabuladores(4);
+            escribe("<polygon points='0 0, 5 1.5, 0 3.2' fill='black'/>\n");
+            escribeTabuladores(3);
+            escribe("</marker>\n");
+            escribeTabuladores(2);
+            escribe("</defs>\n");
+        }
+        escribeTabuladores(2);
+        escribe("<g>\n");
     }
 
     /**
-    * Escribe en la salida estándar la etiqueta SVG correspondiente a un círculo.
+    * Escribe la etiqueta SVG correspondiente a un círculo.
     * @param centroX coordenada en x del centro del círculo.
     * @param centroY coordenada en y del centro del círculo.
     * @param radio el radio del círculo.
     * @param colorFondo una cadena con el nombre del color de fondo.
     * @param colorBorde una cadena con el nombre del color del borde.
     */
-    public static void dibujaCirculo(double centroX, double centroY, double radio,
-                                String colorFondo, String colorBorde) {
-        int xi = (int) Math.round(centroX);
-        int yi = (int) Math.round(centroY);
-        int ri = (int) Math.round(radio);
-        System.out.println(escribeTabuladores(2) + "<circle fill='" + colorFondo + "' " +
-                        "stroke='" + colorBorde + "' cx='" + xi + "' " +
-                        "cy='" + yi + "' r='" + ri + "' />");
+    @Override public void dibujaCirculo(double centroX, double centroY, double radio,
+                              String colorFondo, String colorBorde) {
+        terminaAristas();
+        if (compacto) {
+            int r = (int) Math.round(radio);
+            if (!circulosDefinidos.contiene(r)) {
+                escribe("<defs><circle id='c");
+                escribe(r);
+                escribe("' r='");
+                escribe(r);
+                escribe("'/></defs>");
+                circulosDefinidos.agrega(r);
+            }
+            escribe("<use href='#c");
+            escribe(r);
+            escribe("' x='");
+            escribe(centroX);
+            escribe("' y='");
+            escribe(centroY);
+            escribe('\'');
+            escribeEstilo(colorFondo, colorBorde);
+            escribe("/>");
+            return;
+        }
+        escribeTabuladores(2);
+        escribe("<circle fill='");
+        escribe(colorFondo);
+        escribe("' stroke='");
+        escribe(colorBorde);
+        escribe("' cx='");
+        escribe(centroX);
+        escribe("' cy='");
+        escribe(centroY);
+        escribe("' r='");
+        escribe(radio);
+        escribe("' />\n");
     }
 
     /**
-    * Escribe en la salida estándar la etiqueta SVG correspondiente a un rectángulo.
+    * Escribe la etiqueta SVG correspondiente a un rectángulo.
     * @param x coordenada en x de la esquina superior izquierda del rectángulo.
     * @param y coordenada en y de la esquina superior izquierda del rectángulo.
     * @param ancho el ancho del rectángulo.
@@ -81,39 +238,96 @@ public abstract class SVG {
     * @param colorFondo una cadena con el nombre del color de fondo.
     * @param colorBorde una cadena con el nombre del color del borde.
     */
-    public static void dibujaRectangulo(double x, double y, double ancho,
-                                        double largo, String colorFondo,
-                                        String colorBorde) {
-        int xi = (int) Math.round(x);
-        int yi = (int) Math.round(y);
-        int anchoi = (int) Math.round(ancho);
-        int largoi = (int) Math.round(largo);
-        System.out.println(escribeTabuladores(2) + "<rect x='" + xi + "' y='" + yi + "' "
-                            + " width='" + anchoi + "' height='" + largoi + "' "
-                            + "fill='" + colorFondo + "' stroke='" + colorBorde + "'/>");
+    @Override public void dibujaRectangulo(double x, double y, double ancho,
+                                 double largo, String colorFondo,
+                                 String colorBorde) {
+        terminaAristas();
+        if (compacto) {
+            int a = (int) Math.round(ancho);
+            int l = (int) Math.round(largo);
+            long dimensiones = ((long) a << 32) | (l & 0xffffffffL);
+            if (!rectangulosDefinidos.contiene(dimensiones)) {
+                escribe("<defs><rect id='r");
+                escribe(a);
+                escribe('x');
+                escribe(l);
+                escribe("' width='");
+                escribe(a);
+                escribe("' height='");
+                escribe(l);
+                escribe("'/></defs>");
+                rectangulosDefinidos.agrega(dimensiones);
+            }
+            escribe("<use href='#r");
+            escribe(a);
+            escribe('x');
+            escribe(l);
+            escribe("' x='");
+            escribe(x);
+            escribe("' y='");
+            escribe(y);
+            escribe('\'');
+            escribeEstilo(colorFondo, colorBorde);
+            escribe("/>");
+            return;
+        }
+        escribeTabuladores(2);
+        escribe("<rect x='");
+        escribe(x);
+        escribe("' y='");
+        escribe(y);
+        escribe("'  width='");
+        escribe(ancho);
+        escribe("' height='");
+        escribe(largo);
+        escribe("' fill='");
+        escribe(colorFondo);
+        escribe("' stroke='");
+        escribe(colorBorde);
+        escribe("'/>\n");
     }
 
     /**
-    * Escribe en la salida estándar la etiqueta SVG correspondiente a una
-    * etiqueta de texto.
+    * Escribe la etiqueta SVG correspondiente a una etiqueta de texto.
     * @param x coordenada en x del centro de la etiqueta de texto.
     * @param y coordenada en y del centro de la etiqueta de texto.
     * @param cadena cadena de texto a dibujar.
     * @param colorTexto una cadena con el nombre del color del texto.
     * @param size un entero que determina el tamaño en pixeles del texto.
     */
-    public static void dibujaTexto(double x, double y, String cadena,
-                                    String colorTexto, int size) {
-        int xi = (int) Math.round(x);
-        int yi = (int) Math.round(y);
-        System.out.println(escribeTabuladores(2) + "<text font-family='sans-serif' " +
-                        "font-size='" + size + "' x='" + xi + "' y='" + yi +"' "
-                        + "fill='" + colorTexto + "' "
-                        + "text-anchor='middle'>"+cadena+"</text>");
+    @Override public void dibujaTexto(double x, double y, String cadena,
+                            String colorTexto, int size) {
+        terminaAristas();
+        if (compacto) {
+            escribe("<text x='");
+            escribe(x);
+            escribe("' y='");
+            escribe(y);
+            escribe("' font-size='");
+            escribe(size);
+            escribe('\'');
+            escribeEstilo(colorTexto, null);
+            escribe('>');
+            escapa(cadena);
+            escribe("</text>");
+            return;
+        }
+        escribeTabuladores(2);
+        escribe("<text font-family='sans-serif' font-size='");
+        escribe(size);
+        escribe("' x='");
+        escribe(x);
+        escribe("' y='");
+        escribe(y);
+        escribe("' fill='");
+        escribe(colorTexto);
+        escribe("' text-anchor='middle'>");
+        escapa(cadena);
+        escribe("</text>\n");
     }
 
     /**
-    * Escribe en la salida estándar la etiqueta SVG correspondiente a una línea.
+    * Escribe la etiqueta SVG correspondiente a una línea.
     * @param xInicio coordenada en x del inicio de la flecha.
     * @param yInicio coordenada en y del inicio de la flecha.
     * @param xFinal coordenada en x del final de la flecha.
@@ -121,26 +335,50 @@ public abstract class SVG {
     * @param flechaInicio si es <tt>true</tt>, pone una flecha al inicio de la línea.
     * @param flechaFinal si es <tt>true</tt>, pone una flecha al final de la línea.
     */
-    public static void dibujaLinea(double xInicio, double yInicio, double xFinal,
-                                    double yFinal, boolean flechaInicio,
-                                    boolean flechaFinal) {
-        int xi1 = (int) Math.round(xInicio);
-        int yi1 = (int) Math.round(yInicio);
-        int xi2 = (int) Math.round(xFinal);
-        int yi2 = (int) Math.round(yFinal);
-        System.out.print(escribeTabuladores(2) + "<line x1='" + xi1 + "' "
-                        + "y1='" + yi1 + "' x2='" + xi2 + "' "
-                        + "y2='" + yi2 + "' stroke='#000' stroke-width='1' ");
+    @Override public void dibujaLinea(double xInicio, double yInicio, double xFinal,
+                            double yFinal, boolean flechaInicio,
+                            boolean flechaFinal) {
+        if (aristasPorBloque > 0 && !flechaInicio && !flechaFinal) {
+            agregaArista(xInicio, yInicio, xFinal, yFinal);
+            return;
+        }
+        terminaAristas();
+        if (compacto) {
+            escribe("<line x1='");
+            escribe(xInicio);
+            escribe("' y1='");
+            escribe(yInicio);
+            escribe("' x2='");
+            escribe(xFinal);
+            escribe("' y2='");
+            escribe(yFinal);
+            escribe('\'');
+            if (flechaInicio)
+                escribe(" marker-start='url(#startarrow)'");
+            if (flechaFinal)
+                escribe(" marker-end='url(#endarrow)'");
+            escribe("/>");
+            return;
+        }
+        escribeTabuladores(2);
+        escribe("<line x1='");
+        escribe(xInicio);
+        escribe("' y1='");
+        escribe(yInicio);
+        escribe("' x2='");
+        escribe(xFinal);
+        escribe("' y2='");
+        escribe(yFinal);
+        escribe("' stroke='#000' stroke-width='1' ");
         if (flechaInicio)
-            System.out.print("marker-start='url(#startarrow)' ");
+            escribe("marker-start='url(#startarrow)' ");
         if (flechaFinal)
-            System.out.print("marker-end='url(#endarrow)'");
-        System.out.println("/>");
+            escribe("marker-end='url(#endarrow)'");
+        escribe("/>\n");
     }
 
     /**
-    * Escribe en la salida estándar la etiqueta SVG correspondiente a una curva
-    * cuadrática de Bézier.
+    * Escribe la etiqueta SVG correspondiente a una curva cuadrática de Bézier.
     * @param x1 coordenada en x del inicio de la curva.
     * @param y1 coordenada en y del inicio de la curva.
     * @param curvaX coordenada en x del punto externo de referencia para pintar
@@ -152,29 +390,305 @@ public abstract class SVG {
     * @param color entero entre 0 y 255 que determina un color de tres valores
     *               iguales en formato rgb.
     */
-    public static void dibujaCurva(double x1, double y1, double curvaX,
-                                    double curvaY, double x2, double y2,
-                                    int color) {
-        int xi1 = (int) Math.round(x1);
-        int yi1 = (int) Math.round(y1);
-        int xci = (int) Math.round(curvaX);
-        int yci = (int) Math.round(curvaY);
-        int xi2 = (int) Math.round(x2);
-        int yi2 = (int) Math.round(y2);
-        System.out.println(escribeTabuladores(2) + "<path d='M" + xi1 + " " + yi1
-                            + " Q " + xci +" " + yci + " " + xi2 +" " + yi2
-                            + "' " + "marker-end='url(#endarrow)' "
-                            + "stroke='rgb(" + color + "," + color + "," + color + ")'"
-                            + " fill='none'/>");
-
-    }
-
-    /**
-    * Escribe en la salida estándar las etiquetas SVG correspondientes
-    * al final del archivo.
+    @Override public void dibujaCurva(double x1, double y1, double curvaX,
+                            double curvaY, double x2, double y2,
+                            int color) {
+        terminaAristas();
+        if (!compacto)
+            escribeTabuladores(2);
+        escribe("<path d='M");
+        escribe(x1);
+        escribe(' ');
+        escribe(y1);
+        escribe(compacto ? "Q" : " Q ");
+        escribe(curvaX);
+        escribe(' ');
+        escribe(curvaY);
+        escribe(' ');
+        escribe(x2);
+        escribe(' ');
+        escribe(y2);
+        escribe("' marker-end='url(#endarrow)' stroke='rgb(");
+        escribe(color);
+        escribe(',');
+        escribe(color);
+        escribe(',');
+        escribe(color);
+        escribe(compacto ? ")'/>" : ")' fill='none'/>\n");
+    }
+
+    /**
+    * Escribe las etiquetas SVG correspondientes al final del archivo.
     */
-    public static void escribePiecera() {
-        System.out.println(escribeTabuladores(2) + "</g>\n " + escribeTabuladores(1) + "</svg>");
+    @Override public void escribePiecera() {
+        terminaAristas();
+        if (compacto) {
+            escribe("</g></svg>\n");
+            return;
+        }
+        escribeTabuladores(2);
+        escribe("</g>\n ");
+        escribeTabuladores(1);
+        escribe("</svg>\n");
+    }
+
+    /* Agrega una arista a la trayectoria abierta, abriendo una nueva si no
+       hay ninguna, y la cierra si llega al tamaño del bloque. */
+    private void agregaArista(double xInicio, double yInicio,
+                              double xFinal, double yFinal) {
+        if (aristasPendientes == 0) {
+            if (!compacto)
+                escribeTabuladores(2);
+            escribe("<path d='");
+        }
+        escribe('M');
+        escribe(xInicio);
+        escribe(' ');
+        escribe(yInicio);
+        escribe('L');
+        escribe(xFinal);
+        escribe(' ');
+        escribe(yFinal);
+        if (++aristasPendientes == aristasPorBloque)
+            terminaAristas();
+    }
+
+    /* Cierra la trayectoria de aristas abierta, si la hay. */
+    private void terminaAristas() {
+        if (aristasPendientes == 0)
+            return;
+        escribe(compacto ? "' stroke='#000'/>"
+                         : "' stroke='#000' stroke-width='1' fill='none'/>\n");
+        aristasPendientes = 0;
+    }
+
+    /* Escribe la cabecera del documento en modo compacto. */
+    private void escribeCabeceraCompacta(double anchoSVG, double largoSVG,
+                                         boolean defineFlechas) {
+        escribe("<?xml version='1.0' encoding='UTF-8' ?>"
+                + "<svg xmlns='http://www.w3.org/2000/svg' width='");
+        escribe(anchoSVG);
+        escribe("' height='");
+        escribe(largoSVG);
+        escribe('\'');
+        escribeVentana();
+        escribe("><style>text{font-family:sans-serif;text-anchor:middle}"
+                + "line{stroke:#000;stroke-width:1}path{fill:none}"
+                + ".fw{fill:white}.fb{fill:black}.fr{fill:red}"
+                + ".sw{stroke:white}.sb{stroke:black}.sr{stroke:red}</style>");
+        if (defineFlechas)
+            escribe("<defs><marker id='startarrow' markerWidth='5' "
+                    + "markerHeight='6' refX='2' refY='3' orient='auto'>"
+                    + "<polygon points='9 0,9 6,0 2.8' fill='black'/></marker>"
+                    + "<marker id='endarrow' markerWidth='5' markerHeight='6' "
+                    + "refX='2' refY='1.7' orient='auto'>"
+                    + "<polygon points='0 0,5 1.5,0 3.2' fill='black'/>"
+                    + "</marker></defs>");
+        escribe("<g>");
+    }
+
+    /* Escribe el atributo viewBox si se definió una ventana. */
+    private void escribeVentana() {
+        if (ventana == null)
+            return;
+        escribe(" viewBox='");
+        escribe(ventana[0]);
+        escribe(' ');
+        escribe(ventana[1]);
+        escribe(' ');
+        escribe(ventana[2]);
+        escribe(' ');
+        escribe(ventana[3]);
+        escribe('\'');
+    }
+
+    /* Escribe los atributos de relleno y borde en modo compacto, como clases
+       CSS si los colores son de la paleta y en línea si no lo son. */
+    private void escribeEstilo(String colorFondo, String colorBorde) {
+        char fondo = clave(colorFondo);
+        char borde = (colorBorde == null) ? ' ' : clave(colorBorde);
+        if (fondo != 0 && borde != 0) {
+            escribe(" class='f");
+            escribe(fondo);
+            if (colorBorde != null) {
+                escribe(" s");
+                escribe(borde);
+            }
+            escribe('\'');
+            return;
+        }
+        escribe(" fill='");
+        escribe(colorFondo);
+        if (colorBorde != null) {
+            escribe("' stroke='");
+            escribe(colorBorde);
+        }
+        escribe('\'');
+    }
+
+    /* Regresa la clave de un color de la paleta, o 0 si no pertenece a ella. */
+    private static char clave(String color) {
+        switch (color) {
+            case "white":
+                return 'w';
+            case "black":
+                return 'b';
+            case "red":
+                return 'r';
+            default:
+                return 0;
+        }
     }
 
+    /**
+     * Vacía el búfer en la salida, escribiendo todos los bytes pendientes.
+     * @throws UncheckedIOException si ocurre un error al escribir.
+     */
+    public void vacia() {
+        if (posicion == 0)
+            return;
+        try {
+            if (canal != null) {
+                envoltura.limit(posicion).position(0);
+                while (envoltura.hasRemaining())
+                    canal.write(envoltura);
+                envoltura.clear();
+            } else {
+                flujo.write(buffer, 0, posicion);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        escritos += posicion;
+        posicion = 0;
+    }
+
+    /**
+     * Vacía el búfer y cierra la salida.
+     * @throws UncheckedIOException si ocurre un error al escribir o cerrar.
+     */
+    @Override public void cierra() {
+        vacia();
+        try {
+            if (canal != null)
+                canal.close();
+            else
+                flujo.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Regresa el número de bytes del documento generados hasta el momento.
+     * @return el número de bytes del documento generados hasta el momento.
+     */
+    public long getBytesEscritos() {
+        return escritos + posicion;
+    }
+
+    /* Garantiza que quepan n bytes más en el búfer. */
+    private void reserva(int n) {
+        if (posicion + n > buffer.length)
+            vacia();
+    }
+
+    /* Escribe la cantidad de tabuladores especificada. */
+    private void escribeTabuladores(int tabs) {
+        reserva(tabs * TABULADOR.length);
+        for (int i = 0; i < tabs; i++) {
+            System.arraycopy(TABULADOR, 0, buffer, posicion, TABULADOR.length);
+            posicion += TABULADOR.length;
+        }
+    }
+
+    /* Escribe un caracter ASCII. */
+    private void escribe(char c) {
+        reserva(1);
+        buffer[posicion++] = (byte) c;
+    }
+
+    /* Escribe una cadena; los caracteres ASCII se copian sin codificar. */
+    private void escribe(String s) {
+        int n = s.length();
+        for (int i = 0; i < n; i++)
+            if (s.charAt(i) >= 0x80) {
+                escribe(s.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        if (n > buffer.length) {
+            escribe(s.getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        reserva(n);
+        for (int i = 0; i < n; i++)
+            buffer[posicion++] = (byte) s.charAt(i);
+    }
+
+    /* Escribe una cadena escapando los caracteres especiales de XML. */
+    private void escapa(String s) {
+        int n = s.length();
+        int i = 0;
+        while (i < n && s.charAt(i) != '<' && s.charAt(i) != '>'
+               && s.charAt(i) != '&')
+            i++;
+        if (i == n) {
+            escribe(s);
+            return;
+        }
+        StringBuilder escapada = new StringBuilder(n + 8);
+        escapada.append(s, 0, i);
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '<')
+                escapada.append("&lt;");
+            else if (c == '>')
+                escapada.append("&gt;");
+            else if (c == '&')
+                escapada.append("&amp;");
+            else
+                escapada.append(c);
+        }
+        escribe(escapada.toString());
+    }
+
+    /* Escribe un arreglo de bytes. */
+    private void escribe(byte[] bytes) {
+        int i = 0;
+        while (i < bytes.length) {
+            if (posicion == buffer.length)
+                vacia();
+            int n = Math.min(bytes.length - i, buffer.length - posicion);
+            System.arraycopy(bytes, i, buffer, posicion, n);
+            posicion += n;
+            i += n;
+        }
+    }
+
+    /* Escribe una coordenada redondeada al entero más cercano. */
+    private void escribe(double d) {
+        escribe((int) Math.round(d));
+    }
+
+    /* Escribe los dígitos decimales de un entero, sin crear cadenas. */
+    private void escribe(int n) {
+        reserva(11);
+        if (n == Integer.MIN_VALUE) {
+            escribe("-2147483648");
+            return;
+        }
+        if (n < 0) {
+            buffer[posicion++] = '-';
+            n = -n;
+        }
+        int digitos = 1;
+        for (int m = n; m >= 10; m /= 10)
+            digitos++;
+        int i = posicion + digitos;
+        posicion = i;
+        do {
+            buffer[--i] = (byte) ('0' + n % 10);
+            n /= 10;
+        } while (n != 0);
+    }
 }
@@ -0,0 +1,180 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import mx.unam.ciencias.edd.Lista;
+
+/**
+ * <p> Clase para el modo servidor del graficador. </p>
+ *
+ * <p> El servidor escucha en un puerto de la interfaz local o en un socket
+ *  de dominio Unix, y atiende cada conexión en su propio hilo: lee la
+ *  entrada completa hasta que el cliente cierra su lado de escritura, y
+ *  responde con la imagen de cada documento de la entrada, una tras otra,
+ *  con las opciones con que se inició el servidor. Si un documento tiene
+ *  operaciones, se dibuja la estructura después de la última. Si la entrada
+ *  no es válida, la respuesta es una línea <tt>ERROR: </tt> seguida del
+ *  mensaje. </p>
+ *
+ * <p> Los hilos son virtuales si la máquina virtual los tiene (Java 21 en
+ *  adelante); si no, se usa un conjunto de hilos que crece según haga
+ *  falta. </p>
+ */
+public class Servidor {
+
+    /* El graficador con las opciones de las imágenes. */
+    private DSV dsv;
+
+    /* El ejecutor que atiende las conexiones. */
+    private ExecutorService ejecutor;
+
+    /**
+     * Construye un servidor que dibuja con el graficador recibido.
+     * @param dsv el graficador con las opciones de las imágenes.
+     */
+    public Servidor(DSV dsv) {
+        this.dsv = dsv;
+        ejecutor = creaEjecutor();
+    }
+
+    /**
+     * Escucha conexiones en la dirección recibida y las atiende, sin
+     * terminar nunca.
+     * @param direccion un número de puerto de la interfaz local, o la ruta
+     *        de un socket de dominio Unix.
+     * @throws ExcepcionDSV si no puede abrirse el servidor.
+     */
+    public void escucha(String direccion) {
+        try (ServerSocketChannel servidor = abre(direccion)) {
+            while (true) {
+                SocketChannel conexion = servidor.accept();
+                ejecutor.execute(() -> atiende(conexion));
+            }
+        } catch (IOException ioe) {
+            throw new ExcepcionDSV("No pudo abrirse el servidor.", ioe);
+        }
+    }
+
+    /* Abre el canal del servidor en la dirección recibida. */
+    private static ServerSocketChannel abre(String direccion)
+        throws IOException {
+        SocketAddress local;
+        ServerSocketChannel servidor;
+        if (esPuerto(direccion)) {
+            int puerto = Integer.parseInt(direccion);
+            if (puerto > 65535)
+                throw new ExcepcionDSV("El puerto debe estar entre 0 y 65535");
+            local = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                          puerto);
+            servidor = ServerSocketChannel.open();
+        } else {
+            local = UnixDomainSocketAddress.of(direccion);
+            servidor = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        }
+        servidor.bind(local);
+        return servidor;
+    }
+
+    /* Nos dice si la dirección es un número de puerto. */
+    private static boolean esPuerto(String direccion) {
+        if (direccion.isEmpty() || direccion.length() > 5)
+            return false;
+        for (int i = 0; i < direccion.length(); i++)
+            if (!Character.isDigit(direccion.charAt(i)))
+                return false;
+        return true;
+    }
+
+    /* Atiende una conexión: lee sus documentos y responde sus imágenes. Si
+       se miden estadísticas, las de la conexión se escriben en la salida de
+       error al terminar. */
+    private void atiende(SocketChannel conexion) {
+        DSV graficador = dsv.copiaConEstadisticas();
+        Estadisticas estadisticas = graficador.getEstadisticas();
+        try (SocketChannel canal = conexion) {
+            WritableByteChannel salida = new CanalAbierto(canal);
+            Lista<Documento> documentos;
+            Estadisticas.Medicion medicion = new Estadisticas.Medicion();
+            try {
+                documentos = LectorDocumentos.lee(Channels.newInputStream(canal));
+            } catch (ExcepcionDSV e) {
+                responde(salida, "ERROR: " + e.getMessage() + "\n");
+                return;
+            }
+            if (estadisticas != null)
+                estadisticas.lectura(null, medicion);
+            for (Documento documento : documentos) {
+                try {
+                    graficador.grafica(documento,
+                                       graficador.abreLienzo(salida, null));
+                } catch (ExcepcionDSV e) {
+                    responde(salida, "ERROR: " + e.getMessage() + "\n");
+                    return;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // El cliente cerró la conexión; no hay a quién responder.
+        } finally {
+            if (estadisticas != null)
+                System.err.println(estadisticas);
+        }
+    }
+
+    /* Escribe el mensaje en el canal. */
+    private static void responde(WritableByteChannel canal, String mensaje)
+        throws IOException {
+        ByteBuffer bytes =
+            ByteBuffer.wrap(mensaje.getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining())
+            canal.write(bytes);
+    }
+
+    /* Regresa un ejecutor de hilos virtuales si la máquina virtual los
+       tiene, o uno de hilos que crece según haga falta. */
+    private static ExecutorService creaEjecutor() {
+        try {
+            Method virtuales =
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtuales.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /* Clase interna privada para que los lienzos de cada documento puedan
+       cerrarse sin cerrar la conexión. */
+    private static class CanalAbierto implements WritableByteChannel {
+
+        /* El canal de la conexión. */
+        private WritableByteChannel canal;
+
+        /* Construye la envoltura del canal recibido. */
+        CanalAbierto(WritableByteChannel canal) {
+            this.canal = canal;
+        }
+
+        @Override public int write(ByteBuffer bytes) throws IOException {
+            return canal.write(bytes);
+        }
+
+        @Override public boolean isOpen() {
+            return canal.isOpen();
+        }
+
+        @Override public void close() {}
+    }
+}
@@ -0,0 +1,328 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import mx.unam.ciencias.edd.ArbolBinario;
+import mx.unam.ciencias.edd.ArregloEnteros;
+import mx.unam.ciencias.edd.Coleccion;
+import mx.unam.ciencias.edd.Grafica;
+import mx.unam.ciencias.edd.Indexable;
+import mx.unam.ciencias.edd.Lista;
+import mx.unam.ciencias.edd.MonticuloMinimo;
+
+/**
+ * <p> Clase para aplicar un {@link Guion} a una estructura viva. </p>
+ *
+ * <p> La estructura se construye una sola vez con los elementos iniciales,
+ *  y cada operación se aplica sobre ella con las operaciones de la
+ *  estructura misma (en árboles balanceados y montículos, en tiempo
+ *  logarítmico), en lugar de reconstruirla desde el principio para cada
+ *  imagen. La estructura puede graficarse después de cualquier paso. </p>
+ */
+public class Simulador {
+
+    /* La estructura que se simula. */
+    private Estructura estructura;
+
+    /* Los elementos de las estructuras lineales. */
+    private Lista<Integer> lista;
+
+    /* El árbol binario de los árboles. */
+    private ArbolBinario<Integer> arbol;
+
+    /* La gráfica de las gráficas. */
+    private Grafica<Integer> grafica;
+
+    /* El montículo de los montículos mínimos. */
+    private MonticuloMinimo<Indexable<Integer>> monticulo;
+
+    /* Los elementos del montículo por valor. */
+    private HashMap<Integer, Lista<Indexable<Integer>>> indexables;
+
+    /**
+     * Construye la estructura con los elementos iniciales recibidos.
+     * @param estructura la estructura a simular.
+     * @param elementos los elementos iniciales de la estructura.
+     * @throws IllegalArgumentException si los elementos no forman una
+     *         gráfica válida.
+     */
+    public Simulador(Estructura estructura, Coleccion<Integer> elementos) {
+        this.estructura = estructura;
+        Eventos.Construccion evento;
+        switch (estructura) {
+            case L:
+            case S:
+            case Q:
+                evento = Eventos.construccion();
+                lista = new Lista<>();
+                for (Integer elemento : elementos)
+                    lista.agregaFinal(elemento);
+                if (evento != null)
+                    evento.termina(estructura, elementos.getElementos());
+                break;
+            case G:
+                grafica = GraficadorGrafica.pueblaGrafica(elementos);
+                break;
+            case MH:
+                evento = Eventos.construccion();
+                indexables = new HashMap<>();
+                Lista<Indexable<Integer>> l = new Lista<>();
+                for (Integer elemento : elementos)
+                    l.agregaFinal(nuevoIndexable(elemento));
+                monticulo = new MonticuloMinimo<>(l);
+                if (evento != null)
+                    evento.termina(estructura, elementos.getElementos());
+                break;
+            default:
+                arbol = GraficadorArbol.construyeArbol(estructura, elementos);
+        }
+    }
+
+    /**
+     * Construye el simulador de un árbol ya construido, como los que
+     * restaura una bitácora {@link DSVE}.
+     * @param estructura la estructura del árbol.
+     * @param arbol el árbol.
+     */
+    Simulador(Estructura estructura, ArbolBinario<Integer> arbol) {
+        this.estructura = estructura;
+        this.arbol = arbol;
+    }
+
+    /**
+     * Construye el simulador de un montículo mínimo ya construido, como los
+     * que restaura una bitácora {@link DSVE}.
+     * @param monticulo el montículo.
+     */
+    Simulador(MonticuloMinimo<Indexable<Integer>> monticulo) {
+        estructura = Estructura.MH;
+        this.monticulo = monticulo;
+        indexables = new HashMap<>();
+        for (Indexable<Integer> indexable : monticulo)
+            agregaIndexable((int) indexable.getValor(), indexable);
+    }
+
+    /**
+     * Aplica a la estructura la operación del paso recibido del guion.
+     * @param guion el guion.
+     * @param paso el índice del paso, empezando en 0.
+     * @throws IllegalArgumentException si la operación no puede aplicarse
+     *         a la estructura en su estado actual.
+     */
+    public void aplica(Guion guion, int paso) {
+        int operacion = guion.getOperacion(paso);
+        int a = guion.getPrimero(paso);
+        int b = guion.getSegundo(paso);
+        switch (estructura) {
+            case L:
+            case S:
+            case Q:
+                if (operacion == Guion.INSERTA) {
+                    lista.agregaFinal(a);
+                } else {
+                    verificaElemento(lista.contiene(a), a);
+                    lista.elimina(a);
+                }
+                break;
+            case G:
+                aplicaGrafica(operacion, a, b);
+                break;
+            case MH:
+                aplicaMonticulo(operacion, a, b);
+                break;
+            default:
+                if (operacion == Guion.INSERTA) {
+                    arbol.agrega(a);
+                } else {
+                    verificaElemento(arbol.contiene(a), a);
+                    arbol.elimina(a);
+                }
+        }
+    }
+
+    /**
+     * Agrega a la estructura los elementos del arreglo a partir del índice
+     * recibido, como si hubieran estado al final de los elementos iniciales:
+     * la estructura queda igual que si se construyera con todo el arreglo.
+     * Los montículos se construyen con todos sus elementos a la vez, por lo
+     * que no pueden extenderse así.
+     * @param enteros los elementos iniciales, con los nuevos al final.
+     * @param desde el índice del primer elemento nuevo.
+     * @return <tt>true</tt> si se agregaron los elementos, <tt>false</tt> si
+     *         la estructura debe construirse de nuevo.
+     * @throws IllegalArgumentException si los elementos no forman una
+     *         gráfica válida; la estructura queda a medio extender.
+     */
+    public boolean extiende(ArregloEnteros enteros, int desde) {
+        int n = enteros.getElementos();
+        switch (estructura) {
+            case L:
+            case S:
+            case Q:
+                for (int i = desde; i < n; i++)
+                    lista.agregaFinal(enteros.get(i));
+                return true;
+            case G:
+                if (n % 2 != 0 || desde % 2 != 0)
+                    throw new IllegalArgumentException(
+                        "El número de elementos en el archivo debe ser par.");
+                for (int i = desde; i < n; i += 2)
+                    GraficadorGrafica.agregaPar(grafica, enteros.get(i),
+                                                enteros.get(i + 1));
+                return true;
+            case MH:
+                return false;
+            default:
+                for (int i = desde; i < n; i++)
+                    arbol.agrega(enteros.get(i));
+                return true;
+        }
+    }
+
+    /**
+     * Elimina de la estructura sus últimos elementos iniciales, si queda
+     * igual que si se construyera sin ellos. Sólo las estructuras lineales
+     * pueden recortarse así; en árboles, gráficas y montículos, eliminar un
+     * elemento puede cambiar la forma del resto.
+     * @param n el número de elementos a eliminar del final.
+     * @return <tt>true</tt> si se eliminaron los elementos, <tt>false</tt> si
+     *         la estructura debe construirse de nuevo.
+     */
+    public boolean recorta(int n) {
+        if (estructura != Estructura.L && estructura != Estructura.S
+            && estructura != Estructura.Q)
+            return false;
+        for (int i = 0; i < n; i++)
+            lista.eliminaUltimo();
+        return true;
+    }
+
+    /**
+     * Regresa la estructura que se simula.
+     * @return la estructura que se simula.
+     */
+    Estructura getEstructura() {
+        return estructura;
+    }
+
+    /**
+     * Regresa el árbol vivo de los árboles.
+     * @return el árbol, o <tt>null</tt> si la estructura no es un árbol.
+     */
+    ArbolBinario<Integer> getArbol() {
+        return arbol;
+    }
+
+    /**
+     * Regresa el montículo vivo de los montículos mínimos.
+     * @return el montículo, o <tt>null</tt> si la estructura no es un
+     *         montículo mínimo.
+     */
+    MonticuloMinimo<Indexable<Integer>> getMonticulo() {
+        return monticulo;
+    }
+
+    /**
+     * Grafica la estructura en su estado actual.
+     * @param lienzo el lienzo donde se grafica la estructura.
+     * @param presupuesto el número máximo de vértices a dibujar de árboles y
+     *        gráficas, o 0 para dibujarlos completos.
+     */
+    public void grafica(Lienzo lienzo, int presupuesto) {
+        switch (estructura) {
+            case L:
+            case S:
+            case Q:
+                new GraficadorEstructuraLineal(estructura, lista, lienzo);
+                break;
+            case G:
+                new GraficadorGrafica(grafica, lienzo, presupuesto);
+                break;
+            case MH:
+                new GraficadorArbol(estructura,
+                                    GraficadorArbol.arbolDeMonticulo(monticulo),
+                                    lienzo, presupuesto);
+                break;
+            default:
+                new GraficadorArbol(estructura, arbol, lienzo, presupuesto);
+        }
+    }
+
+    /* Aplica una operación a la gráfica. */
+    private void aplicaGrafica(int operacion, int a, int b) {
+        try {
+            switch (operacion) {
+                case Guion.INSERTA:
+                    grafica.agrega(a);
+                    break;
+                case Guion.ELIMINA:
+                    grafica.elimina(a);
+                    break;
+                case Guion.CONECTA:
+                    grafica.conecta(a, b);
+                    break;
+                default:
+                    grafica.desconecta(a, b);
+            }
+        } catch (NoSuchElementException nsee) {
+            throw new IllegalArgumentException(
+                "La gráfica no tiene el vértice " + (grafica.contiene(a) ? b : a));
+        } catch (IllegalArgumentException iae) {
+            if (operacion == Guion.INSERTA)
+                throw new IllegalArgumentException(
+                    "La gráfica ya tiene el vértice " + a);
+            if (operacion == Guion.CONECTA)
+                throw new IllegalArgumentException(
+                    String.format("No se pueden conectar %d y %d", a, b));
+            throw new IllegalArgumentException(
+                String.format("Los vértices %d y %d no están conectados", a, b));
+        }
+    }
+
+    /* Aplica una operación al montículo. */
+    private void aplicaMonticulo(int operacion, int a, int b) {
+        if (operacion == Guion.INSERTA) {
+            monticulo.agrega(nuevoIndexable(a));
+            return;
+        }
+        Lista<Indexable<Integer>> iguales = indexables.get(a);
+        verificaElemento(iguales != null, a);
+        if (operacion == Guion.DECREMENTA && b > a)
+            throw new IllegalArgumentException(
+                String.format("El valor de %d no puede aumentar a %d", a, b));
+        Indexable<Integer> indexable = iguales.eliminaUltimo();
+        if (iguales.esVacia())
+            indexables.remove(a);
+        if (operacion == Guion.ELIMINA) {
+            monticulo.elimina(indexable);
+            return;
+        }
+        indexable.setValor(b);
+        agregaIndexable(b, indexable);
+        monticulo.reordena(indexable);
+    }
+
+    /* Crea el elemento del montículo para el valor recibido. */
+    private Indexable<Integer> nuevoIndexable(int valor) {
+        Indexable<Integer> indexable = new Indexable<>(valor, valor);
+        agregaIndexable(valor, indexable);
+        return indexable;
+    }
+
+    /* Registra el elemento del montículo con el valor recibido. */
+    private void agregaIndexable(int valor, Indexable<Integer> indexable) {
+        Lista<Indexable<Integer>> iguales = indexables.get(valor);
+        if (iguales == null) {
+            iguales = new Lista<>();
+            indexables.put(valor, iguales);
+        }
+        iguales.agregaFinal(indexable);
+    }
+
+    /* Verifica que el elemento esté en la estructura. */
+    private static void verificaElemento(boolean contiene, int elemento) {
+        if (!contiene)
+            throw new IllegalArgumentException(
+                "La estructura no tiene el elemento " + elemento);
+    }
+}
@@ -0,0 +1,536 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import mx.unam.ciencias.edd.ArregloEnteros;
+
+/**
+ * <p> Clase para tokenizadores de archivos de entrada. </p>
+ *
+ * <p> Un tokenizador lee los bytes de la entrada con una máquina de estados:
+ *  los espacios separan palabras, un <tt>#</tt> inicia un comentario que
+ *  termina con el fin de línea, la primera palabra es el nombre de la
+ *  estructura, y las demás se interpretan directamente de sus dígitos como
+ *  enteros, que se agregan a un {@link ArregloEnteros} sin construir
+ *  cadenas. Los bytes pueden llegar en varios búferes; una palabra puede
+ *  quedar partida entre dos de ellos. </p>
+ *
+ * <p> Después del nombre también puede haber operaciones: las letras
+ *  <tt>I</tt>, <tt>D</tt>, <tt>K</tt>, <tt>C</tt> y <tt>X</tt>. Los enteros
+ *  no se separan por operación; de cada operación se guarda su letra y el
+ *  número de enteros leídos antes de ella, y los enteros que le siguen son
+ *  sus argumentos (ver {@link Guion}). Otro nombre de estructura empieza
+ *  una sección nueva de la entrada, de la que se guarda el nombre y el
+ *  número de enteros y de operaciones leídos antes de ella. </p>
+ *
+ * <p> Los archivos se leen mapeándolos a memoria por ventanas, por lo que el
+ *  tiempo de lectura depende sólo de lo que tarde el sistema en entregar
+ *  los bytes. Los archivos grandes se parten en trozos que empiezan en un
+ *  espacio, y los trozos se procesan en paralelo y se concatenan en
+ *  orden. </p>
+ */
+public class Tokenizador {
+
+    /** Mensaje de error para palabras que no son enteros. */
+    public static final String ERROR_ENTERO =
+        "Solo se permiten números enteros positivos como elementos";
+
+    /* Tamaño de las ventanas con que se mapean los archivos. */
+    private static final long TAMAÑO_VENTANA = 1L << 30;
+
+    /* Tamaño del búfer para entradas que no son archivos. */
+    private static final int TAMAÑO_BUFFER = 1 << 16;
+
+    /* Tamaño a partir del cuál los archivos se procesan en paralelo. */
+    private static final long UMBRAL_PARALELO = 1L << 26;
+
+    /* Tamaño mínimo de los trozos que se procesan en paralelo. */
+    private static final long TAMAÑO_TROZO = 1L << 23;
+
+    /* Longitud máxima del nombre de la estructura. */
+    private static final int LONGITUD_ESTRUCTURA = 16;
+
+    /* Estado entre palabras. */
+    private static final int ESPACIO = 0;
+
+    /* Estado dentro de un comentario. */
+    private static final int COMENTARIO = 1;
+
+    /* Estado dentro de una palabra que no es un entero. */
+    private static final int NOMBRE = 2;
+
+    /* Estado dentro de un entero. */
+    private static final int ENTERO = 3;
+
+    /* El arreglo donde se agregan los enteros. */
+    private ArregloEnteros enteros;
+
+    /* Las operaciones: por cada una, su letra y el número de enteros leídos
+       antes de ella. */
+    private ArregloEnteros operaciones;
+
+    /* Los nombres de las estructuras de las secciones después de la
+       primera. */
+    private List<String> secciones;
+
+    /* Por cada sección después de la primera, el número de enteros y de
+       operaciones leídos antes de ella. */
+    private ArregloEnteros inicios;
+
+    /* El estado de la máquina. */
+    private int estado;
+
+    /* El nombre de la estructura, o null si no se ha leído. */
+    private String estructura;
+
+    /* Los bytes leídos de la palabra actual. */
+    private StringBuilder nombre;
+
+    /* El valor absoluto del entero que se está leyendo. */
+    private long valor;
+
+    /* Si el entero que se está leyendo es negativo. */
+    private boolean negativo;
+
+    /* Número de dígitos del entero que se está leyendo. */
+    private int digitos;
+
+    /* Si la palabra actual dejó de ser un entero válido. */
+    private boolean invalido;
+
+    /* Búfer auxiliar para copiar los bytes de la entrada. */
+    private byte[] bytes;
+
+    /**
+     * Construye un tokenizador que agrega los enteros al arreglo recibido.
+     * @param enteros el arreglo donde se agregan los enteros.
+     */
+    public Tokenizador(ArregloEnteros enteros) {
+        this.enteros = enteros;
+        operaciones = new ArregloEnteros();
+        secciones = new ArrayList<>();
+        inicios = new ArregloEnteros();
+        nombre = new StringBuilder();
+        bytes = new byte[TAMAÑO_BUFFER];
+    }
+
+    /**
+     * Procesa los bytes que quedan en el búfer recibido.
+     * @param entrada el búfer con los bytes a procesar.
+     * @throws IllegalArgumentException si una palabra después del nombre de
+     *         la estructura no es un entero.
+     */
+    public void procesa(ByteBuffer entrada) {
+        while (entrada.hasRemaining()) {
+            int n = Math.min(bytes.length, entrada.remaining());
+            entrada.get(bytes, 0, n);
+            procesa(bytes, 0, n);
+        }
+    }
+
+    /**
+     * Procesa los bytes del arreglo recibido entre los índices dados.
+     * @param b el arreglo de bytes.
+     * @param inicio el índice del primer byte a procesar.
+     * @param fin el índice siguiente al último byte a procesar.
+     * @throws IllegalArgumentException si una palabra después del nombre de
+     *         la estructura no es un entero.
+     */
+    public void procesa(byte[] b, int inicio, int fin) {
+        int e = estado;
+        for (int i = inicio; i < fin; i++) {
+            byte c = b[i];
+            switch (e) {
+                case COMENTARIO:
+                    if (c == '\n' || c == '\r')
+                        e = ESPACIO;
+                    break;
+                case ENTERO:
+                    if (c >= '0' && c <= '9') {
+                        if (++digitos > 10)
+                            invalido = true;
+                        else
+                            valor = valor * 10 + (c - '0');
+                        break;
+                    }
+                    if (esEspacio(c) || c == '#') {
+                        terminaEntero();
+                        e = (c == '#') ? COMENTARIO : ESPACIO;
+                    } else {
+                        invalido = true;
+                    }
+                    break;
+                case NOMBRE:
+                    if (esEspacio(c) || c == '#') {
+                        terminaNombre();
+                        e = (c == '#') ? COMENTARIO : ESPACIO;
+                    } else if (nombre.length() < LONGITUD_ESTRUCTURA) {
+                        nombre.append((char) (c & 0xff));
+                    }
+                    break;
+                default:
+                    if (esEspacio(c))
+                        break;
+                    if (c == '#') {
+                        e = COMENTARIO;
+                    } else if (estructura == null
+                               || (c != '-' && c != '+'
+                                   && (c < '0' || c > '9'))) {
+                        nombre.setLength(0);
+                        nombre.append((char) (c & 0xff));
+                        e = NOMBRE;
+                    } else {
+                        e = ENTERO;
+                        valor = digitos = 0;
+                        negativo = invalido = false;
+                        if (c == '-' || c == '+')
+                            negativo = c == '-';
+                        else {
+                            valor = c - '0';
+                            digitos = 1;
+                        }
+                    }
+            }
+        }
+        estado = e;
+    }
+
+    /**
+     * Termina de procesar la entrada, cerrando la última palabra.
+     * @throws IllegalArgumentException si la última palabra no es un entero.
+     */
+    public void termina() {
+        if (estado == ENTERO)
+            terminaEntero();
+        else if (estado == NOMBRE)
+            terminaNombre();
+        estado = ESPACIO;
+    }
+
+    /**
+     * Regresa el nombre de la estructura: la primera palabra de la entrada.
+     * @return el nombre de la estructura, o <tt>null</tt> si la entrada no
+     *         tiene palabras.
+     */
+    public String getEstructura() {
+        return estructura;
+    }
+
+    /**
+     * Regresa los nombres de las estructuras de las secciones que siguen a
+     * la primera.
+     * @return los nombres de las estructuras de las demás secciones.
+     */
+    public List<String> getSecciones() {
+        return secciones;
+    }
+
+    /**
+     * Regresa dónde empiezan las secciones que siguen a la primera: por cada
+     * una, dos enteros consecutivos con el número de enteros y el número de
+     * enteros de {@link #getOperaciones} leídos antes de ella.
+     * @return dónde empiezan las demás secciones.
+     */
+    public ArregloEnteros getInicios() {
+        return inicios;
+    }
+
+    /**
+     * Regresa las operaciones leídas: por cada una, dos enteros consecutivos
+     * con su letra y con el número de enteros leídos antes de ella.
+     * @return las operaciones leídas.
+     */
+    public ArregloEnteros getOperaciones() {
+        return operaciones;
+    }
+
+    /**
+     * Lee y procesa completo el archivo del canal recibido, mapeándolo a
+     * memoria por ventanas.
+     * @param canal el canal del archivo.
+     * @throws IOException si ocurre un error al leer el archivo.
+     * @throws IllegalArgumentException si una palabra después del nombre de
+     *         la estructura no es un entero.
+     */
+    public void leeMapeado(FileChannel canal) throws IOException {
+        long tamaño = canal.size();
+        for (long posicion = 0; posicion < tamaño; posicion += TAMAÑO_VENTANA) {
+            long n = Math.min(TAMAÑO_VENTANA, tamaño - posicion);
+            MappedByteBuffer ventana =
+                canal.map(FileChannel.MapMode.READ_ONLY, posicion, n);
+            procesa(ventana);
+        }
+        termina();
+    }
+
+    /**
+     * Lee y procesa completo el archivo del canal recibido. Si el archivo es
+     * grande y hay varios procesadores, lo parte en trozos que se procesan
+     * en paralelo en el {@link ForkJoinPool} común; si no, lo lee como
+     * {@link #leeMapeado}.
+     * @param canal el canal del archivo.
+     * @throws IOException si ocurre un error al leer el archivo.
+     * @throws IllegalArgumentException si una palabra después del nombre de
+     *         la estructura no es un entero.
+     */
+    public void leeParalelo(FileChannel canal) throws IOException {
+        long tamaño = canal.size();
+        int hilos = ForkJoinPool.getCommonPoolParallelism();
+        if (tamaño < UMBRAL_PARALELO || hilos < 2) {
+            leeMapeado(canal);
+            return;
+        }
+        long inicio = finDelNombre(canal, tamaño);
+        long lado = Math.min(TAMAÑO_VENTANA,
+                             Math.max(TAMAÑO_TROZO, tamaño / (hilos * 4L)));
+        List<Trozo> trozos = new ArrayList<>();
+        long corte = 0;
+        while (corte < tamaño) {
+            long siguiente = (corte + lado >= tamaño) ? tamaño
+                : buscaEspacio(canal, Math.max(inicio, corte + lado), tamaño);
+            trozos.add(new Trozo(canal, corte, siguiente));
+            corte = siguiente;
+        }
+        List<Callable<Void>> exploraciones = new ArrayList<>();
+        for (Trozo trozo : trozos)
+            exploraciones.add(() -> { trozo.explora(); return null; });
+        espera(ForkJoinPool.commonPool().invokeAll(exploraciones));
+        for (int i = 1; i < trozos.size(); i++) {
+            Trozo anterior = trozos.get(i - 1);
+            trozos.get(i).enComentario = anterior.comentarioAbierto
+                || (!anterior.tieneSalto && anterior.enComentario);
+        }
+        List<Callable<Void>> procesos = new ArrayList<>();
+        for (Trozo trozo : trozos)
+            procesos.add(() -> { trozo.procesa(); return null; });
+        espera(ForkJoinPool.commonPool().invokeAll(procesos));
+        estructura = trozos.get(0).tokenizador.estructura;
+        for (Trozo trozo : trozos)
+            agrega(trozo.tokenizador);
+    }
+
+    /**
+     * Lee y procesa completa la entrada del canal recibido.
+     * @param canal el canal de la entrada.
+     * @throws IOException si ocurre un error al leer la entrada.
+     * @throws IllegalArgumentException si una palabra después del nombre de
+     *         la estructura no es un entero.
+     */
+    public void lee(ReadableByteChannel canal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[TAMAÑO_BUFFER]);
+        while (canal.read(buffer) != -1) {
+            procesa(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+        termina();
+    }
+
+    /* Agrega lo que leyó el tokenizador de un trozo, recorriendo sus
+       posiciones por los enteros y las operaciones que ya se leyeron. */
+    private void agrega(Tokenizador trozo) {
+        int n = enteros.getElementos(), m = operaciones.getElementos();
+        for (int i = 0; i < trozo.operaciones.getElementos(); i += 2) {
+            operaciones.agrega(trozo.operaciones.get(i));
+            operaciones.agrega(trozo.operaciones.get(i + 1) + n);
+        }
+        for (int i = 0; i < trozo.inicios.getElementos(); i += 2) {
+            inicios.agrega(trozo.inicios.get(i) + n);
+            inicios.agrega(trozo.inicios.get(i + 1) + m);
+        }
+        secciones.addAll(trozo.secciones);
+        enteros.concatena(trozo.enteros);
+    }
+
+    /* Regresa la posición siguiente al nombre de la estructura, o el tamaño
+       del archivo si no tiene nombre. */
+    private static long finDelNombre(FileChannel canal, long tamaño)
+        throws IOException {
+        Tokenizador prefijo = new Tokenizador(new ArregloEnteros());
+        ByteBuffer buffer = ByteBuffer.allocate(TAMAÑO_BUFFER);
+        long posicion = 0;
+        while (posicion < tamaño) {
+            buffer.clear();
+            int n = canal.read(buffer, posicion);
+            if (n <= 0)
+                break;
+            byte[] b = buffer.array();
+            for (int i = 0; i < n; i++) {
+                prefijo.procesa(b, i, i + 1);
+                if (prefijo.estructura != null)
+                    return posicion + i + 1;
+            }
+            posicion += n;
+        }
+        return tamaño;
+    }
+
+    /* Regresa la posición del primer espacio a partir de la recibida, o el
+       tamaño del archivo si no hay. */
+    private static long buscaEspacio(FileChannel canal, long posicion,
+                                     long tamaño) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TAMAÑO_BUFFER);
+        while (posicion < tamaño) {
+            buffer.clear();
+            int n = canal.read(buffer, posicion);
+            if (n <= 0)
+                break;
+            byte[] b = buffer.array();
+            for (int i = 0; i < n; i++)
+                if (esEspacio(b[i]))
+                    return posicion + i;
+            posicion += n;
+        }
+        return tamaño;
+    }
+
+    /* Espera a que terminen las tareas, y lanza la excepción de la primera
+       que haya fallado. */
+    private static void espera(List<Future<Void>> tareas) throws IOException {
+        for (Future<Void> tarea : tareas) {
+            try {
+                tarea.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ie);
+            } catch (ExecutionException ee) {
+                Throwable causa = ee.getCause();
+                if (causa instanceof UncheckedIOException)
+                    throw ((UncheckedIOException) causa).getCause();
+                if (causa instanceof RuntimeException)
+                    throw (RuntimeException) causa;
+                if (causa instanceof Error)
+                    throw (Error) causa;
+                throw new IOException(causa);
+            }
+        }
+    }
+
+    /* Agrega el entero leído, si es válido. */
+    private void terminaEntero() {
+        long v = negativo ? -valor : valor;
+        if (invalido || digitos == 0
+            || v < Integer.MIN_VALUE || v > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(ERROR_ENTERO);
+        enteros.agrega((int) v);
+    }
+
+    /* Guarda el nombre de la estructura si es la primera palabra; si no, la
+       palabra debe ser una operación o el nombre de la estructura de una
+       sección nueva. */
+    private void terminaNombre() {
+        if (estructura == null) {
+            estructura = nombre.toString();
+        } else if (nombre.length() == 1 && esOperacion(nombre.charAt(0))) {
+            operaciones.agrega(nombre.charAt(0));
+            operaciones.agrega(enteros.getElementos());
+        } else if (esEstructura(nombre.toString())) {
+            secciones.add(nombre.toString());
+            inicios.agrega(enteros.getElementos());
+            inicios.agrega(operaciones.getElementos());
+        } else {
+            throw new IllegalArgumentException(ERROR_ENTERO);
+        }
+    }
+
+    /* Nos dice si la palabra es el nombre de una estructura. */
+    private static boolean esEstructura(String palabra) {
+        for (Estructura e : Estructura.values())
+            if (e.name().equals(palabra))
+                return true;
+        return false;
+    }
+
+    /* Nos dice si el byte es la letra de una operación. */
+    private static boolean esOperacion(char c) {
+        return c == Guion.INSERTA || c == Guion.ELIMINA
+            || c == Guion.DECREMENTA || c == Guion.CONECTA
+            || c == Guion.DESCONECTA;
+    }
+
+    /* Nos dice si el byte es un espacio, como los de la clase \s. */
+    private static boolean esEspacio(byte c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r'
+            || c == '\f' || c == 0x0b;
+    }
+
+    /* Clase interna privada para los trozos de un archivo que se procesan
+       en paralelo. Cada trozo empieza en un espacio, por lo que ninguna
+       palabra queda partida; sólo un comentario puede continuar del trozo
+       anterior. */
+    private static class Trozo {
+
+        /* El canal del archivo. */
+        private FileChannel canal;
+
+        /* La posición del primer byte del trozo. */
+        private long inicio;
+
+        /* La posición siguiente al último byte del trozo. */
+        private long fin;
+
+        /* Los bytes del trozo, mapeados a memoria. */
+        private MappedByteBuffer ventana;
+
+        /* Si el trozo tiene algún fin de línea. */
+        private boolean tieneSalto;
+
+        /* Si después del último fin de línea del trozo hay un #. */
+        private boolean comentarioAbierto;
+
+        /* Si el trozo empieza dentro de un comentario. */
+        private boolean enComentario;
+
+        /* El tokenizador del trozo. */
+        private Tokenizador tokenizador;
+
+        /* Construye el trozo entre las posiciones recibidas. */
+        Trozo(FileChannel canal, long inicio, long fin) {
+            this.canal = canal;
+            this.inicio = inicio;
+            this.fin = fin;
+        }
+
+        /* Mapea el trozo y busca, desde el final, su último fin de línea y
+           si después de él empieza un comentario. */
+        void explora() {
+            try {
+                ventana = canal.map(FileChannel.MapMode.READ_ONLY,
+                                    inicio, fin - inicio);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+            for (int i = ventana.limit() - 1; i >= 0; i--) {
+                byte c = ventana.get(i);
+                if (c == '\n' || c == '\r') {
+                    tieneSalto = true;
+                    return;
+                }
+                if (c == '#')
+                    comentarioAbierto = true;
+            }
+        }
+
+        /* Procesa el trozo con un tokenizador propio; salvo en el primer
+           trozo, el tokenizador ya conoce el nombre de la estructura. */
+        void procesa() {
+            tokenizador = new Tokenizador(new ArregloEnteros(
+                (int) Math.min(Integer.MAX_VALUE - 8, (fin - inicio) / 8)));
+            if (inicio > 0)
+                tokenizador.estructura = "";
+            if (enComentario)
+                tokenizador.estado = COMENTARIO;
+            tokenizador.procesa(ventana.duplicate());
+            tokenizador.termina();
+        }
+    }
+}
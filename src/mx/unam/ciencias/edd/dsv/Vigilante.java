@@ -0,0 +1,201 @@
+package mx.unam.ciencias.edd.dsv;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import mx.unam.ciencias.edd.ArregloEnteros;
+import mx.unam.ciencias.edd.Lista;
+
+/**
+ * <p> Clase para vigilar un archivo de entrada y graficarlo cada vez que
+ *  cambia. </p>
+ *
+ * <p> El vigilante guarda la estructura viva en un {@link Simulador} y los
+ *  enteros de la última lectura. Cuando el archivo cambia, compara sus
+ *  enteros con los anteriores: si sólo se agregaron elementos al final, se
+ *  agregan a la estructura viva, y si sólo se quitaron del final de una
+ *  estructura lineal, se eliminan de ella; en otro caso, o en montículos,
+ *  la estructura se construye de nuevo. En cualquier caso la imagen es la
+ *  misma que al graficar el archivo desde cero. </p>
+ *
+ * <p> Los errores de una lectura se reportan en la salida de error sin
+ *  dejar de vigilar el archivo. </p>
+ */
+public class Vigilante {
+
+    /* Milisegundos sin cambios que se esperan antes de leer el archivo. */
+    private static final long ESPERA = 50;
+
+    /* El graficador con las opciones de las imágenes. */
+    private DSV dsv;
+
+    /* El número máximo de vértices a dibujar. */
+    private int presupuesto;
+
+    /* La estructura viva, o null si debe construirse de nuevo. */
+    private Simulador simulador;
+
+    /* La estructura del archivo en la última lectura. */
+    private Estructura estructura;
+
+    /* Los enteros del archivo en la última lectura. */
+    private ArregloEnteros enteros;
+
+    /**
+     * Construye un vigilante que grafica con el graficador recibido.
+     * @param dsv el graficador con las opciones y salidas de las imágenes.
+     * @param presupuesto el número máximo de vértices a dibujar de árboles y
+     *        gráficas, o 0 para dibujarlos completos.
+     */
+    public Vigilante(DSV dsv, int presupuesto) {
+        this.dsv = dsv;
+        this.presupuesto = presupuesto;
+    }
+
+    /**
+     * Grafica el archivo recibido, y lo vuelve a graficar cada vez que
+     * cambia, sin terminar nunca.
+     * @param entrada el archivo a vigilar.
+     * @throws ExcepcionDSV si el directorio del archivo no puede vigilarse.
+     */
+    public void vigila(String entrada) {
+        Path archivo = Paths.get(entrada).toAbsolutePath();
+        try (WatchService servicio = FileSystems.getDefault().newWatchService()) {
+            archivo.getParent().register(servicio,
+                                         StandardWatchEventKinds.ENTRY_CREATE,
+                                         StandardWatchEventKinds.ENTRY_MODIFY);
+            actualiza(archivo);
+            while (true) {
+                WatchKey llave = servicio.take();
+                boolean cambio = false;
+                while (llave != null) {
+                    cambio |= cambioArchivo(llave, archivo);
+                    if (!llave.reset())
+                        throw new ExcepcionDSV("Ya no puede vigilarse el directorio.");
+                    llave = servicio.poll(ESPERA, TimeUnit.MILLISECONDS);
+                }
+                if (cambio)
+                    actualiza(archivo);
+            }
+        } catch (IOException ioe) {
+            throw new ExcepcionDSV("No puede vigilarse el archivo.", ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Nos dice si los eventos de la llave son del archivo vigilado.
+     * @param llave la llave con los eventos.
+     * @param archivo el archivo vigilado.
+     * @return <tt>true</tt> si algún evento es del archivo, o si se perdieron
+     *         eventos; <tt>false</tt> en otro caso.
+     */
+    private static boolean cambioArchivo(WatchKey llave, Path archivo) {
+        boolean cambio = false;
+        for (WatchEvent<?> evento : llave.pollEvents())
+            if (evento.kind() == StandardWatchEventKinds.OVERFLOW
+                || archivo.getFileName().equals(evento.context()))
+                cambio = true;
+        return cambio;
+    }
+
+    /**
+     * Lee el archivo, actualiza la estructura viva y la grafica. Si el
+     * archivo no cambió desde la última lectura, no se grafica.
+     * @param archivo el archivo vigilado.
+     */
+    private void actualiza(Path archivo) {
+        try {
+            Lista<Documento> documentos = LectorDocumentos.lee(archivo);
+            if (documentos.getLongitud() > 1)
+                throw new ExcepcionDSV("El archivo vigilado debe tener una sola estructura");
+            Documento documento = documentos.getPrimero();
+            if (documento.getGuion().getPasos() > 0)
+                throw new ExcepcionDSV("El archivo vigilado no puede tener operaciones");
+            if (simulador != null && documento.getEstructura() == estructura
+                && iguales(enteros, documento.getEnteros()))
+                return;
+            actualiza(documento);
+            dsv.grafica(dsv.abreSalidas(null),
+                        lienzo -> simulador.grafica(lienzo, presupuesto));
+        } catch (IOException ioe) {
+            System.err.println("Ocurrió un error al leer el archivo");
+        } catch (ExcepcionDSV e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Actualiza la estructura viva con los elementos del documento,
+     * aplicando sólo los cambios cuando es posible.
+     * @param documento el documento leído.
+     */
+    private void actualiza(Documento documento) {
+        ArregloEnteros nuevos = documento.getEnteros();
+        Simulador anterior = simulador;
+        simulador = null;
+        try {
+            if (anterior == null || documento.getEstructura() != estructura
+                || !aplicaCambios(anterior, enteros, nuevos))
+                anterior = new Simulador(documento.getEstructura(), nuevos);
+        } catch (IllegalArgumentException iae) {
+            throw new ExcepcionDSV(iae.getMessage(), iae);
+        }
+        simulador = anterior;
+        estructura = documento.getEstructura();
+        enteros = nuevos;
+    }
+
+    /**
+     * Aplica a la estructura viva los elementos agregados o quitados del
+     * final de los enteros.
+     * @param simulador la estructura viva.
+     * @param anteriores los enteros de la última lectura.
+     * @param nuevos los enteros de la lectura actual.
+     * @return <tt>true</tt> si se aplicaron los cambios, <tt>false</tt> si la
+     *         estructura debe construirse de nuevo.
+     */
+    private static boolean aplicaCambios(Simulador simulador,
+                                         ArregloEnteros anteriores,
+                                         ArregloEnteros nuevos) {
+        int comun = prefijoComun(anteriores, nuevos);
+        if (comun == anteriores.getElementos())
+            return simulador.extiende(nuevos, comun);
+        if (comun == nuevos.getElementos())
+            return simulador.recorta(anteriores.getElementos() - comun);
+        return false;
+    }
+
+    /**
+     * Regresa la longitud del prefijo común de dos arreglos.
+     * @param a el primer arreglo.
+     * @param b el segundo arreglo.
+     * @return el número de enteros iniciales iguales en ambos arreglos.
+     */
+    private static int prefijoComun(ArregloEnteros a, ArregloEnteros b) {
+        int n = Math.min(a.getElementos(), b.getElementos());
+        int i = 0;
+        while (i < n && a.get(i) == b.get(i))
+            i++;
+        return i;
+    }
+
+    /**
+     * Nos dice si dos arreglos tienen los mismos enteros.
+     * @param a el primer arreglo.
+     * @param b el segundo arreglo.
+     * @return <tt>true</tt> si los arreglos son iguales, <tt>false</tt> en
+     *         otro caso.
+     */
+    private static boolean iguales(ArregloEnteros a, ArregloEnteros b) {
+        return a.getElementos() == b.getElementos()
+            && prefijoComun(a, b) == a.getElementos();
+    }
+}